@@ -0,0 +1,643 @@
+package edu.uwb.nemolib;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * AdaptiveRandESU estimates the relative frequencies (concentrations) of the
+ * subgraphs of a graph by RAND-ESU, choosing the RAND-ESU probability vector
+ * itself and reporting how accurate the estimates are.<p>
+ * RAND-ESU is run in batches of independent replicates. A label's
+ * concentration is estimated by the ratio of its count to the number of
+ * subgraphs, both summed over all replicates, and the spread of the
+ * replicates around that ratio gives a confidence interval by the usual
+ * linearization of a ratio estimator, with the quantile of Student's t
+ * distribution for the number of replicates. The relative error of an estimate is
+ * the largest relative half width of the intervals of labels with a
+ * concentration of at least MIN_CONCENTRATION.<p>
+ * The sampled fraction of the ESU tree starts at INITIAL_FRACTION and is
+ * rescaled between batches, assuming the variance of a replicate is
+ * inversely proportional to the sampled fraction: while the target relative
+ * error is met, lower fractions are tried, and if the rest of the replicate
+ * budget is not expected to reach the target, a larger fraction is sampled.
+ * The result is the lowest fraction seen to meet the target, or the last
+ * one tried if the replicate or time budget runs out first. The fraction is
+ * spread over the levels of the tree from the leaves upward, so that deep
+ * levels are thinned out first, as Wernicke recommends.<p>
+ * Sampling is not allowed to cost more than enumerating the whole tree
+ * once. Work is measured in extension vertices considered, and the number
+ * the ESU tree has at each level is estimated from every run, weighting
+ * what the run considered by the inverse of the probability of reaching it.
+ * A pilot run that selects PILOT_FRACTION of the roots gives the first
+ * estimate. From these the work of a batch at any fraction is predicted,
+ * and once the next batch would take the work done past that of a full
+ * enumeration, or the fraction reaches 1.0, a single ESU pass is run instead
+ * and its exact concentrations are returned.<p>
+ * The pilot run and every replicate draw their seeds, in order, from a
+ * SplittableRandom seeded once per estimate, and replicates are added in
+ * order whichever thread ran them, so an AdaptiveRandESU constructed with a
+ * seed and without a time limit returns the same estimate on every run.
+ */
+public final class AdaptiveRandESU {
+
+	/**
+	 * The number of RAND-ESU replicates in a batch.
+	 */
+	public static final int BATCH_SIZE = 8;
+
+	/**
+	 * The sampled fraction of the ESU tree in the first batch, which is the
+	 * fraction sampled by the probability vector (1.0, ..., 1.0, 0.1), unless
+	 * a batch at that fraction is expected to cost more than half a full
+	 * enumeration.
+	 */
+	public static final double INITIAL_FRACTION = 0.1;
+
+	/**
+	 * The smallest concentration a label must have for its relative error to
+	 * be controlled; rarer labels are reported with wider intervals.
+	 */
+	public static final double MIN_CONCENTRATION = 0.01;
+
+	/**
+	 * The largest number of replicates used if no budget is given.
+	 */
+	public static final int DEFAULT_MAX_REPLICATES = 256;
+
+	/**
+	 * The fraction of root vertices of the pilot run, which measures the
+	 * ESU tree before any replicate is run.
+	 */
+	public static final double PILOT_FRACTION = 0.02;
+
+	// the smallest probability given to a tree level before the level above
+	// it is thinned out as well
+	private static final double MIN_LEVEL_PROB = 0.1;
+
+	// the smallest sampled fraction of the ESU tree
+	private static final double MIN_FRACTION = 1e-6;
+
+	// the largest factor by which the fraction changes at once
+	private static final double MAX_STEP = 10.0;
+
+	// the number of subgraphs of a label, over all replicates, below which
+	// its interval is not trusted; nor is it if the label is missing from
+	// half of the replicates, as happens when a few replicates sample a large
+	// branch of the tree and the others sample almost nothing
+	private static final int MIN_OBSERVATIONS = 30;
+
+	private final double targetRelativeError;
+	private final double z;
+	private final int maxReplicates;
+	private final long timeBudgetNanos;
+	private final ForkJoinPool pool;
+
+	// the seed of every estimate, or null to draw a new seed for each one
+	private final Long seed;
+
+	/**
+	 * Construct an AdaptiveRandESU with a budget of DEFAULT_MAX_REPLICATES
+	 * replicates and no time limit, that runs on the common ForkJoinPool.
+	 * @param targetRelativeError the target half width of the confidence
+	 *                            intervals, relative to the concentrations
+	 * @param confidence the confidence level of the intervals, such as 0.95
+	 */
+	public AdaptiveRandESU(double targetRelativeError, double confidence) {
+		this(targetRelativeError, confidence, DEFAULT_MAX_REPLICATES,
+				Long.MAX_VALUE, ForkJoinPool.commonPool(), null);
+	}
+
+	/**
+	 * Construct an AdaptiveRandESU whose estimates are reproducible, with a
+	 * budget of DEFAULT_MAX_REPLICATES replicates and no time limit, that
+	 * runs on the common ForkJoinPool.
+	 * @param targetRelativeError the target half width of the confidence
+	 *                            intervals, relative to the concentrations
+	 * @param confidence the confidence level of the intervals, such as 0.95
+	 * @param seed the seed of every estimate
+	 */
+	public AdaptiveRandESU(double targetRelativeError, double confidence,
+	                       long seed) {
+		this(targetRelativeError, confidence, DEFAULT_MAX_REPLICATES,
+				Long.MAX_VALUE, ForkJoinPool.commonPool(), seed);
+	}
+
+	/**
+	 * Construct an AdaptiveRandESU.
+	 * @param targetRelativeError the target half width of the confidence
+	 *                            intervals, relative to the concentrations
+	 * @param confidence the confidence level of the intervals, such as 0.95
+	 * @param maxReplicates the largest number of replicates to run
+	 * @param timeBudgetMillis the time after which no further batch is
+	 *                         started
+	 * @param pool the ForkJoinPool on which the replicates of a batch run
+	 */
+	public AdaptiveRandESU(double targetRelativeError, double confidence,
+	                       int maxReplicates, long timeBudgetMillis,
+	                       ForkJoinPool pool) {
+		this(targetRelativeError, confidence, maxReplicates, timeBudgetMillis,
+				pool, null);
+	}
+
+	/**
+	 * Construct an AdaptiveRandESU whose estimates are reproducible as long
+	 * as the time budget does not run out.
+	 * @param targetRelativeError the target half width of the confidence
+	 *                            intervals, relative to the concentrations
+	 * @param confidence the confidence level of the intervals, such as 0.95
+	 * @param maxReplicates the largest number of replicates to run
+	 * @param timeBudgetMillis the time after which no further batch is
+	 *                         started
+	 * @param pool the ForkJoinPool on which the replicates of a batch run
+	 * @param seed the seed of every estimate
+	 */
+	public AdaptiveRandESU(double targetRelativeError, double confidence,
+	                       int maxReplicates, long timeBudgetMillis,
+	                       ForkJoinPool pool, long seed) {
+		this(targetRelativeError, confidence, maxReplicates, timeBudgetMillis,
+				pool, Long.valueOf(seed));
+	}
+
+	private AdaptiveRandESU(double targetRelativeError, double confidence,
+	                        int maxReplicates, long timeBudgetMillis,
+	                        ForkJoinPool pool, Long seed) {
+		if (targetRelativeError <= 0 || confidence <= 0 || confidence >= 1 ||
+				maxReplicates < 2) {
+			throw new IllegalArgumentException("Argument out of range.");
+		}
+		this.targetRelativeError = targetRelativeError;
+		this.z = inverseNormal(0.5 + confidence / 2);
+		this.maxReplicates = maxReplicates;
+		this.timeBudgetNanos = timeBudgetMillis >= Long.MAX_VALUE / 1000000 ?
+				Long.MAX_VALUE : timeBudgetMillis * 1000000;
+		this.pool = pool;
+		this.seed = seed;
+	}
+
+	/**
+	 * Estimate the concentrations of the subgraphs of a Graph.
+	 * @param graph the graph to sample
+	 * @param subgraphSize the size of the subgraphs
+	 * @return the estimates and their confidence intervals
+	 */
+	public Estimate estimate(Graph graph, int subgraphSize) {
+		return estimate(graph.toCompactGraph(), subgraphSize);
+	}
+
+	/**
+	 * Estimate the concentrations of the subgraphs of a CompactGraph.
+	 * @param graph the graph to sample
+	 * @param subgraphSize the size of the subgraphs
+	 * @return the estimates and their confidence intervals
+	 */
+	public Estimate estimate(CompactGraph graph, int subgraphSize) {
+		long start = System.nanoTime();
+		double fraction = INITIAL_FRACTION;
+		Replicates replicates = new Replicates();
+		int used = 0;
+
+		// the lowest fraction known to meet the target, and its replicates
+		double bestFraction = Double.NaN;
+		Replicates best = null;
+		boolean raised = false;
+
+		// the replicates of the fraction before the last raise
+		double previousFraction = Double.NaN;
+		Replicates previous = null;
+
+		SplittableRandom seeds = new SplittableRandom(RandESU.seed(seed));
+		Work work = new Work(graph.getSize(), subgraphSize);
+		runPilot(graph, subgraphSize, seeds.nextLong(), work);
+		double exactWork = work.expected(probabilities(subgraphSize, 1.0));
+
+		// thinning only the leaves saves little work, so start low enough
+		// for the first batch to leave room for more
+		while (fraction > MIN_FRACTION && BATCH_SIZE * work.expected(
+				probabilities(subgraphSize, fraction)) > exactWork / 2) {
+			fraction = Math.max(MIN_FRACTION, fraction / MAX_STEP);
+		}
+
+		while (used < maxReplicates &&
+				System.nanoTime() - start < timeBudgetNanos) {
+			int batch = Math.min(BATCH_SIZE, maxReplicates - used);
+			List<Double> probs = probabilities(subgraphSize, fraction);
+			if (fraction == 1.0 ||
+					work.done + batch * work.expected(probs) >= exactWork) {
+				return exact(graph, subgraphSize);
+			}
+			runBatch(graph, subgraphSize, probs, batch, seeds, replicates,
+					work);
+			used += batch;
+			exactWork = work.expected(probabilities(subgraphSize, 1.0));
+
+			double error = relativeError(replicates);
+			if (error <= targetRelativeError) {
+				// the target is met; until a fraction has failed, try a
+				// lower one that one batch is expected to suffice for
+				double lower = Math.max(Math.max(MIN_FRACTION,
+						fraction / MAX_STEP), fraction *
+						Math.pow(error / targetRelativeError, 2) *
+						replicates.count / BATCH_SIZE);
+				if (raised || lower > fraction / 2) {
+					break;
+				}
+				bestFraction = fraction;
+				best = replicates;
+				fraction = lower;
+				replicates = new Replicates();
+				continue;
+			}
+			if (best != null) {
+				// the lower fraction missed the target
+				break;
+			}
+
+			// stay at this fraction if the rest of the budget is expected to
+			// reach the target, and sample more of the tree otherwise
+			double needed = replicates.count *
+					Math.pow(error / targetRelativeError, 2);
+			if (needed <= maxReplicates - used + replicates.count) {
+				continue;
+			}
+			double higher = Double.isInfinite(error) ? fraction * MAX_STEP :
+					fraction * needed / Math.max(BATCH_SIZE,
+							maxReplicates - used);
+			previousFraction = fraction;
+			previous = replicates;
+			fraction = Math.min(1.0, Math.min(fraction * MAX_STEP, higher));
+			replicates = new Replicates();
+			raised = true;
+		}
+		if (best != null && (replicates.count < 2 ||
+				relativeError(replicates) > targetRelativeError)) {
+			fraction = bestFraction;
+			replicates = best;
+		} else if (replicates.count == 0 && previous != null) {
+			// the budget ran out before the raised fraction was sampled
+			fraction = previousFraction;
+			replicates = previous;
+		}
+		return new Estimate(replicates, probabilities(subgraphSize, fraction),
+				z);
+	}
+
+	// enumerates the whole ESU tree once
+	private Estimate exact(CompactGraph graph, int subgraphSize) {
+		SubgraphCount subgraphCount = new SubgraphCount();
+		new ESU().enumerate(graph, subgraphSize, subgraphCount);
+		subgraphCount.label();
+		Replicates replicates = new Replicates();
+		replicates.add(subgraphCount.getFrequencies());
+		replicates.exact = true;
+		return new Estimate(replicates, probabilities(subgraphSize, 1.0), z);
+	}
+
+	// runs a batch of replicates concurrently, seeded in order from seeds,
+	// and adds them in order
+	private void runBatch(CompactGraph graph, int subgraphSize,
+	                      List<Double> probs, int count,
+	                      SplittableRandom seeds, Replicates replicates,
+	                      Work work) {
+		List<Map<String, Long>> results = new ArrayList<>(count);
+		int[] roots = new int[count];
+		long[][] examined = new long[count][];
+		List<RecursiveAction> tasks = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			results.add(null);
+			int index = i;
+			long runSeed = seeds.nextLong();
+			tasks.add(new RecursiveAction() {
+				@Override
+				protected void compute() {
+					SubgraphCount subgraphCount = new SubgraphCount();
+					ESUEngine engine = new ESUEngine(graph, subgraphSize,
+							probs, runSeed, subgraphCount);
+					int[] selected = RandESU.selectVertices(graph,
+							probs.get(0), runSeed);
+					for (int root : selected) {
+						engine.enumerate(root);
+					}
+					subgraphCount.label();
+					results.set(index, subgraphCount.getFrequencies());
+					roots[index] = selected.length;
+					examined[index] = engine.examined();
+				}
+			});
+		}
+		pool.invoke(new RecursiveAction() {
+			@Override
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+		double[] reach = reachProbabilities(probs);
+		for (int i = 0; i < count; i++) {
+			replicates.add(results.get(i));
+			work.add(roots[i], examined[i], reach);
+		}
+	}
+
+	// enumerates the branches of the ESU tree below PILOT_FRACTION of the
+	// roots, only to measure the tree
+	private void runPilot(CompactGraph graph, int subgraphSize, long runSeed,
+	                      Work work) {
+		List<Double> probs = new ArrayList<>(subgraphSize);
+		probs.add(Math.min(1.0, Math.max(PILOT_FRACTION,
+				1.0 / Math.max(1, graph.getSize()))));
+		for (int level = 1; level < subgraphSize; level++) {
+			probs.add(1.0);
+		}
+		pool.invoke(new RecursiveAction() {
+			@Override
+			protected void compute() {
+				ESUEngine engine = new ESUEngine(graph, subgraphSize, probs,
+						runSeed, new SubgraphCount());
+				int[] selected = RandESU.selectVertices(graph, probs.get(0),
+						runSeed);
+				for (int root : selected) {
+					engine.enumerate(root);
+				}
+				work.add(selected.length, engine.examined(),
+						reachProbabilities(probs));
+			}
+		});
+	}
+
+	// the probability that RAND-ESU considers the extension of a tree node,
+	// indexed by the number of vertices of the node: its root is selected
+	// and passes the root's test of probs[1], and each vertex added after
+	// the root passes the test of its level
+	private static double[] reachProbabilities(List<Double> probs) {
+		double[] reach = new double[probs.size()];
+		double prob = probs.get(0) * (probs.size() > 1 ? probs.get(1) : 1.0);
+		for (int size = 1; size < reach.length; size++) {
+			reach[size] = prob;
+			prob *= probs.get(size);
+		}
+		return reach;
+	}
+
+	// the largest relative half width among labels that are not rare, or
+	// infinity if too few subgraphs were sampled to tell
+	private double relativeError(Replicates replicates) {
+		// a label of MIN_CONCENTRATION would be seen MIN_OBSERVATIONS times
+		// in this many subgraphs, so fewer could miss it altogether
+		if (replicates.total < MIN_OBSERVATIONS / MIN_CONCENTRATION) {
+			return Double.POSITIVE_INFINITY;
+		}
+		double error = 0.0;
+		for (String label : replicates.labelToSums.keySet()) {
+			double ratio = replicates.ratio(label);
+			if (ratio >= MIN_CONCENTRATION) {
+				double[] sums = replicates.labelToSums.get(label);
+				if (sums[0] < MIN_OBSERVATIONS ||
+						2 * sums[3] < replicates.count) {
+					return Double.POSITIVE_INFINITY;
+				}
+				error = Math.max(error, replicates.halfWidth(label, z) / ratio);
+			}
+		}
+		return error;
+	}
+
+	/**
+	 * Build the RAND-ESU probability vector that samples a fraction of the
+	 * ESU tree, lowering the probabilities of the deepest levels first.
+	 * @param subgraphSize the size of the subgraphs
+	 * @param fraction the fraction of the tree's leaves to sample
+	 * @return the probability vector
+	 */
+	static List<Double> probabilities(int subgraphSize, double fraction) {
+		double[] probs = new double[subgraphSize];
+		double remaining = fraction;
+		for (int level = subgraphSize - 1; level >= 0; level--) {
+			probs[level] = level == 0 ? remaining :
+					Math.max(remaining, MIN_LEVEL_PROB);
+			remaining /= probs[level];
+		}
+		List<Double> result = new ArrayList<>(subgraphSize);
+		for (double prob : probs) {
+			// snap rounding error so that whole levels are not sampled
+			result.add(prob > 1.0 - 1e-9 ? 1.0 : prob);
+		}
+		return result;
+	}
+
+	// the sums over replicates behind the ratio estimates: for every label
+	// the sum of its counts c, of c * c and of c * t, where t is the number of
+	// subgraphs in the replicate, and the number of replicates in which it
+	// was found; and the sums of t and t * t
+	private static final class Replicates {
+		final Map<String, double[]> labelToSums = new HashMap<>();
+		int count;
+		double total;
+		double totalSquares;
+
+		// true for a single enumeration of the whole tree, whose ratios are
+		// exact
+		boolean exact;
+
+		void add(Map<String, Long> frequencies) {
+			double t = 0;
+			for (long freq : frequencies.values()) {
+				t += freq;
+			}
+			for (Map.Entry<String, Long> entry : frequencies.entrySet()) {
+				double c = entry.getValue();
+				double[] sums = labelToSums.get(entry.getKey());
+				if (sums == null) {
+					sums = new double[4];
+					labelToSums.put(entry.getKey(), sums);
+				}
+				sums[0] += c;
+				sums[1] += c * c;
+				sums[2] += c * t;
+				sums[3]++;
+			}
+			count++;
+			total += t;
+			totalSquares += t * t;
+		}
+
+		double ratio(String label) {
+			return total > 0 ? labelToSums.get(label)[0] / total : 0.0;
+		}
+
+		double halfWidth(String label, double z) {
+			if (exact) {
+				return 0.0;
+			}
+			if (count < 2 || total == 0) {
+				return Double.POSITIVE_INFINITY;
+			}
+			double r = ratio(label);
+			double[] sums = labelToSums.get(label);
+			double residuals = sums[1] - 2 * r * sums[2] +
+					r * r * totalSquares;
+			double meanTotal = total / count;
+			double variance = Math.max(0.0, residuals) /
+					((count - 1) * count * meanTotal * meanTotal);
+			return studentQuantile(z, count - 1) * Math.sqrt(variance);
+		}
+	}
+
+	// the work done so far, in extension vertices considered, and for every
+	// level of the ESU tree the sum over runs of their estimates of the
+	// number of extension vertices ESU considers below its nodes
+	private static final class Work {
+		final int vertexCount;
+		final double[] levelSums;
+		int runs;
+		double done;
+
+		Work(int vertexCount, int subgraphSize) {
+			this.vertexCount = vertexCount;
+			this.levelSums = new double[subgraphSize];
+		}
+
+		void add(int roots, long[] examined, double[] reach) {
+			done += roots;
+			for (int size = 1; size < examined.length; size++) {
+				done += examined[size];
+				levelSums[size] += examined[size] / reach[size];
+			}
+			runs++;
+		}
+
+		// the expected work of a run with the given probability vector
+		double expected(List<Double> probs) {
+			double[] reach = reachProbabilities(probs);
+			double result = Math.round(probs.get(0) * vertexCount);
+			for (int size = 1; size < levelSums.length; size++) {
+				result += levelSums[size] / runs * reach[size];
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * The concentration estimates of an AdaptiveRandESU run.
+	 */
+	public static final class Estimate {
+		private final Map<String, Double> relativeFrequencies =
+				new HashMap<>();
+		private final Map<String, Double> lowerBounds = new HashMap<>();
+		private final Map<String, Double> upperBounds = new HashMap<>();
+		private final List<Double> probs;
+		private final long replicateCount;
+		private final boolean exact;
+
+		private Estimate(Replicates replicates, List<Double> probs, double z) {
+			for (String label : replicates.labelToSums.keySet()) {
+				double mean = replicates.ratio(label);
+				double halfWidth = replicates.halfWidth(label, z);
+				relativeFrequencies.put(label, mean);
+				lowerBounds.put(label, Math.max(0.0, mean - halfWidth));
+				upperBounds.put(label, Math.min(1.0, mean + halfWidth));
+			}
+			this.probs = Collections.unmodifiableList(probs);
+			this.replicateCount = replicates.count;
+			this.exact = replicates.exact;
+		}
+
+		/**
+		 * Check whether the whole ESU tree was enumerated, in which case the
+		 * relative frequencies are exact and the intervals have no width.
+		 * @return true if the estimates are exact
+		 */
+		public boolean isExact() {
+			return exact;
+		}
+
+		/**
+		 * Get the estimated relative frequencies.
+		 * @return labels paired with their mean relative frequency over all
+		 * replicates
+		 */
+		public Map<String, Double> getRelativeFrequencies() {
+			return relativeFrequencies;
+		}
+
+		/**
+		 * Get the lower ends of the confidence intervals.
+		 * @return labels paired with the lower ends of their intervals
+		 */
+		public Map<String, Double> getLowerBounds() {
+			return lowerBounds;
+		}
+
+		/**
+		 * Get the upper ends of the confidence intervals.
+		 * @return labels paired with the upper ends of their intervals
+		 */
+		public Map<String, Double> getUpperBounds() {
+			return upperBounds;
+		}
+
+		/**
+		 * Get the RAND-ESU probability vector of the replicates.
+		 * @return the probability vector
+		 */
+		public List<Double> getProbabilities() {
+			return probs;
+		}
+
+		/**
+		 * Get the number of replicates behind the estimates.
+		 * @return the number of replicates
+		 */
+		public long getReplicateCount() {
+			return replicateCount;
+		}
+	}
+
+	// the quantile of Student's t distribution with the given degrees of
+	// freedom at which the standard normal distribution has quantile z, by
+	// the Cornish-Fisher expansion (within 0.1% from 7 degrees of freedom, a
+	// batch of replicates, and too low below that); with only a batch or two
+	// of replicates the normal quantile makes the intervals far too narrow
+	private static double studentQuantile(double z, int degrees) {
+		double z2 = z * z;
+		double v = degrees;
+		return z + z * (z2 + 1) / (4 * v) +
+				z * ((5 * z2 + 16) * z2 + 3) / (96 * v * v) +
+				z * (((3 * z2 + 19) * z2 + 17) * z2 - 15) / (384 * v * v * v);
+	}
+
+	// the quantile function of the standard normal distribution, by Peter
+	// Acklam's rational approximation (relative error below 1.2e-9)
+	private static double inverseNormal(double p) {
+		final double[] a = {-3.969683028665376e+01, 2.209460984245205e+02,
+				-2.759285104469687e+02, 1.383577518672690e+02,
+				-3.066479806614716e+01, 2.506628277459239e+00};
+		final double[] b = {-5.447609879822406e+01, 1.615858368580409e+02,
+				-1.556989798598866e+02, 6.680131188771972e+01,
+				-1.328068155288572e+01};
+		final double[] c = {-7.784894002430293e-03, -3.223964580411365e-01,
+				-2.400758277161838e+00, -2.549732539343734e+00,
+				4.374664141464968e+00, 2.938163982698783e+00};
+		final double[] d = {7.784695709041462e-03, 3.224671290700398e-01,
+				2.445134137142996e+00, 3.754408661907416e+00};
+		final double low = 0.02425;
+		if (p < low) {
+			double q = Math.sqrt(-2 * Math.log(p));
+			return (((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4]) *
+					q + c[5]) / ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) *
+					q + 1);
+		}
+		if (p > 1 - low) {
+			return -inverseNormal(1 - p);
+		}
+		double q = p - 0.5;
+		double r = q * q;
+		return (((((a[0] * r + a[1]) * r + a[2]) * r + a[3]) * r + a[4]) * r +
+				a[5]) * q / (((((b[0] * r + b[1]) * r + b[2]) * r + b[3]) * r +
+				b[4]) * r + 1);
+	}
+}
@@ -9,20 +9,45 @@ class AdjacencyList implements Serializable{
 
     private CompactHashSet nodes;
 
+    // true for a view that cannot change the list it shows
+    private final boolean readOnly;
+
     AdjacencyList() {
         this.nodes = new CompactHashSet();
+        this.readOnly = false;
+    }
+
+    AdjacencyList(int expectedSize) {
+        this.nodes = new CompactHashSet(expectedSize);
+        this.readOnly = false;
     }
 
     private AdjacencyList(AdjacencyList adjacencyList) {
         this.nodes = adjacencyList.nodes.copy();
+        this.readOnly = false;
+    }
+
+    private AdjacencyList(CompactHashSet nodes, boolean readOnly) {
+        this.nodes = nodes;
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Get a view of this list that reflects its changes but throws
+     * UnsupportedOperationException when asked to make any itself.
+     * @return the read-only view
+     */
+    AdjacencyList readOnlyView() {
+        return readOnly ? this : new AdjacencyList(nodes, true);
     }
 
     void add(int node) {
+        checkWritable();
         nodes.add(node);
     }
 
     CompactHashSet.Iter iterator() {
-        return nodes.iterator();
+        return readOnly ? nodes.readOnlyIterator() : nodes.iterator();
     }
 
     boolean contains(int node) {
@@ -43,9 +68,17 @@ class AdjacencyList implements Serializable{
     }
 
     boolean remove(int node) {
+        checkWritable();
         return nodes.remove(node);
     }
 
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException(
+                    "Adjacency list is read-only.");
+        }
+    }
+
     AdjacencyList copy() {
         return new AdjacencyList(this);
     }
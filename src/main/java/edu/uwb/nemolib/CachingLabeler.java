@@ -0,0 +1,203 @@
+package edu.uwb.nemolib;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A CachingLabeler is a CanonicalLabeler that answers g6 labels it has
+ * already seen from a bounded cache, and passes only the others on to the
+ * CanonicalLabeler behind it. The same few hundred g6 labels are found in
+ * every random graph of an analysis, so after the first random graph nearly
+ * every label is a cache hit.<p>
+ * The cache evicts the least recently used labels once it is full, and is
+ * safe for concurrent use. Its contents can be saved to a file and loaded
+ * again in a later run. Different labelers produce different canonical
+ * labels, so the file names the class of the labeler behind the cache, and
+ * only a cache in front of the same class of labeler loads it.<p>
+ * The shared() CachingLabeler, in front of a RefinementLabeler, is used by
+ * results that are not given a labeler.
+ */
+public final class CachingLabeler implements CanonicalLabeler {
+
+	/**
+	 * The number of labels cached by the shared CachingLabeler.
+	 */
+	public static final int DEFAULT_MAXIMUM_SIZE = 1 << 16;
+
+	// the first line of a saved cache, followed by the labeler's class
+	private static final String HEADER = "#nemolib-label-cache ";
+
+	private static final CachingLabeler SHARED =
+			new CachingLabeler(new RefinementLabeler(), DEFAULT_MAXIMUM_SIZE);
+
+	private final CanonicalLabeler labeler;
+	private final LabelCache cache;
+
+	/**
+	 * Construct a CachingLabeler.
+	 * @param labeler the labeler that canonicalizes labels missing from the
+	 *                cache
+	 * @param maximumSize the largest number of labels cached
+	 */
+	public CachingLabeler(CanonicalLabeler labeler, int maximumSize) {
+		this.labeler = labeler;
+		this.cache = new LabelCache(maximumSize);
+	}
+
+	/**
+	 * Get the process-wide CachingLabeler in front of a RefinementLabeler.
+	 * @return the shared CachingLabeler
+	 */
+	public static CachingLabeler shared() {
+		return SHARED;
+	}
+
+	// uses interface JavaDoc comment
+	@Override
+	public Map<String, String> getCanonicalLabels(Set<String> labels) {
+		// must use LinkedHashMap to preserve ordering
+		Map<String, String> results = new LinkedHashMap<>();
+		Set<String> misses = new LinkedHashSet<>();
+		for (String label : labels) {
+			String canLabel = cache.get(label);
+			results.put(label, canLabel);
+			if (canLabel == null) {
+				misses.add(label);
+			}
+		}
+		if (misses.isEmpty()) {
+			return results;
+		}
+		for (Map.Entry<String, String> g6CanLabel :
+				labeler.getCanonicalLabels(misses).entrySet()) {
+			results.put(g6CanLabel.getKey(), g6CanLabel.getValue());
+			cache.put(g6CanLabel.getKey(), g6CanLabel.getValue());
+		}
+		return results;
+	}
+
+	/**
+	 * Get the number of labels found in the cache.
+	 * @return the number of hits
+	 */
+	public long getHitCount() {
+		return cache.hitCount();
+	}
+
+	/**
+	 * Get the number of labels passed on to the labeler behind the cache.
+	 * @return the number of misses
+	 */
+	public long getMissCount() {
+		return cache.missCount();
+	}
+
+	/**
+	 * Get the fraction of labels found in the cache.
+	 * @return the hit rate, or 0 if no label was looked up
+	 */
+	public double getHitRate() {
+		long hits = getHitCount();
+		long total = hits + getMissCount();
+		return total == 0 ? 0.0 : (double) hits / total;
+	}
+
+	/**
+	 * Get the number of labels evicted to keep the cache within its size.
+	 * @return the number of evictions
+	 */
+	public long getEvictionCount() {
+		return cache.evictionCount();
+	}
+
+	/**
+	 * Get the number of labels in the cache.
+	 * @return the number of labels
+	 */
+	public int size() {
+		return cache.size();
+	}
+
+	/**
+	 * Add the labels saved in a file to the cache. Lines that are not a g6
+	 * label and a canonical label separated by a space are ignored.
+	 * @param file a file written by save()
+	 * @throws IOException if the file cannot be read, or was not saved from
+	 * a cache in front of the same class of labeler
+	 */
+	public void load(File file) throws IOException {
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(
+				new FileInputStream(file), StandardCharsets.US_ASCII))) {
+			String header = in.readLine();
+			if (header == null || !header.startsWith(HEADER)) {
+				throw new IOException(file + " is not a saved label cache");
+			}
+			String backend = header.substring(HEADER.length());
+			if (!backend.equals(backend())) {
+				throw new IOException(file + " was saved in front of " +
+						backend + ", not " + backend());
+			}
+			for (String line = in.readLine(); line != null;
+			     line = in.readLine()) {
+				int space = line.indexOf(' ');
+				if (space > 0 && space < line.length() - 1) {
+					cache.put(line.substring(0, space),
+							line.substring(space + 1));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Save the cache to a file: a header naming the class of the labeler
+	 * behind the cache, then one g6 label and its canonical label per line.
+	 * The file is replaced only once it has been written completely.
+	 * @param file the file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public void save(File file) throws IOException {
+		Map<String, String> entries = new HashMap<>();
+		cache.copyTo(entries);
+		File directory = file.getAbsoluteFile().getParentFile();
+		File temp = File.createTempFile(file.getName(), ".tmp", directory);
+		try {
+			try (Writer out = new BufferedWriter(new OutputStreamWriter(
+					new FileOutputStream(temp), StandardCharsets.US_ASCII))) {
+				out.write(HEADER);
+				out.write(backend());
+				out.write('\n');
+				for (Map.Entry<String, String> entry : entries.entrySet()) {
+					out.write(entry.getKey());
+					out.write(' ');
+					out.write(entry.getValue());
+					out.write('\n');
+				}
+			}
+			Files.move(temp.toPath(), file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			temp.delete();
+		}
+	}
+
+	// names the labeler behind the cache in a saved file
+	private String backend() {
+		return labeler.getClass().getName();
+	}
+}
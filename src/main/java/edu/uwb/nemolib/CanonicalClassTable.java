@@ -0,0 +1,261 @@
+package edu.uwb.nemolib;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A CanonicalClassTable maps every upper-triangle mask of a subgraph order
+ * onto a dense isomorphism class id, so that small subgraphs can be counted
+ * by class while they are enumerated instead of being labeled afterward.
+ * Each class also carries its canonical g6 label as computed by the
+ * RefinementLabeler.<p>
+ * The table of an order is built the first time it is requested, by
+ * canonically labeling one member of each class and expanding it into all of
+ * its relabelings. A table written with write() and bundled on the classpath
+ * as /edu/uwb/nemolib/canonical-classes-k.bin (for order k) is loaded
+ * instead of being built.
+ */
+final class CanonicalClassTable {
+
+	static final int MIN_ORDER = 3;
+	static final int MAX_ORDER = 6;
+
+	// identifies the binary table format
+	private static final int MAGIC = 0x4E4D4354;
+	private static final int VERSION = 1;
+
+	private static final String RESOURCE_PREFIX = "canonical-classes-";
+	private static final String RESOURCE_SUFFIX = ".bin";
+
+	private static final CanonicalClassTable[] TABLES =
+			new CanonicalClassTable[MAX_ORDER + 1];
+
+	private final int order;
+
+	// classIds[mask] is the class of the subgraph with that triangle mask
+	private final short[] classIds;
+	private final String[] labels;
+
+	private CanonicalClassTable(int order, short[] classIds, String[] labels) {
+		this.order = order;
+		this.classIds = classIds;
+		this.labels = labels;
+	}
+
+	/**
+	 * Get the table of a subgraph order, loading or building it on first use.
+	 * @param order the subgraph order
+	 * @return the table, or null if the order is not between MIN_ORDER and
+	 * MAX_ORDER
+	 */
+	static CanonicalClassTable forOrder(int order) {
+		if (order < MIN_ORDER || order > MAX_ORDER) {
+			return null;
+		}
+		synchronized (TABLES) {
+			if (TABLES[order] == null) {
+				CanonicalClassTable table = load(order);
+				TABLES[order] = table != null ? table : build(order);
+			}
+			return TABLES[order];
+		}
+	}
+
+	/**
+	 * Get the subgraph order of this table.
+	 * @return the subgraph order
+	 */
+	int order() {
+		return order;
+	}
+
+	/**
+	 * Get the number of isomorphism classes of this table's order.
+	 * @return the number of classes
+	 */
+	int classCount() {
+		return labels.length;
+	}
+
+	/**
+	 * Get the class of a subgraph.
+	 * @param triangle the upper-triangle mask of the subgraph
+	 * @return the class id
+	 */
+	int classOf(long triangle) {
+		return classIds[(int) triangle];
+	}
+
+	/**
+	 * Get the canonical g6 label of a class.
+	 * @param classId the class id
+	 * @return the canonical g6 label
+	 */
+	String label(int classId) {
+		return labels[classId];
+	}
+
+	/**
+	 * Write this table in its binary format.
+	 * @param out the stream to which the table is written
+	 * @throws IOException if the table cannot be written
+	 */
+	void write(OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeInt(order);
+		data.writeInt(labels.length);
+		for (String label : labels) {
+			data.writeUTF(label);
+		}
+		for (short classId : classIds) {
+			data.writeShort(classId);
+		}
+		data.flush();
+	}
+
+	/**
+	 * Read a table written by write().
+	 * @param in the stream from which the table is read
+	 * @return the table
+	 * @throws IOException if the table cannot be read or is malformed
+	 */
+	static CanonicalClassTable read(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(in);
+		if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+			throw new IOException("Not a canonical class table");
+		}
+		int order = data.readInt();
+		if (order < MIN_ORDER || order > MAX_ORDER) {
+			throw new IOException("Unsupported subgraph order: " + order);
+		}
+		String[] labels = new String[data.readInt()];
+		for (int i = 0; i < labels.length; i++) {
+			labels[i] = data.readUTF();
+		}
+		short[] classIds = new short[1 << edgeSlots(order)];
+		for (int i = 0; i < classIds.length; i++) {
+			classIds[i] = data.readShort();
+			if (classIds[i] < 0 || classIds[i] >= labels.length) {
+				throw new IOException("Class id out of range: " +
+						classIds[i]);
+			}
+		}
+		return new CanonicalClassTable(order, classIds, labels);
+	}
+
+	// reads the bundled table of an order, or returns null if there is none
+	private static CanonicalClassTable load(int order) {
+		InputStream in = CanonicalClassTable.class.getResourceAsStream(
+				RESOURCE_PREFIX + order + RESOURCE_SUFFIX);
+		if (in == null) {
+			return null;
+		}
+		try {
+			return read(in);
+		} catch (IOException e) {
+			// fall back to building the table
+			return null;
+		} finally {
+			try { in.close(); } catch (IOException e) {}
+		}
+	}
+
+	// assigns class ids in order of each class's smallest mask
+	private static CanonicalClassTable build(int order) {
+		int[][] edgeMaps = edgeMaps(order);
+		short[] classIds = new short[1 << edgeSlots(order)];
+		Arrays.fill(classIds, (short) -1);
+		List<String> labels = new ArrayList<>();
+		for (int mask = 0; mask < classIds.length; mask++) {
+			if (classIds[mask] != -1) {
+				continue;
+			}
+			short classId = (short) labels.size();
+			labels.add(Graph6.encode(order, RefinementLabeler.canonicalForm(
+					order, Graph6.fromTriangle(order, mask))));
+			for (int[] edgeMap : edgeMaps) {
+				int image = 0;
+				for (int bit = 0; bit < edgeMap.length; bit++) {
+					if ((mask & (1 << bit)) != 0) {
+						image |= 1 << edgeMap[bit];
+					}
+				}
+				classIds[image] = classId;
+			}
+		}
+		return new CanonicalClassTable(order, classIds,
+				labels.toArray(new String[0]));
+	}
+
+	// for every permutation of the vertices, the triangle bit onto which
+	// each triangle bit is moved
+	private static int[][] edgeMaps(int order) {
+		List<int[]> permutations = new ArrayList<>();
+		permute(new int[order], new boolean[order], 0, permutations);
+		int[][] edgeMaps = new int[permutations.size()][edgeSlots(order)];
+		for (int p = 0; p < edgeMaps.length; p++) {
+			int[] permutation = permutations.get(p);
+			for (int col = 1; col < order; col++) {
+				for (int row = 0; row < col; row++) {
+					edgeMaps[p][slot(row, col)] =
+							slot(permutation[row], permutation[col]);
+				}
+			}
+		}
+		return edgeMaps;
+	}
+
+	private static void permute(int[] permutation, boolean[] used, int next,
+	                            List<int[]> permutations) {
+		if (next == permutation.length) {
+			permutations.add(permutation.clone());
+			return;
+		}
+		for (int vertex = 0; vertex < permutation.length; vertex++) {
+			if (!used[vertex]) {
+				used[vertex] = true;
+				permutation[next] = vertex;
+				permute(permutation, used, next + 1, permutations);
+				used[vertex] = false;
+			}
+		}
+	}
+
+	private static int slot(int x, int y) {
+		int col = Math.max(x, y);
+		return ((col * (col - 1)) / 2) + Math.min(x, y);
+	}
+
+	private static int edgeSlots(int order) {
+		return (order * (order - 1)) / 2;
+	}
+
+	/**
+	 * Write the tables of every supported order to a directory, named so
+	 * that they can be bundled as classpath resources.
+	 * @param args the output directory
+	 * @throws IOException if a table cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		File directory = new File(args.length > 0 ? args[0] : ".");
+		for (int order = MIN_ORDER; order <= MAX_ORDER; order++) {
+			File file = new File(directory,
+					RESOURCE_PREFIX + order + RESOURCE_SUFFIX);
+			try (OutputStream out =
+					     new BufferedOutputStream(new FileOutputStream(file))) {
+				build(order).write(out);
+			}
+		}
+	}
+}
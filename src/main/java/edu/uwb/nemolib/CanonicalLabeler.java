@@ -0,0 +1,18 @@
+package edu.uwb.nemolib;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A CanonicalLabeler maps g6 subgraph labels onto canonical labels, so that
+ * all g6 labels of isomorphic subgraphs map onto the same canonical label.
+ */
+public interface CanonicalLabeler
+{
+	/**
+	 * Gets the canonical label of each of the given g6 labels.
+	 * @param labels the g6 labels to canonicalize
+	 * @return a map from each of the given g6 labels to its canonical label
+	 */
+	Map<String, String> getCanonicalLabels(Set<String> labels);
+}
@@ -0,0 +1,272 @@
+package edu.uwb.nemolib;
+
+import java.util.Arrays;
+
+/**
+ * ClosedFormCounter counts the connected subgraphs of size 3 and 4 of a
+ * network exactly without walking the ESU tree. It counts triangles, wedges,
+ * 4-cycles, 4-cliques and the number of triangles on each edge by
+ * intersecting sorted adjacency lists, with the vertices renumbered in
+ * order of degree so that every triangle and clique is found once from its
+ * lowest vertex. The number of subgraphs that contain each shape, whether or
+ * not they are induced, follows from these and from the degrees; the
+ * induced counts are then obtained by subtracting the larger shapes that
+ * contain each smaller one.<p>
+ * The counts are added to a SubgraphCount under the same labels that ESU
+ * produces. Other subgraph sizes, and results other than a SubgraphCount,
+ * are passed on to a fallback enumerator.
+ */
+public final class ClosedFormCounter implements SubgraphEnumerator {
+
+	// the upper-triangle mask of one member of each class
+	static final long PATH_3 = triangle(0, 1, 1, 2);
+	static final long TRIANGLE = triangle(0, 1, 1, 2, 0, 2);
+	static final long PATH_4 = triangle(0, 1, 1, 2, 2, 3);
+	static final long STAR = triangle(0, 1, 0, 2, 0, 3);
+	static final long CYCLE = triangle(0, 1, 1, 2, 2, 3, 0, 3);
+	static final long TAILED_TRIANGLE =
+			triangle(0, 1, 1, 2, 0, 2, 2, 3);
+	static final long DIAMOND = triangle(0, 1, 1, 2, 0, 2, 0, 3, 1, 3);
+	static final long CLIQUE =
+			triangle(0, 1, 1, 2, 0, 2, 0, 3, 1, 3, 2, 3);
+
+	private final SubgraphEnumerator fallback;
+
+	/**
+	 * Construct a ClosedFormCounter that uses ESU for other subgraph sizes.
+	 */
+	public ClosedFormCounter() {
+		this(new ESU());
+	}
+
+	/**
+	 * Construct a ClosedFormCounter.
+	 * @param fallback the enumerator used for subgraph sizes other than 3
+	 *                 and 4 and for results other than a SubgraphCount
+	 */
+	public ClosedFormCounter(SubgraphEnumerator fallback) {
+		this.fallback = fallback;
+	}
+
+	/**
+	 * Check whether subgraphs of a size are counted in closed form.
+	 * @param subgraphSize the subgraph size
+	 * @return true if the size is 3 or 4
+	 */
+	public static boolean supports(int subgraphSize) {
+		return subgraphSize == 3 || subgraphSize == 4;
+	}
+
+	@Override
+	public void enumerate(CompactGraph graph, int subgraphSize,
+	                      SubgraphEnumerationResult subgraphs) {
+		if (!supports(subgraphSize) || !(subgraphs instanceof SubgraphCount)) {
+			fallback.enumerate(graph, subgraphSize, subgraphs);
+			return;
+		}
+		SubgraphCount subgraphCount = (SubgraphCount) subgraphs;
+		Statistics stats = new Statistics(graph.permute(degreeOrder(graph)),
+				subgraphSize == 4);
+		if (subgraphSize == 3) {
+			subgraphCount.addSubgraphs(3, PATH_3,
+					stats.wedges - 3 * stats.triangles);
+			subgraphCount.addSubgraphs(3, TRIANGLE, stats.triangles);
+			return;
+		}
+
+		// each count contains the induced subgraphs of its shape and every
+		// larger shape that contains it, as many times as it is contained
+		long clique = stats.cliques;
+		long diamond = stats.diamonds - 6 * clique;
+		long cycle = stats.cycles - diamond - 3 * clique;
+		long tailed = stats.tailedTriangles - 4 * diamond - 12 * clique;
+		long star = stats.stars - tailed - 2 * diamond - 4 * clique;
+		long path = stats.paths - 2 * tailed - 4 * cycle - 6 * diamond -
+				12 * clique;
+		subgraphCount.addSubgraphs(4, PATH_4, path);
+		subgraphCount.addSubgraphs(4, STAR, star);
+		subgraphCount.addSubgraphs(4, CYCLE, cycle);
+		subgraphCount.addSubgraphs(4, TAILED_TRIANGLE, tailed);
+		subgraphCount.addSubgraphs(4, DIAMOND, diamond);
+		subgraphCount.addSubgraphs(4, CLIQUE, clique);
+	}
+
+	/**
+	 * Number the vertices of a graph in order of degree, ties broken by
+	 * number, so that in the renumbered graph the neighbors of a vertex above
+	 * it are those of higher degree.
+	 * @param graph the graph
+	 * @return the new number of each vertex, for CompactGraph.permute()
+	 */
+	static int[] degreeOrder(CompactGraph graph) {
+		int size = graph.getSize();
+		int maxDegree = 0;
+		for (int v = 0; v < size; v++) {
+			maxDegree = Math.max(maxDegree, graph.getDegree(v));
+		}
+		int[] next = new int[maxDegree + 2];
+		for (int v = 0; v < size; v++) {
+			next[graph.getDegree(v) + 1]++;
+		}
+		for (int d = 1; d < next.length; d++) {
+			next[d] += next[d - 1];
+		}
+		int[] permutation = new int[size];
+		for (int v = 0; v < size; v++) {
+			permutation[v] = next[graph.getDegree(v)]++;
+		}
+		return permutation;
+	}
+
+	// the upper-triangle mask of the graph with the given edges
+	private static long triangle(int... endpoints) {
+		long mask = 0;
+		for (int i = 0; i < endpoints.length; i += 2) {
+			int col = Math.max(endpoints[i], endpoints[i + 1]);
+			int row = Math.min(endpoints[i], endpoints[i + 1]);
+			mask |= 1L << ((col * (col - 1)) / 2 + row);
+		}
+		return mask;
+	}
+
+	// the number of subgraphs of a degree-ordered graph that contain each
+	// shape, induced or not
+	private static final class Statistics {
+
+		long wedges;
+		long triangles;
+		long paths;
+		long stars;
+		long cycles;
+		long tailedTriangles;
+		long diamonds;
+		long cliques;
+
+		Statistics(CompactGraph graph, boolean sizeFour) {
+			int size = graph.getSize();
+			int maxDegree = 0;
+			for (int v = 0; v < size; v++) {
+				long degree = graph.getDegree(v);
+				wedges += degree * (degree - 1) / 2;
+				stars += degree * (degree - 1) * (degree - 2) / 6;
+				maxDegree = Math.max(maxDegree, graph.getDegree(v));
+			}
+
+			// the triangles on each edge u < v, indexed by the position of v
+			// in the neighbor array of u, and on each vertex
+			int[] edgeTriangles = null;
+			long[] vertexTriangles = null;
+			int[] common = null;
+			int[] stamps = null;
+			if (sizeFour) {
+				edgeTriangles = new int[graph.neighborCount()];
+				vertexTriangles = new long[size];
+				common = new int[maxDegree];
+				stamps = new int[size];
+			}
+
+			// the position in the neighbor array of u of each neighbor above
+			// u, or -1
+			int[] positions = new int[size];
+			Arrays.fill(positions, -1);
+			int stamp = 0;
+			for (int u = 0; u < size; u++) {
+				int first = graph.firstNeighborAbove(u, u);
+				int end = graph.end(u);
+				for (int i = first; i < end; i++) {
+					positions[graph.neighborAt(i)] = i;
+				}
+				for (int i = first; i < end; i++) {
+					int v = graph.neighborAt(i);
+					int commonCount = 0;
+					for (int j = graph.firstNeighborAbove(v, v);
+					     j < graph.end(v); j++) {
+						int w = graph.neighborAt(j);
+						if (positions[w] < 0) {
+							continue;
+						}
+						triangles++;
+						if (sizeFour) {
+							vertexTriangles[u]++;
+							vertexTriangles[v]++;
+							vertexTriangles[w]++;
+							edgeTriangles[i]++;
+							edgeTriangles[j]++;
+							edgeTriangles[positions[w]]++;
+							common[commonCount++] = w;
+						}
+					}
+
+					// every edge between two vertices above u and v that are
+					// adjacent to both closes a 4-clique
+					if (commonCount > 1) {
+						stamp++;
+						for (int c = 0; c < commonCount; c++) {
+							stamps[common[c]] = stamp;
+						}
+						for (int c = 0; c < commonCount; c++) {
+							int w = common[c];
+							for (int k = graph.firstNeighborAbove(w, w);
+							     k < graph.end(w); k++) {
+								if (stamps[graph.neighborAt(k)] == stamp) {
+									cliques++;
+								}
+							}
+						}
+					}
+				}
+				for (int i = first; i < end; i++) {
+					positions[graph.neighborAt(i)] = -1;
+				}
+			}
+			if (!sizeFour) {
+				return;
+			}
+
+			for (int u = 0; u < size; u++) {
+				long uDegree = graph.getDegree(u);
+				for (int i = graph.firstNeighborAbove(u, u); i < graph.end(u);
+				     i++) {
+					long vDegree = graph.getDegree(graph.neighborAt(i));
+					paths += (uDegree - 1) * (vDegree - 1);
+					long t = edgeTriangles[i];
+					diamonds += t * (t - 1) / 2;
+				}
+				tailedTriangles += vertexTriangles[u] * (uDegree - 2);
+			}
+			// a path u-v-w whose middle vertex is a triangle's is counted once
+			// from each of its three edges
+			paths -= 3 * triangles;
+			cycles = cycles(graph);
+		}
+
+		// counts each 4-cycle once, from its highest vertex u and the vertex
+		// w opposite it, as a pair of paths u-v-w through lower vertices
+		private static long cycles(CompactGraph graph) {
+			int size = graph.getSize();
+			int[] paths = new int[size];
+			int[] touched = new int[size];
+			long result = 0;
+			for (int u = 0; u < size; u++) {
+				int touchedCount = 0;
+				int below = graph.firstNeighborAbove(u, u);
+				for (int i = graph.begin(u); i < below; i++) {
+					int v = graph.neighborAt(i);
+					int end = graph.firstNeighborAbove(v, u - 1);
+					for (int j = graph.begin(v); j < end; j++) {
+						int w = graph.neighborAt(j);
+						if (paths[w]++ == 0) {
+							touched[touchedCount++] = w;
+						}
+					}
+				}
+				for (int t = 0; t < touchedCount; t++) {
+					long c = paths[touched[t]];
+					result += c * (c - 1) / 2;
+					paths[touched[t]] = 0;
+				}
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,244 @@
+package edu.uwb.nemolib;
+
+import java.io.Serializable;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * An immutable, compressed sparse row (CSR) representation of a network graph.
+ * The neighbors of every vertex are stored contiguously and in ascending order
+ * in a single array, so adjacency scans are sequential reads and the whole
+ * graph costs one int per vertex plus two ints per edge. A CompactGraph is
+ * normally obtained from a fully loaded Graph via Graph.toCompactGraph(), or
+ * from a binary graph file via CompactGraphFile.load(), in which case the
+ * arrays are read in place from the memory-mapped file.<p>
+ * Graphs on the heap keep their CSR arrays as int arrays. Only mapped graphs,
+ * a package-private subclass, read through buffers, so enumeration of heap
+ * graphs never pays for buffer access.
+ */
+public class CompactGraph implements Serializable {
+
+	// the neighbors of vertex v are neighbors[offsets[v]] up to (but not
+	// including) neighbors[offsets[v + 1]], sorted in ascending order; both
+	// are null in a MappedCompactGraph
+	private final int[] offsets;
+	private final int[] neighbors;
+
+	/**
+	 * Construct a CompactGraph from prepared CSR arrays. The neighbor range of
+	 * every vertex must already be sorted, free of duplicates and symmetric.
+	 * @param offsets the start of each vertex's neighbor range, plus a final
+	 *                entry equal to neighbors.length
+	 * @param neighbors the concatenated neighbor ranges of all vertices
+	 */
+	CompactGraph(int[] offsets, int[] neighbors) {
+		this.offsets = offsets;
+		this.neighbors = neighbors;
+	}
+
+	// for subclasses that store the CSR arrays elsewhere
+	CompactGraph() {
+		this.offsets = null;
+		this.neighbors = null;
+	}
+
+	/**
+	 * Build a CompactGraph from a list of edges. Self edges are dropped and
+	 * repeated edges are kept once.
+	 * @param vertexCount the number of vertices
+	 * @param endpoints the endpoints of edge i at indices 2i and 2i + 1
+	 * @param edgeCount the number of edges in endpoints
+	 * @return the CompactGraph
+	 */
+	static CompactGraph fromEdges(int vertexCount, int[] endpoints,
+	                              int edgeCount) {
+		int[] offsets = new int[vertexCount + 1];
+		for (int i = 0; i < edgeCount; i++) {
+			int a = endpoints[2 * i];
+			int b = endpoints[2 * i + 1];
+			if (a != b) {
+				offsets[a + 1]++;
+				offsets[b + 1]++;
+			}
+		}
+		for (int v = 0; v < vertexCount; v++) {
+			offsets[v + 1] += offsets[v];
+		}
+
+		int[] neighbors = new int[offsets[vertexCount]];
+		int[] next = Arrays.copyOf(offsets, vertexCount);
+		for (int i = 0; i < edgeCount; i++) {
+			int a = endpoints[2 * i];
+			int b = endpoints[2 * i + 1];
+			if (a != b) {
+				neighbors[next[a]++] = b;
+				neighbors[next[b]++] = a;
+			}
+		}
+
+		// sort every neighbor range and squeeze out repeated neighbors
+		int size = 0;
+		int start = 0;
+		for (int v = 0; v < vertexCount; v++) {
+			int end = offsets[v + 1];
+			Arrays.sort(neighbors, start, end);
+			offsets[v] = size;
+			for (int i = start; i < end; i++) {
+				if (i == start || neighbors[i] != neighbors[i - 1]) {
+					neighbors[size++] = neighbors[i];
+				}
+			}
+			start = end;
+		}
+		offsets[vertexCount] = size;
+		if (size < neighbors.length) {
+			neighbors = Arrays.copyOf(neighbors, size);
+		}
+		return new CompactGraph(offsets, neighbors);
+	}
+
+	/**
+	 * Renumber the vertices of this CompactGraph.
+	 * @param permutation the new number of each vertex, a permutation of
+	 *                    0 to getSize() - 1
+	 * @return the renumbered graph
+	 */
+	CompactGraph permute(int[] permutation) {
+		int size = getSize();
+		int[] inverse = new int[size];
+		for (int v = 0; v < size; v++) {
+			inverse[permutation[v]] = v;
+		}
+		int[] newOffsets = new int[size + 1];
+		for (int v = 0; v < size; v++) {
+			newOffsets[v + 1] = newOffsets[v] + getDegree(inverse[v]);
+		}
+		int[] newNeighbors = new int[newOffsets[size]];
+		for (int v = 0; v < size; v++) {
+			int old = inverse[v];
+			int index = newOffsets[v];
+			for (int i = begin(old); i < end(old); i++) {
+				newNeighbors[index++] = permutation[neighborAt(i)];
+			}
+			Arrays.sort(newNeighbors, newOffsets[v], newOffsets[v + 1]);
+		}
+		return new CompactGraph(newOffsets, newNeighbors);
+	}
+
+	/**
+	 * Get the number of vertices in this CompactGraph.
+	 * @return the number of vertices in this graph
+	 */
+	public int getSize() {
+		return offsets.length - 1;
+	}
+
+	/**
+	 * Get the number of (undirected) edges in this CompactGraph.
+	 * @return the number of edges in this graph
+	 */
+	public int getEdgeCount() {
+		return neighborCount() / 2;
+	}
+
+	/**
+	 * Get the degree of a vertex.
+	 * @param vertex the target vertex
+	 * @return the number of vertices adjacent to the target vertex
+	 */
+	public int getDegree(int vertex) {
+		return end(vertex) - begin(vertex);
+	}
+
+	/**
+	 * Get the neighbors of a vertex in ascending order.
+	 * @param vertex the target vertex
+	 * @return a copy of the target vertex's neighbors
+	 */
+	public int[] getNeighbors(int vertex) {
+		int[] result = new int[getDegree(vertex)];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = neighborAt(begin(vertex) + i);
+		}
+		return result;
+	}
+
+	/**
+	 * Check whether an edge exists between two vertices.
+	 * @param vertexA one of the vertices
+	 * @param vertexB the other vertex
+	 * @return true if vertexA and vertexB are adjacent; false otherwise
+	 */
+	public boolean isAdjacent(int vertexA, int vertexB) {
+		// search the shorter of the two neighbor ranges
+		if (getDegree(vertexA) > getDegree(vertexB)) {
+			int temp = vertexA;
+			vertexA = vertexB;
+			vertexB = temp;
+		}
+		int index = firstNeighborAbove(vertexA, vertexB - 1);
+		return index < end(vertexA) && neighborAt(index) == vertexB;
+	}
+
+	// index of the first neighbor of the given vertex
+	int begin(int vertex) {
+		return offsets[vertex];
+	}
+
+	// index one past the last neighbor of the given vertex
+	int end(int vertex) {
+		return offsets[vertex + 1];
+	}
+
+	// neighbor stored at the given index of the neighbor array
+	int neighborAt(int index) {
+		return neighbors[index];
+	}
+
+	// length of the neighbor array, twice the number of edges
+	int neighborCount() {
+		return neighbors.length;
+	}
+
+	// index of the first neighbor of vertex that is greater than bound, or
+	// end(vertex) if there is none
+	int firstNeighborAbove(int vertex, int bound) {
+		int low = begin(vertex);
+		int high = end(vertex);
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (neighborAt(mid) <= bound) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Return a string representation of this CompactGraph, one edge per line.
+	 * @return a string representation of this graph
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int vertex = 0; vertex < getSize(); vertex++) {
+			for (int i = firstNeighborAbove(vertex, vertex); i < end(vertex);
+			     i++) {
+				sb.append('[').append(vertex).append(", ")
+						.append(neighborAt(i)).append(']').append('\n');
+			}
+		}
+		return sb.toString();
+	}
+
+	// the raw CSR arrays, for writing the graph to a file
+	IntBuffer offsets() {
+		return IntBuffer.wrap(offsets).asReadOnlyBuffer();
+	}
+
+	IntBuffer neighbors() {
+		return IntBuffer.wrap(neighbors).asReadOnlyBuffer();
+	}
+}
@@ -0,0 +1,225 @@
+package edu.uwb.nemolib;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Reads and writes CompactGraphs in a binary CSR file format that can be
+ * memory-mapped, so that a graph is ready for enumeration as soon as the
+ * file is mapped, and processes analyzing the same graph share its pages in
+ * the operating system's page cache.<p>
+ * All integers are little-endian. The file consists of:
+ * <ul>
+ *     <li>a 24 byte header: the magic number 0x4E435352, the format
+ *     version, a flags word (bit 0 is set if vertex names are present), the
+ *     number of vertices n as an int, and the number of neighbor entries m
+ *     (twice the number of edges) as a long</li>
+ *     <li>the n + 1 offsets of the CSR neighbor ranges, as ints</li>
+ *     <li>the m neighbors, as ints, each vertex's range sorted ascending</li>
+ *     <li>optionally, the name of every vertex in vertex order, in the
+ *     format of DataOutput.writeUTF</li>
+ * </ul>
+ * Files are trusted: load() checks the header and file length but does not
+ * check every neighbor range.
+ */
+public final class CompactGraphFile {
+
+	private static final int MAGIC = 0x4E435352;
+	private static final int VERSION = 1;
+	private static final int HAS_NAMES = 1;
+	private static final int HEADER_BYTES = 24;
+
+	private static final int BUFFER_BYTES = 1 << 16;
+
+	// prevent instantiation
+	private CompactGraphFile() { throw new AssertionError(); }
+
+	/**
+	 * Write a CompactGraph to a binary graph file.
+	 * @param graph the graph to write
+	 * @param names the name of each vertex, or null to omit the names
+	 * @param filename the file to create or overwrite
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(CompactGraph graph, String[] names,
+	                         String filename) throws IOException {
+		if (names != null && names.length != graph.getSize()) {
+			throw new IllegalArgumentException("Expected " + graph.getSize() +
+					" vertex names but got " + names.length);
+		}
+		try (FileChannel channel = FileChannel.open(Paths.get(filename),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			IntBuffer offsets = graph.offsets();
+			IntBuffer neighbors = graph.neighbors();
+			buffer.putInt(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putInt(names != null ? HAS_NAMES : 0);
+			buffer.putInt(graph.getSize());
+			buffer.putLong(neighbors.remaining());
+			writeInts(channel, buffer, offsets);
+			writeInts(channel, buffer, neighbors);
+			drain(channel, buffer);
+
+			if (names != null) {
+				OutputStream out = Channels.newOutputStream(channel);
+				DataOutputStream data = new DataOutputStream(
+						new BufferedOutputStream(out, BUFFER_BYTES));
+				for (String name : names) {
+					data.writeUTF(name);
+				}
+				data.flush();
+			}
+		}
+	}
+
+	/**
+	 * Convert an edge list, which may be gzip-compressed, into a binary graph
+	 * file. The edge list is parsed in parallel on the common ForkJoinPool,
+	 * vertices are numbered as by GraphParser.parseCompact(), and their
+	 * names are kept in the file.
+	 * @param edgeListFilename the edge list to convert
+	 * @param filename the binary graph file to create or overwrite
+	 * @throws IOException if either file cannot be accessed
+	 */
+	public static void convert(String edgeListFilename, String filename)
+			throws IOException {
+		EdgeListParser parser = new EdgeListParser(ForkJoinPool.commonPool());
+		parser.parse(edgeListFilename);
+		write(parser.graph(), parser.names(), filename);
+	}
+
+	/**
+	 * Map a binary graph file into memory. The returned CompactGraph reads
+	 * the file's pages in place; no copy of the graph is made on the heap.
+	 * @param filename the binary graph file
+	 * @return the graph stored in the file
+	 * @throws IOException if the file cannot be read or is not a binary
+	 * graph file
+	 */
+	public static CompactGraph load(String filename) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(filename),
+				StandardOpenOption.READ)) {
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					Math.min(HEADER_BYTES, channel.size()))
+					.order(ByteOrder.LITTLE_ENDIAN);
+			if (header.remaining() < HEADER_BYTES ||
+					header.getInt() != MAGIC || header.getInt() != VERSION) {
+				throw new IOException(filename +
+						" is not a binary graph file");
+			}
+			header.getInt(); // flags
+			int vertexCount = header.getInt();
+			long neighborCount = header.getLong();
+
+			long offsetsBytes = 4L * (vertexCount + 1);
+			long neighborsBytes = 4L * neighborCount;
+			if (vertexCount < 0 || neighborCount < 0 ||
+					channel.size() < HEADER_BYTES + offsetsBytes +
+							neighborsBytes) {
+				throw new IOException(filename + " is truncated");
+			}
+			if (offsetsBytes > Integer.MAX_VALUE ||
+					neighborsBytes > Integer.MAX_VALUE) {
+				throw new IOException(filename + " is too large to map");
+			}
+			IntBuffer offsets = map(channel, HEADER_BYTES, offsetsBytes);
+			IntBuffer neighbors = map(channel, HEADER_BYTES + offsetsBytes,
+					neighborsBytes);
+			if (offsets.get(0) != 0 || offsets.get(vertexCount) !=
+					neighborCount) {
+				throw new IOException(filename +
+						" has inconsistent offsets");
+			}
+			return new MappedCompactGraph(offsets, neighbors);
+		}
+	}
+
+	/**
+	 * Read the vertex names stored in a binary graph file.
+	 * @param filename the binary graph file
+	 * @return the name of each vertex, or null if the file has no names
+	 * @throws IOException if the file cannot be read or is not a binary
+	 * graph file
+	 */
+	public static String[] readNames(String filename) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(filename),
+				StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			while (header.hasRemaining() && channel.read(header) >= 0) {
+				// keep reading until the header is complete
+			}
+			((Buffer) header).flip();
+			if (header.remaining() < HEADER_BYTES ||
+					header.getInt() != MAGIC || header.getInt() != VERSION) {
+				throw new IOException(filename +
+						" is not a binary graph file");
+			}
+			int flags = header.getInt();
+			int vertexCount = header.getInt();
+			long neighborCount = header.getLong();
+			if ((flags & HAS_NAMES) == 0) {
+				return null;
+			}
+
+			channel.position(HEADER_BYTES + 4L * (vertexCount + 1) +
+					4L * neighborCount);
+			InputStream in = Channels.newInputStream(channel);
+			DataInputStream data = new DataInputStream(
+					new BufferedInputStream(in, BUFFER_BYTES));
+			String[] names = new String[vertexCount];
+			for (int i = 0; i < vertexCount; i++) {
+				names[i] = data.readUTF();
+			}
+			return names;
+		}
+	}
+
+	private static IntBuffer map(FileChannel channel, long position,
+	                             long bytes) throws IOException {
+		return channel.map(FileChannel.MapMode.READ_ONLY, position, bytes)
+				.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+	}
+
+	// copies the remaining ints of source into the channel through buffer
+	private static void writeInts(FileChannel channel, ByteBuffer buffer,
+	                              IntBuffer source) throws IOException {
+		while (source.hasRemaining()) {
+			if (buffer.remaining() < 4) {
+				drain(channel, buffer);
+			}
+			IntBuffer ints = buffer.asIntBuffer();
+			int count = Math.min(ints.remaining(), source.remaining());
+			for (int i = 0; i < count; i++) {
+				ints.put(source.get());
+			}
+			((Buffer) buffer).position(buffer.position() + 4 * count);
+		}
+	}
+
+	private static void drain(FileChannel channel, ByteBuffer buffer)
+			throws IOException {
+		((Buffer) buffer).flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		((Buffer) buffer).clear();
+	}
+}
@@ -2,41 +2,47 @@ package edu.uwb.nemolib;
 
 import java.io.Serializable;
 import java.lang.IllegalStateException;
+import java.util.Arrays;
 import java.util.NoSuchElementException;
 
+/**
+ * A set of non-negative ints stored in a single open-addressing table. The
+ * table length is always a power of two, elements are placed by linear
+ * probing from a mixed hash, the table doubles once it is more than half
+ * full, and removal shifts the rest of the probe run back instead of leaving
+ * tombstones.
+ */
 class CompactHashSet implements Serializable{
 
-    private static final int DEFAULT_CAPACITY = 29;
-    private static final int STARTING_BUCKET_SIZE = 4;
+    private static final int DEFAULT_CAPACITY = 8;
     private static final int NULL_ELEMENT = -1;
 
-    private int[][] table;
+    private int[] table;
+    private int mask;
     private int size;
 
     CompactHashSet() {
         this(DEFAULT_CAPACITY);
     }
 
-    CompactHashSet(int tableSize) {
-        if (tableSize < 0) {
+    CompactHashSet(int expectedSize) {
+        if (expectedSize < 0) {
             throw new IllegalArgumentException(
                 "Argument out of range (must be non-negative).");
         }
 
         size = 0;
-        table = new int[(tableSize == 0 ? 1 : tableSize)][];
-        for (int i = 0; i < table.length; i++) {
-            table[i] = null;
-        }
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    private CompactHashSet(CompactHashSet source) {
+        this.table = source.table.clone();
+        this.mask = source.mask;
+        this.size = source.size;
     }
 
     CompactHashSet copy() {
-        CompactHashSet copy = new CompactHashSet(table.length);
-        Iter iter = iterator();
-        while (iter.hasNext()) {
-            copy.add(iter.next());
-        }
-        return copy;
+        return new CompactHashSet(this);
     }
 
     int size() {
@@ -53,60 +59,27 @@ class CompactHashSet implements Serializable{
                 "Argument out of range (must be non-negative).");
         }
 
-        int bucket = hash(element) % table.length;
-        if (table[bucket] == null) {
-
-            // create a bucket if it does not exist
-            table[bucket] = new int[STARTING_BUCKET_SIZE];
-            for (int i = 1; i < table[bucket].length; i++) {
-                table[bucket][i] = NULL_ELEMENT;
-            }
-
-            // addSubgraph element to bucket
-            table[bucket][0] = element;
-            size++;
-            return;
-        }
-
-        // check bucket if element already exists
-        for (int i = 0; i < table[bucket].length; i++) {
-            if (table[bucket][i] == element) {
+        int slot = hash(element) & mask;
+        while (table[slot] != NULL_ELEMENT) {
+            if (table[slot] == element) {
                 return;
             }
+            slot = (slot + 1) & mask;
         }
+        table[slot] = element;
+        size++;
 
-        // try to addSubgraph element if there is space
-        for (int i = 0; i < table[bucket].length; i++) {
-            if (table[bucket][i] == NULL_ELEMENT) {
-                table[bucket][i] = element;
-                size++;
-                return;
-            }
+        // keep the load factor at or below one half
+        if (size > (table.length >>> 1)) {
+            rehash(table.length << 1);
         }
-
-        // otherwise grow the bucket and addSubgraph to first new position
-        int previousLength = table[bucket].length;
-        grow(bucket);
-        table[bucket][previousLength] = element;
-        size++;
     }
 
     boolean contains(int element) {
         if (element < 0) {
             return false;
         }
-
-        int bucket = hash(element) % table.length;
-        if (table[bucket] == null) {
-            return false;
-        } else {
-            for (int index = 0; index < table[bucket].length; index++) {
-                if (table[bucket][index] == element) {
-                    return true;
-                }
-            }
-            return false;
-        }
+        return indexOf(element) != -1;
     }
 
     boolean remove(int element) {
@@ -114,44 +87,97 @@ class CompactHashSet implements Serializable{
             return false;
         }
 
-        int bucket = hash(element) % table.length;
-        if (table[bucket] == null) {
+        int slot = indexOf(element);
+        if (slot == -1) {
             return false;
-        } else {
-            for (int index = 0; index < table[bucket].length; index++) {
-                if (table[bucket][index] == element) {
-                    table[bucket][index] = NULL_ELEMENT;
-                    size--;
-                    return true;
-                }
+        }
+        removeAt(slot, null);
+        return true;
+    }
+
+    // returns the slot holding the element, or -1 if it is absent
+    private int indexOf(int element) {
+        int slot = hash(element) & mask;
+        while (table[slot] != NULL_ELEMENT) {
+            if (table[slot] == element) {
+                return slot;
             }
-            return false;
+            slot = (slot + 1) & mask;
         }
+        return -1;
     }
 
-    // increase the getSize of the bucket at the given index
-    private void grow(int bucketIndex) {
-        // double the bucket getSize
-        int[] newBucket = new int[table[bucketIndex].length * 2];
+    // empties the given slot and shifts later members of the same probe run
+    // back so that every element stays reachable from its home slot. Any
+    // element moved from below the hole to at or above it (which only
+    // happens when the run wraps around the end of the table) is reported
+    // to the iterator that is walking the table downward, if there is one.
+    private void removeAt(int slot, Iter iter) {
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (table[next] != NULL_ELEMENT) {
+            int home = hash(table[next]) & mask;
+            // the element may fill the hole only if its home slot is not
+            // cyclically between the hole and its current position
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                if (iter != null && next < slot && hole >= slot) {
+                    iter.revisit(table[next]);
+                }
+                table[hole] = table[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table[hole] = NULL_ELEMENT;
+        size--;
+    }
 
-        int index = 0;
-        for (; index < table[bucketIndex].length; index++) {
-            newBucket[index] = table[bucketIndex][index];
+    private void rehash(int newLength) {
+        int[] oldTable = table;
+        allocate(newLength);
+        for (int element : oldTable) {
+            if (element != NULL_ELEMENT) {
+                int slot = hash(element) & mask;
+                while (table[slot] != NULL_ELEMENT) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = element;
+            }
         }
-        for (; index < newBucket.length; index++) {
-            newBucket[index] = NULL_ELEMENT;
+    }
+
+    private void allocate(int length) {
+        table = new int[length];
+        Arrays.fill(table, NULL_ELEMENT);
+        mask = length - 1;
+    }
+
+    // smallest power of two table that holds expectedSize elements at a load
+    // factor of at most one half
+    private static int tableSizeFor(int expectedSize) {
+        int length = 2;
+        while (length < (1 << 30) && (length >>> 1) < expectedSize) {
+            length <<= 1;
         }
-        table[bucketIndex] = newBucket;
+        return length;
     }
 
-    private int hash(int element) {
-        return element;
+    // spreads consecutive vertex ids across the table (Fibonacci hashing
+    // followed by a fold of the high bits into the low bits)
+    static int hash(int element) {
+        int h = element * 0x9E3779B9;
+        return h ^ (h >>> 16);
     }
 
     Iter iterator() {
         return new Iter(this);
     }
 
+    // an iterator whose remove() is not supported
+    Iter readOnlyIterator() {
+        return new Iter(this, false);
+    }
+
     @Override
     public String toString() {
         String s = "[";
@@ -163,59 +189,97 @@ class CompactHashSet implements Serializable{
         return s;
     }
 
+    /**
+     * Walks the table from the highest slot downward. Removing the last
+     * returned element only ever moves elements that have already been
+     * returned, except when a probe run wraps around the end of the table;
+     * such elements are queued and returned once the walk is finished.
+     */
     static class Iter {
 
         private CompactHashSet set;
-        private int row;
-        private int col;
-        private int prevCol;
-        private int prevRow;
+        private int slot;
+        private int nextSlot;
+        private int[] revisits;
+        private int revisitCount;
+        private int revisitIndex;
+        private boolean canRemove;
+        private boolean lastWasRevisit;
+        private int lastElement;
+        private final boolean removable;
 
         public Iter(CompactHashSet set) {
-            this.set = set;
-            row = 0;
-            col = -1;
-            prevRow = row;
-            prevCol = col;
+            this(set, true);
+        }
 
-            moveToNext();
+        Iter(CompactHashSet set, boolean removable) {
+            this.set = set;
+            this.removable = removable;
+            slot = set.table.length;
+            nextSlot = -2;
+            revisitCount = 0;
+            revisitIndex = 0;
+            canRemove = false;
         }
 
+        // locates the next occupied slot below the current one, or -1
         private void moveToNext() {
-            col++;
-            while (row < set.table.length) {
-                if (set.table[row] != null && col < set.table[row].length) {
-                    for (; col < set.table[row].length; col++) {
-                        if (set.table[row][col] != NULL_ELEMENT) {
-                            return;
-                        }
-                    }
-                }
-                col = 0;
-                row++;
+            if (nextSlot != -2) {
+                return;
+            }
+            nextSlot = slot - 1;
+            while (nextSlot >= 0 &&
+                    set.table[nextSlot] == NULL_ELEMENT) {
+                nextSlot--;
             }
         }
 
+        private void revisit(int element) {
+            if (revisits == null) {
+                revisits = new int[4];
+            } else if (revisitCount == revisits.length) {
+                revisits = Arrays.copyOf(revisits, revisitCount * 2);
+            }
+            revisits[revisitCount++] = element;
+        }
+
         public boolean hasNext() {
-            return row < set.table.length;
+            moveToNext();
+            return nextSlot >= 0 || revisitIndex < revisitCount;
         }
 
         public int next() throws NoSuchElementException {
             if (!hasNext()) {
                 throw new NoSuchElementException();
             }
-            prevRow = row;
-            prevCol = col;
-            moveToNext();
-            return set.table[prevRow][prevCol];
+            canRemove = true;
+            if (nextSlot >= 0) {
+                slot = nextSlot;
+                nextSlot = -2;
+                lastWasRevisit = false;
+                lastElement = set.table[slot];
+            } else {
+                lastWasRevisit = true;
+                lastElement = revisits[revisitIndex++];
+            }
+            return lastElement;
         }
 
         public void remove() throws IllegalStateException {
-            if (prevCol == -1 || set.table[prevRow][prevCol] == NULL_ELEMENT) {
+            if (!removable) {
+                throw new UnsupportedOperationException();
+            }
+            if (!canRemove) {
                 throw new IllegalStateException();
             }
-            set.table[prevRow][prevCol] = NULL_ELEMENT;
-            set.size--;
+            canRemove = false;
+            if (lastWasRevisit) {
+                // the table walk is over, so nothing can be skipped
+                set.remove(lastElement);
+            } else {
+                set.removeAt(slot, this);
+                nextSlot = -2;
+            }
         }
     }
 }
@@ -0,0 +1,176 @@
+package edu.uwb.nemolib;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Generates random graphs with the degree sequence of an input graph using
+ * the configuration model: every vertex receives one stub per unit of
+ * degree, the stubs are shuffled with a Fisher-Yates shuffle, and
+ * consecutive stubs are paired into edges. Generation takes time linear in
+ * the number of edges, and the pairing is written straight into the CSR
+ * layout of the resulting CompactGraph.<p>
+ * A pairing can contain self loops and repeated edges, which a simple graph
+ * cannot hold. The Policy decides what becomes of them.<p>
+ * The random graphs of a chain are independent of each other.
+ */
+public final class ConfigurationModelGenerator extends RandomGraphGenerator {
+
+	/**
+	 * What to do with the self loops and repeated edges of a pairing.
+	 */
+	public enum Policy {
+		/**
+		 * Drop self loops and keep repeated edges once. This is the erased
+		 * configuration model; high degree vertices can lose a few edges.
+		 */
+		ERASE,
+
+		/**
+		 * Replace every self loop and repeated edge by rewiring it with a
+		 * randomly chosen edge, which preserves all degrees. An edge that
+		 * cannot be rewired after MAX_REPAIR_ATTEMPTS tries is erased.
+		 */
+		REPAIR
+	}
+
+	/**
+	 * The number of rewiring attempts made for each self loop or repeated
+	 * edge under Policy.REPAIR.
+	 */
+	public static final int MAX_REPAIR_ATTEMPTS = 100;
+
+	private final Policy policy;
+
+	/**
+	 * Construct a ConfigurationModelGenerator.
+	 * @param policy the treatment of self loops and repeated edges
+	 */
+	public ConfigurationModelGenerator(Policy policy) {
+		this.policy = policy;
+	}
+
+	/**
+	 * Generate a random graph with the degree sequence of the input graph.
+	 * The same input graph and seed always produce the same random graph.
+	 * @param inputGraph the graph from which to take the degree sequence
+	 * @param seed the seed of the random pairing
+	 * @return a random CompactGraph of the same order as the input graph
+	 */
+	public CompactGraph generate(CompactGraph inputGraph, long seed) {
+		return generate(degrees(inputGraph), new SplittableRandom(seed));
+	}
+
+	@Override
+	public Chain newChain(CompactGraph targetGraph, long seed) {
+		int[] degrees = degrees(targetGraph);
+		SplittableRandom random = new SplittableRandom(seed);
+		return () -> generate(degrees, random);
+	}
+
+	/**
+	 * Generate a random graph with the given degree sequence.
+	 * @param degrees the degree of every vertex
+	 * @param random the source of randomness
+	 * @return a random CompactGraph with one vertex per degree
+	 */
+	CompactGraph generate(int[] degrees, SplittableRandom random) {
+		int stubCount = 0;
+		for (int degree : degrees) {
+			stubCount += degree;
+		}
+		int[] stubs = new int[stubCount];
+		int index = 0;
+		for (int vertex = 0; vertex < degrees.length; vertex++) {
+			for (int i = 0; i < degrees[vertex]; i++) {
+				stubs[index++] = vertex;
+			}
+		}
+		for (int i = stubCount - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int temp = stubs[i];
+			stubs[i] = stubs[j];
+			stubs[j] = temp;
+		}
+
+		// stubs 2i and 2i + 1 form edge i; with an odd number of stubs the
+		// last one stays unpaired
+		int edgeCount = stubCount / 2;
+		if (policy == Policy.REPAIR) {
+			repair(stubs, edgeCount, random);
+		}
+		return CompactGraph.fromEdges(degrees.length, stubs, edgeCount);
+	}
+
+	// rewires self loops and repeated edges with random partner edges
+	private static void repair(int[] endpoints, int edgeCount,
+	                           SplittableRandom random) {
+		// multiplicity of every edge, and the edges that break simplicity
+		LongLongHashMap multiplicities = new LongLongHashMap();
+		int[] invalid = new int[16];
+		int invalidCount = 0;
+		for (int i = 0; i < edgeCount; i++) {
+			int a = endpoints[2 * i];
+			int b = endpoints[2 * i + 1];
+			multiplicities.add(key(a, b), 1);
+			if (a == b || multiplicities.get(key(a, b)) > 1) {
+				if (invalidCount == invalid.length) {
+					invalid = Arrays.copyOf(invalid, invalidCount * 2);
+				}
+				invalid[invalidCount++] = i;
+			}
+		}
+
+		for (int n = 0; n < invalidCount; n++) {
+			int i = invalid[n];
+			for (int attempt = 0; attempt < MAX_REPAIR_ATTEMPTS &&
+					isInvalid(endpoints, i, multiplicities); attempt++) {
+				int j = random.nextInt(edgeCount);
+				int a = endpoints[2 * i];
+				int b = endpoints[2 * i + 1];
+				int c = endpoints[2 * j];
+				int d = endpoints[2 * j + 1];
+				if (random.nextBoolean()) {
+					int temp = c;
+					c = d;
+					d = temp;
+				}
+
+				// replace a-b and c-d by a-c and b-d if both are new edges
+				if (j == i || a == c || b == d || key(a, c) == key(b, d) ||
+						multiplicities.get(key(a, c)) > 0 ||
+						multiplicities.get(key(b, d)) > 0) {
+					continue;
+				}
+				multiplicities.add(key(a, b), -1);
+				multiplicities.add(key(endpoints[2 * j],
+						endpoints[2 * j + 1]), -1);
+				multiplicities.add(key(a, c), 1);
+				multiplicities.add(key(b, d), 1);
+				endpoints[2 * i + 1] = c;
+				endpoints[2 * j] = b;
+				endpoints[2 * j + 1] = d;
+			}
+		}
+	}
+
+	private static int[] degrees(CompactGraph graph) {
+		int[] degrees = new int[graph.getSize()];
+		for (int vertex = 0; vertex < degrees.length; vertex++) {
+			degrees[vertex] = graph.getDegree(vertex);
+		}
+		return degrees;
+	}
+
+	private static boolean isInvalid(int[] endpoints, int edge,
+	                                 LongLongHashMap multiplicities) {
+		int a = endpoints[2 * edge];
+		int b = endpoints[2 * edge + 1];
+		return a == b || multiplicities.get(key(a, b)) > 1;
+	}
+
+	// the key of the undirected edge a-b
+	private static long key(int a, int b) {
+		return a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+	}
+}
@@ -20,10 +20,13 @@ public class ESU implements SubgraphEnumerator
 	 *                  Subgraphs will be stored.
 	 * @param subgraphSize the getSize of the target Subgraphs
 	 */
-	public void enumerate(Graph graph, int subgraphSize,
+	@Override
+	public void enumerate(CompactGraph graph, int subgraphSize,
 	                      SubgraphEnumerationResult subgraphs) {
+		ESUEngine engine = new ESUEngine(graph, subgraphSize,
+				allVertices(subgraphSize), 0L, subgraphs);
 		for (int i = 0; i < graph.getSize(); i++) {
-			enumerate(graph, subgraphs, subgraphSize, i);
+			engine.enumerate(i);
 		}
 	}
 
@@ -39,11 +42,32 @@ public class ESU implements SubgraphEnumerator
 	 */
 	public void enumerate(Graph graph, SubgraphEnumerationResult subgraphs,
 	                      int subgraphSize, int vertex) {
+		enumerate(graph.toCompactGraph(), subgraphs, subgraphSize, vertex);
+	}
+
+	/**
+	 * Enumerates Subgraphs for one branch of the ESU tree starting at the
+	 * given node of a CompactGraph.
+	 *
+	 * @param graph the graph on which to execute ESU
+	 * @param subgraphs the data structure to which results are written
+	 * @param subgraphSize the target subgraph getSize to enumerate
+	 * @param vertex the graph vertex at which to execute
+	 */
+	public void enumerate(CompactGraph graph,
+	                      SubgraphEnumerationResult subgraphs,
+	                      int subgraphSize, int vertex) {
+		RandESU.enumerate(graph, subgraphs, subgraphSize,
+				allVertices(subgraphSize), vertex);
+	}
+
+	// the RAND-ESU probability vector that selects every tree node
+	static List<Double> allVertices(int subgraphSize) {
 		List<Double> probs = new ArrayList<>();
 		for (int i = 0; i < subgraphSize; ++i)
 		{
 			probs.add(1.0);
 		}
-		RandESU.enumerate(graph, subgraphs, subgraphSize, probs, vertex);
+		return probs;
 	}
 }
@@ -0,0 +1,291 @@
+package edu.uwb.nemolib;
+
+import java.util.List;
+
+/**
+ * ESUEngine walks branches of the (RAND-)ESU tree iteratively with an
+ * explicit stack. The extension of every tree level lives in a reusable int
+ * buffer, the Subgraph under construction is grown and shrunk in place, and
+ * a per-vertex bitmask of the subgraph positions each vertex is adjacent to
+ * answers exclusivity and supplies the adjacency of each vertex as it is
+ * added to the Subgraph. Once its buffers have grown to the
+ * size a graph needs, visiting a tree node allocates nothing.<p>
+ * Random decisions are keyed by the subgraph of each tree node, as described
+ * in RandESU, so an engine's sample depends only on its seed. The Subgraph
+ * handed to SubgraphEnumerationResult.addSubgraph is reused after the call
+ * returns. An ESUEngine is confined to a single thread.<p>
+ * The masks are cleared whenever a call returns, including when the result
+ * throws, so engines that run one after another on the same thread can be
+ * given the same mask array.
+ */
+final class ESUEngine {
+
+	// largest subgraph order whose positions fit into an int bitmask
+	static final int MAX_ORDER = Integer.SIZE;
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final CompactGraph graph;
+	private final int order;
+	private final double[] probs;
+	private final long seed;
+
+	// false if every probability is 1.0, so that no keys are needed
+	private final boolean sampled;
+	private final SubgraphEnumerationResult subgraphs;
+	private final Subgraph subgraph;
+
+	// masks[u] has bit p set if u is adjacent to the subgraph vertex at
+	// position p (only maintained for vertices greater than the root)
+	private final int[] masks;
+
+	// extensions[s] holds the extension of the subgraph while it contains s
+	// vertices; cursors[s] is the next extension vertex to add at that level
+	private final int[][] extensions;
+	private final int[] extensionSizes;
+	private final int[] cursors;
+
+	// keys[s] is the key of the tree node of the subgraph while it contains
+	// s vertices; keys[0] is the seed
+	private final long[] keys;
+
+	// examined[s] counts the extension vertices considered below tree nodes
+	// of s vertices, whether or not they were extended
+	private final long[] examined;
+
+	/**
+	 * Construct an engine that enumerates subgraphs of the given order.
+	 * @param graph the graph on which to execute ESU
+	 * @param order the size of the target subgraphs
+	 * @param probs the RAND-ESU probability vector
+	 * @param seed the seed of the random decisions
+	 * @param subgraphs the data structure to which results are written
+	 */
+	ESUEngine(CompactGraph graph, int order, List<Double> probs, long seed,
+	          SubgraphEnumerationResult subgraphs) {
+		this(graph, order, probs, seed, subgraphs, new int[graph.getSize()]);
+	}
+
+	/**
+	 * Construct an engine that uses the given neighbor masks, which must
+	 * be cleared and not in use by another engine while this one enumerates.
+	 * @param graph the graph on which to execute ESU
+	 * @param order the size of the target subgraphs
+	 * @param probs the RAND-ESU probability vector
+	 * @param seed the seed of the random decisions
+	 * @param subgraphs the data structure to which results are written
+	 * @param masks an array of at least graph.getSize() zeros
+	 */
+	ESUEngine(CompactGraph graph, int order, List<Double> probs, long seed,
+	          SubgraphEnumerationResult subgraphs, int[] masks) {
+		if (order < 2 || order > MAX_ORDER) {
+			throw new IllegalArgumentException("Subgraph size must be " +
+					"between 2 and " + MAX_ORDER);
+		}
+		this.graph = graph;
+		this.order = order;
+		this.probs = new double[probs.size()];
+		boolean sampled = false;
+		for (int i = 0; i < this.probs.length; i++) {
+			this.probs[i] = probs.get(i);
+			sampled |= this.probs[i] != 1.0;
+		}
+		this.seed = seed;
+		this.sampled = sampled;
+		this.keys = new long[order + 1];
+		keys[0] = seed;
+		this.subgraphs = subgraphs;
+		this.subgraph = new Subgraph(order);
+
+		this.masks = masks;
+
+		this.extensions = new int[order][];
+		for (int i = 1; i < order; i++) {
+			extensions[i] = new int[INITIAL_CAPACITY];
+		}
+		this.extensionSizes = new int[order];
+		this.cursors = new int[order];
+		this.examined = new long[order];
+	}
+
+	/**
+	 * Get the number of extension vertices considered below the tree nodes
+	 * of each size, over every call so far, which measures the work done.
+	 * @return the counts, indexed by the number of vertices of the node
+	 */
+	long[] examined() {
+		return examined.clone();
+	}
+
+	/**
+	 * Enumerates the branch of the ESU tree rooted at the given vertex.
+	 * @param vertex the graph vertex at which to execute
+	 */
+	void enumerate(int vertex) {
+		int begin = graph.firstNeighborAbove(vertex, vertex);
+		int end = graph.end(vertex);
+		int[] extension = ensureCapacity(1, end - begin);
+		int size = 0;
+		for (int i = begin; i < end; i++) {
+			int u = graph.neighborAt(i);
+			extension[size++] = u;
+			masks[u] = 1;
+		}
+		extensionSizes[1] = size;
+		subgraph.add(vertex, 0);
+		if (sampled) {
+			keys[1] = RandESU.nodeKey(seed, vertex);
+		}
+
+		try {
+			// randomly decide whether to extend
+			if (RandESU.shouldExtend(probs[1], keys[1])) {
+				run(1);
+			}
+		} finally {
+			reset();
+		}
+	}
+
+	/**
+	 * Enumerates the branch of the ESU tree below an interior tree node.
+	 * @param vertices the vertices of the node's subgraph, root first, in
+	 *                 the order in which they were added
+	 * @param size the number of vertices in the node's subgraph
+	 * @param extension the node's extension
+	 * @param extensionSize the number of vertices in the extension
+	 */
+	void enumerate(int[] vertices, int size, int[] extension,
+	               int extensionSize) {
+		int root = vertices[0];
+		for (int p = 0; p < size; p++) {
+			subgraph.add(vertices[p], p == 0 ? 0 : masks[vertices[p]]);
+			mark(vertices[p], root, 1 << p);
+			if (sampled) {
+				keys[p + 1] = RandESU.nodeKey(keys[p], vertices[p]);
+			}
+		}
+		try {
+			System.arraycopy(extension, 0,
+					ensureCapacity(size, extensionSize), 0, extensionSize);
+			extensionSizes[size] = extensionSize;
+			run(size);
+		} finally {
+			reset();
+		}
+	}
+
+	// walks the tree below the current subgraph, which has base vertices
+	private void run(int base) {
+		int root = subgraph.root();
+		int level = base;
+		cursors[level] = 0;
+		while (true) {
+			if (level == order - 1) {
+				emitLeaves(level);
+			} else if (cursors[level] < extensionSizes[level]) {
+				int w = extensions[level][cursors[level]++];
+				examined[level]++;
+				push(level, w, root);
+				if (sampled) {
+					keys[level + 1] = RandESU.nodeKey(keys[level], w);
+				}
+
+				// randomly choose whether or not to extend to the next level
+				// based on the probability vector provided.
+				if (RandESU.shouldExtend(probs[level], keys[level + 1])) {
+					level++;
+					cursors[level] = 0;
+				} else {
+					pop(level, root);
+				}
+				continue;
+			}
+
+			// this level is exhausted; return to the parent level
+			if (level == base) {
+				return;
+			}
+			level--;
+			pop(level, root);
+		}
+	}
+
+	// completes the subgraph with each vertex of the last extension
+	private void emitLeaves(int level) {
+		int[] extension = extensions[level];
+		double prob = probs[probs.length - 1];
+		examined[level] += extensionSizes[level];
+		for (int i = 0; i < extensionSizes[level]; i++) {
+			if (prob == 1.0 || RandESU.shouldExtend(prob,
+					RandESU.nodeKey(keys[level], extension[i]))) {
+				subgraph.add(extension[i], masks[extension[i]]);
+				subgraphs.addSubgraph(subgraph);
+				subgraph.removeLast();
+			}
+		}
+	}
+
+	// adds w at the given position and builds the next extension: the rest
+	// of the current extension plus every neighbor of w that is exclusive
+	// to the subgraph
+	private void push(int position, int w, int root) {
+		int remaining = extensionSizes[position] - cursors[position];
+		int begin = graph.firstNeighborAbove(w, root);
+		int end = graph.end(w);
+		int[] next = ensureCapacity(position + 1, remaining + end - begin);
+		System.arraycopy(extensions[position], cursors[position], next, 0,
+				remaining);
+
+		int size = remaining;
+		int bit = 1 << position;
+		for (int i = begin; i < end; i++) {
+			int u = graph.neighborAt(i);
+			if (masks[u] == 0) {
+				next[size++] = u;
+			}
+			masks[u] |= bit;
+		}
+		extensionSizes[position + 1] = size;
+		subgraph.add(w, masks[w]);
+	}
+
+	// removes the vertex at the given (last) position of the subgraph
+	private void pop(int position, int root) {
+		unmark(subgraph.get(position), root, 1 << position);
+		subgraph.removeLast();
+	}
+
+	// removes every vertex from the subgraph and clears the mask bits it
+	// set, wherever the walk stopped
+	private void reset() {
+		int root = subgraph.root();
+		for (int p = subgraph.size() - 1; p >= 0; p--) {
+			unmark(subgraph.get(p), root, 1 << p);
+			subgraph.removeLast();
+		}
+	}
+
+	private void mark(int vertex, int root, int bit) {
+		for (int i = graph.firstNeighborAbove(vertex, root);
+		     i < graph.end(vertex); i++) {
+			masks[graph.neighborAt(i)] |= bit;
+		}
+	}
+
+	private void unmark(int vertex, int root, int bit) {
+		for (int i = graph.firstNeighborAbove(vertex, root);
+		     i < graph.end(vertex); i++) {
+			masks[graph.neighborAt(i)] &= ~bit;
+		}
+	}
+
+	// returns the extension buffer of a level, grown to at least capacity
+	private int[] ensureCapacity(int level, int capacity) {
+		if (extensions[level].length < capacity) {
+			extensions[level] = new int[Math.max(capacity,
+					extensions[level].length * 2)];
+		}
+		return extensions[level];
+	}
+}
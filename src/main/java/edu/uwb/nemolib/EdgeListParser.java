@@ -0,0 +1,363 @@
+package edu.uwb.nemolib;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Parses an edge list into a CompactGraph on a ForkJoinPool. The calling
+ * thread streams the file in large blocks that end on a line boundary,
+ * decompressing it on the fly if it is gzip-compressed, and every block is
+ * tokenized by a pool worker straight from its bytes. Vertex names that are
+ * plain non-negative integers are parsed in place; only other names become
+ * Strings.<p>
+ * Vertices named by integers come first, in ascending order of their
+ * names, followed by the other vertices in order of first appearance, so
+ * the numbering does not depend on how the file was split between workers.
+ */
+final class EdgeListParser {
+
+	private static final int BLOCK_BYTES = 1 << 22;
+
+	// the largest integer name parsed in place; longer names are Strings
+	private static final int MAX_DIGITS = 18;
+
+	private final ForkJoinPool pool;
+
+	// parsed blocks in file order
+	private final List<Block> blocks = new ArrayList<>();
+
+	private long[] numericNames;
+	private List<String> stringNames;
+	private CompactGraph graph;
+
+	/**
+	 * Construct an EdgeListParser that parses blocks on the given pool.
+	 * @param pool the ForkJoinPool on which blocks are parsed
+	 */
+	EdgeListParser(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Parse an edge list file, which may be gzip-compressed.
+	 * @param filename the edge list file
+	 * @throws IOException if the file cannot be read or is malformed
+	 */
+	void parse(String filename) throws IOException {
+		try (InputStream in = open(filename)) {
+			read(in);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		assemble();
+	}
+
+	/**
+	 * Get the parsed graph.
+	 * @return the parsed graph
+	 */
+	CompactGraph graph() {
+		return graph;
+	}
+
+	/**
+	 * Get the name of every vertex of the parsed graph.
+	 * @return the names, indexed by vertex
+	 */
+	String[] names() {
+		String[] names = new String[numericNames.length + stringNames.size()];
+		for (int i = 0; i < numericNames.length; i++) {
+			names[i] = Long.toString(numericNames[i]);
+		}
+		for (int i = 0; i < stringNames.size(); i++) {
+			names[numericNames.length + i] = stringNames.get(i);
+		}
+		return names;
+	}
+
+	// opens the file, transparently decompressing gzip data
+	private static InputStream open(String filename) throws IOException {
+		FileChannel channel = FileChannel.open(Paths.get(filename),
+				StandardOpenOption.READ);
+		ByteBuffer magic = ByteBuffer.allocate(2);
+		channel.read(magic, 0);
+		InputStream in = Channels.newInputStream(channel);
+		if (magic.position() == 2 && (magic.get(0) & 0xFF) == 0x1F &&
+				(magic.get(1) & 0xFF) == 0x8B) {
+			return new GZIPInputStream(new BufferedInputStream(in,
+					BLOCK_BYTES), 1 << 16);
+		}
+		return in;
+	}
+
+	// reads the stream into line-aligned blocks and parses each on the pool,
+	// keeping a bounded number of blocks in flight
+	private void read(InputStream in) throws IOException {
+		int maxInFlight = 2 * pool.getParallelism() + 1;
+		Deque<ForkJoinTask<?>> inFlight = new ArrayDeque<>();
+		byte[] buffer = new byte[BLOCK_BYTES];
+		int length = 0;
+		boolean eof = false;
+		while (!eof) {
+			int count = in.read(buffer, length, buffer.length - length);
+			if (count < 0) {
+				eof = true;
+			} else {
+				length += count;
+				if (length < buffer.length) {
+					continue;
+				}
+			}
+
+			// hand every complete line to a worker and carry the rest over
+			int end = eof ? length : lastLineEnd(buffer, length);
+			if (end == 0) {
+				if (!eof) {
+					// a single line fills the block; grow it
+					buffer = Arrays.copyOf(buffer, buffer.length * 2);
+				}
+				continue;
+			}
+			Block block = new Block(buffer, end);
+			blocks.add(block);
+			if (inFlight.size() == maxInFlight) {
+				inFlight.removeFirst().join();
+			}
+			inFlight.addLast(pool.submit(block));
+
+			byte[] next = new byte[Math.max(BLOCK_BYTES, length - end)];
+			System.arraycopy(buffer, end, next, 0, length - end);
+			buffer = next;
+			length -= end;
+		}
+		while (!inFlight.isEmpty()) {
+			inFlight.removeFirst().join();
+		}
+	}
+
+	// returns the index one past the last newline in buffer[0..length)
+	private static int lastLineEnd(byte[] buffer, int length) {
+		for (int i = length - 1; i >= 0; i--) {
+			if (buffer[i] == '\n') {
+				return i + 1;
+			}
+		}
+		return 0;
+	}
+
+	// numbers the vertices and builds the graph from the parsed blocks
+	private void assemble() {
+		// integer names, sorted and without duplicates
+		int total = 0;
+		for (Block block : blocks) {
+			total += block.numericNames.length;
+		}
+		long[] numeric = new long[total];
+		total = 0;
+		for (Block block : blocks) {
+			System.arraycopy(block.numericNames, 0, numeric, total,
+					block.numericNames.length);
+			total += block.numericNames.length;
+		}
+		Arrays.parallelSort(numeric);
+		numericNames = unique(numeric, numeric.length);
+
+		// other names, in order of first appearance
+		Map<String, Integer> nameToIndex = new HashMap<>();
+		stringNames = new ArrayList<>();
+		for (Block block : blocks) {
+			block.localToGlobal = new int[block.strings.size()];
+			for (int i = 0; i < block.strings.size(); i++) {
+				String name = block.strings.get(i);
+				Integer index = nameToIndex.get(name);
+				if (index == null) {
+					index = numericNames.length + stringNames.size();
+					nameToIndex.put(name, index);
+					stringNames.add(name);
+				}
+				block.localToGlobal[i] = index;
+			}
+		}
+
+		// translate every block's endpoints in parallel
+		int[] starts = new int[blocks.size() + 1];
+		for (int i = 0; i < blocks.size(); i++) {
+			starts[i + 1] = starts[i] + blocks.get(i).size;
+		}
+		int[] endpoints = new int[starts[blocks.size()]];
+		List<RecursiveAction> tasks = new ArrayList<>();
+		for (int i = 0; i < blocks.size(); i++) {
+			Block block = blocks.get(i);
+			int start = starts[i];
+			tasks.add(new RecursiveAction() {
+				@Override
+				protected void compute() {
+					block.translate(numericNames, endpoints, start);
+				}
+			});
+		}
+		pool.invoke(new RecursiveAction() {
+			@Override
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+		blocks.clear();
+
+		graph = CompactGraph.fromEdges(
+				numericNames.length + stringNames.size(), endpoints,
+				endpoints.length / 2);
+	}
+
+	// removes adjacent duplicates from sorted[0..length)
+	private static long[] unique(long[] sorted, int length) {
+		int size = 0;
+		for (int i = 0; i < length; i++) {
+			if (i == 0 || sorted[i] != sorted[size - 1]) {
+				sorted[size++] = sorted[i];
+			}
+		}
+		return Arrays.copyOf(sorted, size);
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t' || b == '\r' || b == '\f' || b == 0x0B;
+	}
+
+	// one line-aligned block of the file and the edges parsed from it
+	private static final class Block extends RecursiveAction {
+		private byte[] bytes;
+		private final int length;
+
+		// the endpoints of the block's edges, in order: an integer name is
+		// stored as itself, any other name as -(local index + 1)
+		private long[] keys = new long[1024];
+		private int size;
+
+		private final List<String> strings = new ArrayList<>();
+		private final Map<String, Integer> stringToLocal = new HashMap<>();
+		private long[] numericNames;
+		private int[] localToGlobal;
+
+		Block(byte[] bytes, int length) {
+			this.bytes = bytes;
+			this.length = length;
+		}
+
+		@Override
+		protected void compute() {
+			int position = 0;
+			while (position < length) {
+				int lineEnd = position;
+				while (lineEnd < length && bytes[lineEnd] != '\n') {
+					lineEnd++;
+				}
+				parseLine(position, lineEnd);
+				position = lineEnd + 1;
+			}
+			bytes = null;
+
+			long[] names = new long[size];
+			int count = 0;
+			for (int i = 0; i < size; i++) {
+				if (keys[i] >= 0) {
+					names[count++] = keys[i];
+				}
+			}
+			Arrays.sort(names, 0, count);
+			numericNames = unique(names, count);
+		}
+
+		// adds the edge named by the first two tokens of a line; blank lines
+		// are skipped
+		private void parseLine(int start, int end) {
+			int first = skipWhitespace(start, end);
+			if (first == end) {
+				return;
+			}
+			int firstEnd = tokenEnd(first, end);
+			int second = skipWhitespace(firstEnd, end);
+			if (second == end) {
+				throw new UncheckedIOException(new IOException(
+						"Malformed edge list line: " + new String(bytes,
+								start, end - start, StandardCharsets.UTF_8)));
+			}
+			int secondEnd = tokenEnd(second, end);
+			if (size + 2 > keys.length) {
+				keys = Arrays.copyOf(keys, keys.length * 2);
+			}
+			keys[size++] = key(first, firstEnd);
+			keys[size++] = key(second, secondEnd);
+		}
+
+		private int skipWhitespace(int position, int end) {
+			while (position < end && isWhitespace(bytes[position])) {
+				position++;
+			}
+			return position;
+		}
+
+		private int tokenEnd(int position, int end) {
+			while (position < end && !isWhitespace(bytes[position])) {
+				position++;
+			}
+			return position;
+		}
+
+		// the key of the name bytes[start..end)
+		private long key(int start, int end) {
+			int digits = end - start;
+			boolean numeric = digits <= MAX_DIGITS &&
+					(digits == 1 || bytes[start] != '0');
+			long value = 0;
+			for (int i = start; i < end && numeric; i++) {
+				int digit = bytes[i] - '0';
+				numeric = digit >= 0 && digit <= 9;
+				value = value * 10 + digit;
+			}
+			if (numeric) {
+				return value;
+			}
+
+			String name = new String(bytes, start, digits,
+					StandardCharsets.UTF_8);
+			Integer local = stringToLocal.get(name);
+			if (local == null) {
+				local = strings.size();
+				stringToLocal.put(name, local);
+				strings.add(name);
+			}
+			return -(local + 1L);
+		}
+
+		// writes the vertex index of every key into endpoints from start
+		void translate(long[] numericNames, int[] endpoints, int start) {
+			for (int i = 0; i < size; i++) {
+				long key = keys[i];
+				endpoints[start + i] = key >= 0 ?
+						Arrays.binarySearch(numericNames, key) :
+						localToGlobal[(int) (-key - 1)];
+			}
+			keys = null;
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package edu.uwb.nemolib;
+
+import java.util.SplittableRandom;
+
+/**
+ * Generates random graphs with the degree sequence of an input graph by
+ * degree-preserving edge switching. A chain starts from the input graph and
+ * keeps its edges in a mutable edge list with a hash set of all edges, so
+ * that every switch is checked in constant time. Before each random graph
+ * is drawn, Q times the number of edges switches are attempted: two edges
+ * a-b and c-d are picked at random and replaced by a-d and c-b unless that
+ * would create a self loop or a repeated edge.<p>
+ * Consecutive random graphs of a chain are correlated, as in any Markov
+ * chain, but every one of them is a simple graph with exactly the degree
+ * sequence of the input graph. Independent chains should be used to draw
+ * random graphs concurrently.
+ */
+public final class EdgeSwitchingGenerator extends RandomGraphGenerator {
+
+	/**
+	 * The number of switches attempted per edge before each random graph if
+	 * none is given.
+	 */
+	public static final double DEFAULT_SWITCHES_PER_EDGE = 10.0;
+
+	private final double switchesPerEdge;
+
+	/**
+	 * Construct an EdgeSwitchingGenerator that attempts
+	 * DEFAULT_SWITCHES_PER_EDGE switches per edge.
+	 */
+	public EdgeSwitchingGenerator() {
+		this(DEFAULT_SWITCHES_PER_EDGE);
+	}
+
+	/**
+	 * Construct an EdgeSwitchingGenerator.
+	 * @param switchesPerEdge Q, the number of switches attempted per edge
+	 *                        before each random graph
+	 */
+	public EdgeSwitchingGenerator(double switchesPerEdge) {
+		if (switchesPerEdge < 0) {
+			throw new IllegalArgumentException(
+					"Argument out of range (must be non-negative).");
+		}
+		this.switchesPerEdge = switchesPerEdge;
+	}
+
+	@Override
+	public Chain newChain(CompactGraph targetGraph, long seed) {
+		return new SwitchingChain(targetGraph, switchesPerEdge,
+				new SplittableRandom(seed));
+	}
+
+	// the key of the undirected edge a-b
+	private static long key(int a, int b) {
+		return a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+	}
+
+	// the current graph of a chain and the switches that move it along
+	private static final class SwitchingChain implements Chain {
+		private final int vertexCount;
+		private final int edgeCount;
+		private final long switchesPerSample;
+		private final SplittableRandom random;
+
+		// the endpoints of edge i at indices 2i and 2i + 1, and the keys of
+		// all edges
+		private final int[] endpoints;
+		private final LongHashSet edges;
+
+		SwitchingChain(CompactGraph graph, double switchesPerEdge,
+		               SplittableRandom random) {
+			this.vertexCount = graph.getSize();
+			this.random = random;
+			int count = 0;
+			for (int vertex = 0; vertex < vertexCount; vertex++) {
+				count += graph.end(vertex) -
+						graph.firstNeighborAbove(vertex, vertex);
+			}
+			this.edgeCount = count;
+			this.switchesPerSample = Math.round(switchesPerEdge * count);
+			this.endpoints = new int[2 * count];
+			this.edges = new LongHashSet(count);
+			int edge = 0;
+			for (int vertex = 0; vertex < vertexCount; vertex++) {
+				for (int i = graph.firstNeighborAbove(vertex, vertex);
+				     i < graph.end(vertex); i++) {
+					endpoints[2 * edge] = vertex;
+					endpoints[2 * edge + 1] = graph.neighborAt(i);
+					edges.add(key(vertex, graph.neighborAt(i)));
+					edge++;
+				}
+			}
+		}
+
+		@Override
+		public CompactGraph next() {
+			if (edgeCount >= 2) {
+				for (long n = 0; n < switchesPerSample; n++) {
+					trySwitch();
+				}
+			}
+			return CompactGraph.fromEdges(vertexCount, endpoints, edgeCount);
+		}
+
+		// replaces a-b and c-d by a-d and c-b if both are new edges
+		private void trySwitch() {
+			int i = random.nextInt(edgeCount);
+			int j = random.nextInt(edgeCount - 1);
+			if (j >= i) {
+				j++;
+			}
+			int a = endpoints[2 * i];
+			int b = endpoints[2 * i + 1];
+			int c = endpoints[2 * j];
+			int d = endpoints[2 * j + 1];
+			if (random.nextBoolean()) {
+				int temp = c;
+				c = d;
+				d = temp;
+			}
+			if (a == d || c == b || edges.contains(key(a, d)) ||
+					edges.contains(key(c, b))) {
+				return;
+			}
+			edges.remove(key(a, b));
+			edges.remove(key(c, d));
+			edges.add(key(a, d));
+			edges.add(key(c, b));
+			endpoints[2 * i + 1] = d;
+			endpoints[2 * j] = c;
+			endpoints[2 * j + 1] = b;
+		}
+	}
+}
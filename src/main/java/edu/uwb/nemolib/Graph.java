@@ -10,6 +10,9 @@ public class Graph implements Serializable {
 	private List<AdjacencyList> adjacencyLists;
 	private int maxNodeId;
 
+	// frozen copy of this Graph, discarded whenever the Graph is modified
+	private transient volatile CompactGraph compactGraph;
+
 	/**
 	 * Construct a graph object.
 	 */
@@ -24,6 +27,7 @@ public class Graph implements Serializable {
 	 */
 	public int addVertex()
     {
+    	compactGraph = null;
     	adjacencyLists.add(new AdjacencyList());
 	    return adjacencyLists.size() - 1;
     }
@@ -44,6 +48,7 @@ public class Graph implements Serializable {
 	    }
 	    else
 	    {
+		    compactGraph = null;
 		    adjacencyLists.get(vertexA).add(vertexB);
 		    adjacencyLists.get(vertexB).add(vertexA);
 		    return true;
@@ -59,22 +64,72 @@ public class Graph implements Serializable {
         return adjacencyLists.size();
     }
 
-    // get the adjacency list for a given node
+    // get a read-only view of the adjacency list of a given node; edges are
+    // only added through addEdge, which keeps the CompactGraph copy current
     public AdjacencyList getAdjacencyList(Integer index) {
-        return adjacencyLists.get(index);
+        return adjacencyLists.get(index).readOnlyView();
     }
 
+	/**
+	 * Get the number of neighbors of a vertex.
+	 * @param vertex the vertex
+	 * @return the degree of the vertex
+	 */
+	public int getDegree(int vertex) {
+		return adjacencyLists.get(vertex).size();
+	}
+
     // get index of a node given the node's name
     // create an entry if it does not exist
     Integer getOrCreateIndex(String nodeName,
                                      Map<String, Integer> nameToIndex) {
         if (!nameToIndex.containsKey(nodeName)) {
+            compactGraph = null;
             nameToIndex.put(nodeName, adjacencyLists.size());
             adjacencyLists.add(new AdjacencyList());
         }
         return nameToIndex.get(nodeName);
     }
 
+	/**
+	 * Convert this Graph into an immutable CompactGraph with sorted,
+	 * contiguous adjacency. The conversion is performed once and reused until
+	 * this Graph is modified again, so it should be called after loading
+	 * has finished. A Graph must not be modified concurrently, but once it is
+	 * loaded this method may be called from several threads, which share one
+	 * CompactGraph.
+	 * @return a CompactGraph with the same vertices and edges as this Graph
+	 */
+	public CompactGraph toCompactGraph() {
+		CompactGraph result = compactGraph;
+		if (result != null) {
+			return result;
+		}
+		synchronized (this) {
+			if (compactGraph == null) {
+				compactGraph = buildCompactGraph();
+			}
+			return compactGraph;
+		}
+	}
+
+	private CompactGraph buildCompactGraph() {
+		int[] offsets = new int[adjacencyLists.size() + 1];
+		for (int i = 0; i < adjacencyLists.size(); i++) {
+			offsets[i + 1] = offsets[i] + adjacencyLists.get(i).size();
+		}
+		int[] neighbors = new int[offsets[adjacencyLists.size()]];
+		for (int i = 0; i < adjacencyLists.size(); i++) {
+			int index = offsets[i];
+			CompactHashSet.Iter adjListItr = adjacencyLists.get(i).iterator();
+			while (adjListItr.hasNext()) {
+				neighbors[index++] = adjListItr.next();
+			}
+			Arrays.sort(neighbors, offsets[i], offsets[i + 1]);
+		}
+		return new CompactGraph(offsets, neighbors);
+	}
+
 	/**
 	 * Return a string representation of this Graph object.
 	 * @return
@@ -0,0 +1,145 @@
+package edu.uwb.nemolib;
+
+/**
+ * Conversions between graph6 strings and adjacency rows for graphs of up to
+ * 62 vertices, per the graph6 format specification
+ * (http://cs.anu.edu.au/~bdm/nauty/nug25.pdf page 74). Row i of a graph is a
+ * long whose bit j is set if vertices i and j are adjacent. Graphs of up to
+ * 11 vertices also fit into a single upper-triangle mask, whose bit
+ * col * (col - 1) / 2 + row is set if vertices row < col are adjacent; this
+ * is the order in which graph6 lists the bits.
+ */
+final class Graph6 {
+
+	// largest order that graph6 encodes in a single header byte
+	static final int MAX_ORDER = 62;
+
+	// REVERSED[b] is the six-bit value b with its bits in reverse order, so
+	// that six triangle bits, which graph6 packs most significant bit
+	// first, become one data byte
+	private static final byte[] REVERSED = new byte[64];
+
+	static {
+		for (int b = 0; b < 64; b++) {
+			int reversed = 0;
+			for (int bit = 0; bit < 6; bit++) {
+				if ((b & (1 << bit)) != 0) {
+					reversed |= 1 << (5 - bit);
+				}
+			}
+			REVERSED[b] = (byte) reversed;
+		}
+	}
+
+	// prevent instantiation
+	private Graph6() { throw new AssertionError(); }
+
+	/**
+	 * Get the number of vertices of a graph6 encoded graph.
+	 * @param g6 the graph6 string
+	 * @return the order of the graph
+	 */
+	static int order(String g6) {
+		int order = g6.charAt(0) - 63;
+		if (order < 0 || order > MAX_ORDER) {
+			throw new IllegalArgumentException("Unsupported graph6 label: " +
+					g6);
+		}
+		return order;
+	}
+
+	/**
+	 * Decode a graph6 string into adjacency rows.
+	 * @param g6 the graph6 string
+	 * @return the adjacency rows of the graph
+	 */
+	static long[] decode(String g6) {
+		int order = order(g6);
+		int bitCount = (order * (order - 1)) / 2;
+		if (g6.length() != 1 + (bitCount + 5) / 6) {
+			throw new IllegalArgumentException("Malformed graph6 label: " +
+					g6);
+		}
+		long[] rows = new long[order];
+		int bit = 0;
+		for (int col = 1; col < order; col++) {
+			for (int row = 0; row < col; row++) {
+				int value = g6.charAt(1 + bit / 6) - 63;
+				if ((value & (1 << (5 - bit % 6))) != 0) {
+					rows[row] |= 1L << col;
+					rows[col] |= 1L << row;
+				}
+				bit++;
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * Encode adjacency rows as a graph6 string.
+	 * @param order the number of vertices of the graph
+	 * @param rows the adjacency rows of the graph
+	 * @return the graph6 string
+	 */
+	static String encode(int order, long[] rows) {
+		int bitCount = (order * (order - 1)) / 2;
+		char[] chars = new char[1 + (bitCount + 5) / 6];
+		chars[0] = (char) (order + 63);
+		int bit = 0;
+		int current = 0;
+		for (int col = 1; col < order; col++) {
+			for (int row = 0; row < col; row++) {
+				if ((rows[row] & (1L << col)) != 0) {
+					current |= 1 << (5 - bit % 6);
+				}
+				bit++;
+				if (bit % 6 == 0) {
+					chars[bit / 6] = (char) (current + 63);
+					current = 0;
+				}
+			}
+		}
+		if (bit % 6 != 0) {
+			chars[1 + bit / 6] = (char) (current + 63);
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Expand an upper-triangle mask into adjacency rows.
+	 * @param order the number of vertices of the graph
+	 * @param triangle the upper-triangle mask of the graph
+	 * @return the adjacency rows of the graph
+	 */
+	static long[] fromTriangle(int order, long triangle) {
+		long[] rows = new long[order];
+		int bit = 0;
+		for (int col = 1; col < order; col++) {
+			for (int row = 0; row < col; row++) {
+				if ((triangle & (1L << bit)) != 0) {
+					rows[row] |= 1L << col;
+					rows[col] |= 1L << row;
+				}
+				bit++;
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * Encode an upper-triangle mask as graph6 bytes.
+	 * @param order the number of vertices of the graph, at most 11
+	 * @param triangle the upper-triangle mask of the graph
+	 * @return the graph6 bytes
+	 */
+	static byte[] encodeTriangle(int order, long triangle) {
+		int bitCount = (order * (order - 1)) / 2;
+		byte[] bytes = new byte[1 + (bitCount + 5) / 6];
+		bytes[0] = (byte) (order + 63);
+		for (int i = 1; i < bytes.length; i++) {
+			bytes[i] = (byte) (REVERSED[(int) (triangle & 63)] + 63);
+			triangle >>>= 6;
+		}
+		return bytes;
+	}
+}
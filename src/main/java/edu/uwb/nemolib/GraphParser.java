@@ -4,13 +4,23 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * The GraphParser class parses a text file into a Graph object. Each row of
  * input text file represents an edge in the graph. Each row should consist of
  * two integers separated by a single space, with each integer representing a
  * vertex. Vertices are created automatically based on the edge information.
- * Self edges and unconnected vertices are not allowed.
+ * Self edges and unconnected vertices are not allowed.<p>
+ * The parseCompact methods read large or gzip-compressed edge lists straight
+ * into a CompactGraph, tokenizing the file in parallel.<p>
+ * Vertex numbering can bias enumeration (for instance when the file lists
+ * the edges of each region of the network together), so the methods that
+ * take a seed renumber the vertices by a seeded random permutation once the
+ * edges have been read. The same file and seed always give the same graph,
+ * and the methods without a seed give a deterministic numbering that is
+ * useful for benchmarking; parse(String) alone numbers the vertices
+ * randomly without a seed.
  */
 public class GraphParser {
 
@@ -18,41 +28,167 @@ public class GraphParser {
 	private GraphParser() {throw new AssertionError();}
 
 	/**
-	 * Parses a text file into a Graph object.
+	 * Parses a text file into a Graph object. To avoid clustering (data
+	 * collection bias), the vertices are numbered in a random order.
 	 * @param filename the file containing the edge data
 	 * @return a Graph object with the correct mapping
 	 * @throws IOException if input file cannot be found
 	 */
 	public static Graph parse(String filename) throws IOException {
+		return parse(filename, new SplittableRandom());
+	}
+
+	/**
+	 * Parses a text file into a Graph object whose vertices are numbered in
+	 * a random order determined by the given seed, so that the same file and
+	 * seed always produce the same Graph.
+	 * @param filename the file containing the edge data
+	 * @param seed the seed of the vertex numbering
+	 * @return a Graph object with the correct mapping
+	 * @throws IOException if input file cannot be found
+	 */
+	public static Graph parse(String filename, long seed) throws IOException {
+		return parse(filename, new SplittableRandom(seed));
+	}
+
+	/**
+	 * Parses a text file into a Graph object whose vertices are numbered in
+	 * order of first appearance in the file, without any randomization.
+	 * @param filename the file containing the edge data
+	 * @return a Graph object with the correct mapping
+	 * @throws IOException if input file cannot be found
+	 */
+	public static Graph parseInFileOrder(String filename) throws IOException {
+		return parse(filename, null);
+	}
+
+	// streams the edges of the file, then numbers the vertices by a random
+	// permutation of their order of first appearance (or by that order
+	// itself if random is null)
+	private static Graph parse(String filename, SplittableRandom random)
+			throws IOException {
 		Map<String, Integer> nameToIndex = new HashMap<>();
-		Graph output = new Graph();
-		// we read in all the data at once only so we can easily randomize it
-		// with Collections.shuffle()
-		BufferedReader reader = new BufferedReader(new FileReader(filename));
-		List<String> lines = new ArrayList<>();
-		String currentLine = reader.readLine();
-		while (currentLine != null) {
-			lines.add(currentLine);
-			currentLine = reader.readLine();
+		int[] endpoints = new int[1024];
+		int edgeCount = 0;
+		try (BufferedReader reader =
+				     new BufferedReader(new FileReader(filename))) {
+			String delimiters = "\\s+"; // one or more whitespace characters
+			String line = reader.readLine();
+			while (line != null) {
+				String[] edge = line.split(delimiters);
+				if (2 * edgeCount + 2 > endpoints.length) {
+					endpoints = Arrays.copyOf(endpoints, endpoints.length * 2);
+				}
+				endpoints[2 * edgeCount] = indexOf(edge[0], nameToIndex);
+				endpoints[2 * edgeCount + 1] = indexOf(edge[1], nameToIndex);
+				edgeCount++;
+				line = reader.readLine();
+			}
 		}
-		reader.close();
-
-		// avoid clustering (data collection bias) by randomly parsing the
-		// input lines of data
-		Collections.shuffle(lines);
 
-		String delimiters = "\\s+"; // one or more whitespace characters
-		for (String line:lines) {
-			String[] edge = line.split(delimiters);
-			int fromIndex = output.getOrCreateIndex(edge[0], nameToIndex);
-			int toIndex   = output.getOrCreateIndex(edge[1], nameToIndex);
+		int[] permutation = permutation(nameToIndex.size(), random);
+		Graph output = new Graph();
+		for (int i = 0; i < permutation.length; i++) {
+			output.addVertex();
+		}
+		for (int i = 0; i < edgeCount; i++) {
+			int fromIndex = permutation[endpoints[2 * i]];
+			int toIndex   = permutation[endpoints[2 * i + 1]];
 
 			// don't addSubgraph self edges
 			if (fromIndex != toIndex) {
-				output.getAdjacencyList(fromIndex).add(toIndex);
-				output.getAdjacencyList(toIndex).add(fromIndex);
+				output.addEdge(fromIndex, toIndex);
 			}
 		}
 		return output;
 	}
+
+	private static int indexOf(String name, Map<String, Integer> nameToIndex) {
+		Integer index = nameToIndex.get(name);
+		if (index == null) {
+			index = nameToIndex.size();
+			nameToIndex.put(name, index);
+		}
+		return index;
+	}
+
+	// a uniformly random permutation of 0..size-1 (Fisher-Yates), or the
+	// identity permutation if random is null
+	private static int[] permutation(int size, SplittableRandom random) {
+		int[] permutation = new int[size];
+		for (int i = 0; i < size; i++) {
+			permutation[i] = i;
+		}
+		if (random != null) {
+			for (int i = size - 1; i > 0; i--) {
+				int j = random.nextInt(i + 1);
+				int temp = permutation[i];
+				permutation[i] = permutation[j];
+				permutation[j] = temp;
+			}
+		}
+		return permutation;
+	}
+
+	/**
+	 * Parses a text file, which may be gzip-compressed, into a CompactGraph
+	 * using the common ForkJoinPool. Vertices named by non-negative integers
+	 * are numbered first, in ascending order of their names, followed by the
+	 * other vertices in order of first appearance.
+	 * @param filename the file containing the edge data
+	 * @return a CompactGraph of the edges
+	 * @throws IOException if input file cannot be read or is malformed
+	 */
+	public static CompactGraph parseCompact(String filename)
+			throws IOException {
+		return parseCompact(filename, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Parses a text file, which may be gzip-compressed, into a CompactGraph
+	 * using the given pool. Vertices are numbered as by
+	 * parseCompact(String).
+	 * @param filename the file containing the edge data
+	 * @param pool the ForkJoinPool on which to tokenize the file
+	 * @return a CompactGraph of the edges
+	 * @throws IOException if input file cannot be read or is malformed
+	 */
+	public static CompactGraph parseCompact(String filename, ForkJoinPool pool)
+			throws IOException {
+		EdgeListParser parser = new EdgeListParser(pool);
+		parser.parse(filename);
+		return parser.graph();
+	}
+
+	/**
+	 * Parses a text file, which may be gzip-compressed, into a CompactGraph
+	 * using the common ForkJoinPool, then renumbers its vertices by a random
+	 * permutation determined by the given seed.
+	 * @param filename the file containing the edge data
+	 * @param seed the seed of the vertex numbering
+	 * @return a CompactGraph of the edges
+	 * @throws IOException if input file cannot be read or is malformed
+	 */
+	public static CompactGraph parseCompact(String filename, long seed)
+			throws IOException {
+		return parseCompact(filename, seed, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Parses a text file, which may be gzip-compressed, into a CompactGraph
+	 * using the given pool, then renumbers its vertices by a random
+	 * permutation determined by the given seed.
+	 * @param filename the file containing the edge data
+	 * @param seed the seed of the vertex numbering
+	 * @param pool the ForkJoinPool on which to tokenize the file
+	 * @return a CompactGraph of the edges
+	 * @throws IOException if input file cannot be read or is malformed
+	 */
+	public static CompactGraph parseCompact(String filename, long seed,
+	                                        ForkJoinPool pool)
+			throws IOException {
+		CompactGraph graph = parseCompact(filename, pool);
+		return graph.permute(permutation(graph.getSize(),
+				new SplittableRandom(seed)));
+	}
 }
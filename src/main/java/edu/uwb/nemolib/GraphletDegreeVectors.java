@@ -0,0 +1,116 @@
+package edu.uwb.nemolib;
+
+import java.util.Arrays;
+
+/**
+ * GraphletDegreeVectors is a table of the number of times each vertex of a
+ * network occupies each automorphism orbit of the connected graphlets of 2
+ * to 4 vertices, produced by OrbitCounter. The orbits are numbered as in
+ * Przulj's graphlet degree vectors:
+ * <ul>
+ * <li>0: an end of an edge</li>
+ * <li>1, 2: an end and the middle of a 3-path</li>
+ * <li>3: a triangle</li>
+ * <li>4, 5: an end and an inner vertex of a 4-path</li>
+ * <li>6, 7: a leaf and the center of a 3-star</li>
+ * <li>8: a 4-cycle</li>
+ * <li>9, 10, 11: the tail, a degree-2 vertex and the degree-3 vertex of a
+ * tailed triangle</li>
+ * <li>12, 13: a degree-2 and a degree-3 vertex of a diamond</li>
+ * <li>14: a 4-clique</li>
+ * </ul>
+ * Every graphlet is counted as an induced subgraph. The orbits of one
+ * graphlet can be summed into the number of subgraphs of its shape that
+ * include each vertex, which is what a SubgraphProfile records.
+ */
+public final class GraphletDegreeVectors {
+
+	/**
+	 * The number of orbits of each vertex.
+	 */
+	public static final int ORBIT_COUNT = 15;
+
+	/**
+	 * The largest number of vertices whose counts fit in one array, so that
+	 * every index vertex * ORBIT_COUNT + orbit is an int.
+	 */
+	public static final int MAX_VERTEX_COUNT = Integer.MAX_VALUE / ORBIT_COUNT;
+
+	// the order and upper-triangle mask of each graphlet of 3 and 4 vertices,
+	// and the first of its orbits; the orbits of graphlet g are
+	// FIRST_ORBIT[g] to FIRST_ORBIT[g + 1] - 1
+	private static final int[] ORDER = {3, 3, 4, 4, 4, 4, 4, 4};
+	private static final long[] TRIANGLE = {
+			ClosedFormCounter.PATH_3, ClosedFormCounter.TRIANGLE,
+			ClosedFormCounter.PATH_4, ClosedFormCounter.STAR,
+			ClosedFormCounter.CYCLE, ClosedFormCounter.TAILED_TRIANGLE,
+			ClosedFormCounter.DIAMOND, ClosedFormCounter.CLIQUE};
+	private static final int[] FIRST_ORBIT = {1, 3, 4, 6, 8, 9, 12, 14, 15};
+
+	// counts[vertex * ORBIT_COUNT + orbit]
+	private final long[] counts;
+
+	GraphletDegreeVectors(long[] counts) {
+		this.counts = counts;
+	}
+
+	/**
+	 * Get the number of vertices.
+	 * @return the number of vertices
+	 */
+	public int getVertexCount() {
+		return counts.length / ORBIT_COUNT;
+	}
+
+	/**
+	 * Get the number of times a vertex occupies an orbit.
+	 * @param vertex the vertex
+	 * @param orbit the orbit, from 0 to ORBIT_COUNT - 1
+	 * @return the number of times
+	 */
+	public long getCount(int vertex, int orbit) {
+		if (orbit < 0 || orbit >= ORBIT_COUNT) {
+			throw new IllegalArgumentException(
+					"Argument out of range (orbit must be below ORBIT_COUNT).");
+		}
+		return counts[vertex * ORBIT_COUNT + orbit];
+	}
+
+	/**
+	 * Get the graphlet degree vector of a vertex.
+	 * @param vertex the vertex
+	 * @return the number of times the vertex occupies each orbit
+	 */
+	public long[] getVector(int vertex) {
+		int from = vertex * ORBIT_COUNT;
+		return Arrays.copyOfRange(counts, from, from + ORBIT_COUNT);
+	}
+
+	/**
+	 * Add to a SubgraphProfile, for each graphlet of a size and each vertex,
+	 * the number of subgraphs of that shape that include the vertex. The
+	 * profile must be labeled afterward, as after enumeration.
+	 * @param profile the profile
+	 * @param subgraphSize the graphlet size, 3 or 4
+	 */
+	public void addTo(SubgraphProfile profile, int subgraphSize) {
+		if (!OrbitCounter.supports(subgraphSize)) {
+			throw new IllegalArgumentException(
+					"Argument out of range (subgraph size must be 3 or 4).");
+		}
+		int vertexCount = getVertexCount();
+		for (int g = 0; g < ORDER.length; g++) {
+			if (ORDER[g] != subgraphSize) {
+				continue;
+			}
+			for (int v = 0; v < vertexCount; v++) {
+				long freq = 0;
+				for (int orbit = FIRST_ORBIT[g]; orbit < FIRST_ORBIT[g + 1];
+				     orbit++) {
+					freq += counts[v * ORBIT_COUNT + orbit];
+				}
+				profile.addSubgraphs(ORDER[g], TRIANGLE[g], v, freq);
+			}
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package edu.uwb.nemolib;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, thread-safe map from g6 labels to canonical labels that evicts
+ * the least recently used entries. It is split into segments chosen by the
+ * hash of the label, each a LinkedHashMap in access order with its own lock,
+ * so concurrent lookups of different labels rarely contend. Eviction is
+ * least recently used within a segment, which approximates it globally.
+ */
+final class LabelCache {
+
+	private static final int SEGMENT_COUNT = 16;
+
+	private final Segment[] segments = new Segment[SEGMENT_COUNT];
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Construct a LabelCache.
+	 * @param maximumSize the largest number of entries, or 0 to cache nothing
+	 */
+	LabelCache(int maximumSize) {
+		if (maximumSize < 0) {
+			throw new IllegalArgumentException(
+					"Argument out of range (must be non-negative).");
+		}
+		for (int i = 0; i < SEGMENT_COUNT; i++) {
+			// spread the remainder over the first segments
+			int capacity = maximumSize / SEGMENT_COUNT +
+					(i < maximumSize % SEGMENT_COUNT ? 1 : 0);
+			segments[i] = new Segment(capacity);
+		}
+	}
+
+	/**
+	 * Get the canonical label of a g6 label, counting a hit or a miss.
+	 * @param label the g6 label
+	 * @return the canonical label, or null if it is not cached
+	 */
+	String get(String label) {
+		Segment segment = segmentFor(label);
+		String canLabel;
+		synchronized (segment) {
+			canLabel = segment.get(label);
+		}
+		if (canLabel != null) {
+			hits.increment();
+		} else {
+			misses.increment();
+		}
+		return canLabel;
+	}
+
+	/**
+	 * Cache the canonical label of a g6 label.
+	 * @param label the g6 label
+	 * @param canLabel the canonical label
+	 */
+	void put(String label, String canLabel) {
+		Segment segment = segmentFor(label);
+		synchronized (segment) {
+			segment.put(label, canLabel);
+		}
+	}
+
+	/**
+	 * Copy every entry into a map, in no particular order.
+	 * @param target the map to which the entries are added
+	 */
+	void copyTo(Map<String, String> target) {
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				target.putAll(segment);
+			}
+		}
+	}
+
+	int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	long hitCount() {
+		return hits.sum();
+	}
+
+	long missCount() {
+		return misses.sum();
+	}
+
+	long evictionCount() {
+		return evictions.sum();
+	}
+
+	private Segment segmentFor(String label) {
+		int h = label.hashCode();
+		h ^= h >>> 16;
+		return segments[h & (SEGMENT_COUNT - 1)];
+	}
+
+	// one lock's share of the entries, in access order
+	private final class Segment extends LinkedHashMap<String, String> {
+
+		private final int capacity;
+
+		Segment(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+			if (size() > capacity) {
+				evictions.increment();
+				return true;
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package edu.uwb.nemolib;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A LabelDictionary interns canonical labels to dense int ids, so that the
+ * statistics of a label can be kept in arrays indexed by its id and the
+ * label itself is hashed only when it enters or leaves the analysis. Ids are
+ * assigned in the order labels are first seen and never change.<p>
+ * A dictionary is scoped to one analysis: every RelativeFrequencyAccumulator
+ * owns one, which the results of the target graph and of every random graph
+ * added to it share, and it is freed with the accumulator, so labels of
+ * earlier analyses do not pile up in a long-lived process. A LabelDictionary
+ * is thread safe: looking up a label that already has an id takes no lock.
+ */
+public final class LabelDictionary {
+
+	private final Map<String, Integer> labelToId = new ConcurrentHashMap<>();
+
+	// labels[id] is the label of id; written under the lock before the id is
+	// published through labelToId
+	private volatile String[] labels = new String[16];
+	private int size;
+
+	/**
+	 * Construct an empty LabelDictionary.
+	 */
+	public LabelDictionary() {
+	}
+
+	/**
+	 * Get the id of a label, assigning it the next id if it has none.
+	 * @param label the label
+	 * @return the id of the label
+	 */
+	public int intern(String label) {
+		Integer id = labelToId.get(label);
+		if (id != null) {
+			return id;
+		}
+		synchronized (this) {
+			id = labelToId.get(label);
+			if (id != null) {
+				return id;
+			}
+			if (size == labels.length) {
+				labels = Arrays.copyOf(labels, size * 2);
+			}
+			labels[size] = label;
+			labelToId.put(label, size);
+			return size++;
+		}
+	}
+
+	/**
+	 * Get the id of a label without assigning one.
+	 * @param label the label
+	 * @return the id of the label, or -1 if it has none
+	 */
+	public int find(String label) {
+		Integer id = labelToId.get(label);
+		return id != null ? id : -1;
+	}
+
+	/**
+	 * Get the label of an id.
+	 * @param id an id returned by intern()
+	 * @return the label
+	 */
+	public String label(int id) {
+		String label = labels[id];
+		if (label == null) {
+			// the id was assigned by another thread and read without a
+			// happens-before edge, as through size()
+			synchronized (this) {
+				label = labels[id];
+			}
+		}
+		return label;
+	}
+
+	/**
+	 * Get the number of ids assigned so far, which bounds every id.
+	 * @return the number of labels in the dictionary
+	 */
+	public int size() {
+		return labelToId.size();
+	}
+
+	/**
+	 * Convert values keyed by label into an array indexed by id, interning
+	 * every label.
+	 * @param labelToValue labels paired with values
+	 * @return the values indexed by id; labels that are absent are 0
+	 */
+	double[] toArray(Map<String, Double> labelToValue) {
+		int[] ids = new int[labelToValue.size()];
+		double[] values = new double[ids.length];
+		int i = 0;
+		int length = 0;
+		for (Map.Entry<String, Double> entry : labelToValue.entrySet()) {
+			ids[i] = intern(entry.getKey());
+			values[i] = entry.getValue();
+			length = Math.max(length, ids[i] + 1);
+			i++;
+		}
+		double[] result = new double[length];
+		for (i = 0; i < ids.length; i++) {
+			result[ids[i]] = values[i];
+		}
+		return result;
+	}
+
+	/**
+	 * Convert the non-zero values of an array indexed by id into a map keyed
+	 * by label.
+	 * @param values values indexed by id
+	 * @return labels paired with their non-zero values
+	 */
+	Map<String, Double> toMap(double[] values) {
+		Map<String, Double> result = new HashMap<>();
+		for (int id = 0; id < values.length; id++) {
+			if (values[id] != 0) {
+				result.put(label(id), values[id]);
+			}
+		}
+		return result;
+	}
+}
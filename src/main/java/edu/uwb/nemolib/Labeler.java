@@ -1,176 +1,483 @@
 package edu.uwb.nemolib;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * The Labeler class combines g6 subgraph labels into canonical subgraph labels
  * using Brandon McKay's Nauty algorithm and the Nauty Traces labelg
  * implementation of that algorithm.
  *
- * Presently, nemolib requires client programs to install labelg in the
- * directory of execution for their programs. We hope to create a Java
- * implementation of the Nauty algorithm in a future release in order to
- * remove this requirement.
+ * The labelg binary must be installed in the directory of execution. Results
+ * label their subgraphs in-process with a RefinementLabeler by default; a
+ * Labeler can be passed to them instead where labels must match labelg's.
+ * <p>
+ * A Labeler keeps a pool of long-lived labelg processes, started as they are
+ * needed, and streams g6 labels to them over their standard input and output
+ * in batches of at most MAX_BATCH_SIZE labels, so no process is started and
+ * no file is written per call. Labels that were already canonicalized are
+ * answered from a bounded least-recently-used cache. A Labeler is thread
+ * safe; concurrent callers are served by different processes.<p>
+ * labelg buffers its output when it is not writing to a terminal, so the
+ * processes are run under stdbuf -oL. Where stdbuf is not on the PATH, a
+ * process is started for every batch instead, and its output is read once
+ * its input is closed.<p>
+ * A process that has not answered a batch within the timeout is destroyed.
+ * The Labeler then assumes that labelg does not answer line by line after
+ * all and labels that batch, and every later one, with a process per batch,
+ * which is also destroyed if it does not finish within the timeout. Whether
+ * a process answers line by line is checked once, by labeling one graph when
+ * the Labeler is constructed.
  */
-public final class Labeler {
-
-	// class variable
-	static int instanceCounter = 0;
-	
-    // labelg program options
-    private static final String labelGPath = "src/main/resources/labelg";
-    private static final int invariant = 3;
-    private static final int mininvarlevel = 1;
-    private static final int maxinvarlevel = 100;
-
-    // file options
-    private static final String filePrefix  = ".";
-    private static final String filePostfix = ".g6";
-
-    // data members
-    private final String inputFilename;
-    private final String outputFilename;
-    private final String[] args;
-
-    /**
-     * Construct a labeler object. By default, will search for the labelg
-     * binary in the directory of execution.
-     */
-    public Labeler() {
-	    instanceCounter++;
-	    long currentTime = System.currentTimeMillis();
-	    this.inputFilename = filePrefix + "rawgraph6_" +
-			    currentTime + filePostfix + instanceCounter;
-	    this.outputFilename = filePrefix + "canonical_" +
-			    currentTime + filePostfix + instanceCounter;
-	    this.args = getArgs();
-    }
-
-    private String[] getArgs() {
-        String[] args = {
-            labelGPath,
-            "-i" + invariant,
-            "-I" + mininvarlevel + ":" + maxinvarlevel,
-            inputFilename,
-            outputFilename};
-        return args;
-    }
-
-    // TODO possibly remove this method; does not appear to be used
-    private Map<String, Set<Double>> g6toCanonical(Map<String,
-            Set<Double>> labelRelFreqsMap) {
-        Map<String, String> g6CanLabelMap =
-                getCanonicalLabels(labelRelFreqsMap.keySet());
-        Map<String, Set<Double>> result = new HashMap<>();
-        for (Map.Entry<String, Set<Double>> labelRelFreqs:
-                labelRelFreqsMap.entrySet()) {
-            String canLabel = g6CanLabelMap.get(labelRelFreqs.getKey());
-            Set<Double> currentRelFreqs = labelRelFreqs.getValue();
-            if (result.containsKey(canLabel)) {
-                currentRelFreqs.addAll(result.get(canLabel));
-            }
-            result.put(canLabel, currentRelFreqs);
-        }
-        return result;
-    }
-
-	// Get canonical labels using the labelg program.
-	// This function communicates with labelg using input and output files.
-	//
-	// code adapted from Vartika Verma's Nemo Finder project (UWB 2014)
-    public Map<String, String> getCanonicalLabels( Set<String> labels ) {
+public final class Labeler implements CanonicalLabeler, AutoCloseable {
+
+	/**
+	 * The largest number of labels written to a labelg process before its
+	 * output is read, which keeps a batch within the pipe buffers.
+	 */
+	public static final int MAX_BATCH_SIZE = 128;
+
+	/**
+	 * The number of canonical labels cached if no cache size is given.
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 1 << 16;
+
+	/**
+	 * How long labelg is given to answer a batch if no timeout is given.
+	 */
+	public static final long DEFAULT_TIMEOUT_MILLIS = 30000;
+
+	// how long a caller waits for a busy process before checking whether a
+	// failed process can be replaced
+	private static final long POLL_MILLIS = 100;
+
+	// the g6 label of a single edge, labeled by the round trip at startup
+	private static final String PROBE_LABEL = "A_";
+
+	// destroys processes that do not answer in time
+	private static final ScheduledExecutorService WATCHDOG =
+			Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "labelg-watchdog");
+				thread.setDaemon(true);
+				return thread;
+			});
+
+	// labelg program options
+	private static final String labelGPath = "src/main/resources/labelg";
+	private static final int invariant = 3;
+	private static final int mininvarlevel = 1;
+	private static final int maxinvarlevel = 100;
+
+	// data members
+	private final List<String> command;
+	private final long timeoutMillis;
+	private final int poolSize;
+	private final BlockingQueue<Coprocess> idle;
+	private final LabelCache cache;
+
+	// the number of live processes, and whether close() was called; both
+	// guarded by this
+	private int started;
+	private boolean closed;
+
+	// whether labelg is run as long-lived processes; cleared for good once
+	// one of them does not answer in time
+	private volatile boolean streaming;
+
+	/**
+	 * Construct a labeler object. By default, will search for the labelg
+	 * binary in the directory of execution, and will run up to one labelg
+	 * process per available processor.
+	 */
+	public Labeler() {
+		this(labelGPath, Runtime.getRuntime().availableProcessors(),
+				DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * Construct a labeler object.
+	 * @param labelgPath the path of the labelg binary
+	 * @param poolSize the largest number of labelg processes run at once
+	 * @param cacheSize the largest number of canonical labels cached, or 0
+	 *                  to disable the cache
+	 */
+	public Labeler(String labelgPath, int poolSize, int cacheSize) {
+		this(labelgPath, poolSize, cacheSize, DEFAULT_TIMEOUT_MILLIS);
+	}
+
+	/**
+	 * Construct a labeler object with a timeout.
+	 * @param labelgPath the path of the labelg binary
+	 * @param poolSize the largest number of labelg processes run at once
+	 * @param cacheSize the largest number of canonical labels cached, or 0
+	 *                  to disable the cache
+	 * @param timeoutMillis how long labelg is given to answer a batch
+	 *                      before its process is destroyed
+	 */
+	public Labeler(String labelgPath, int poolSize, int cacheSize,
+	               long timeoutMillis) {
+		if (poolSize < 1 || cacheSize < 0 || timeoutMillis < 1) {
+			throw new IllegalArgumentException(
+					"Argument out of range (must be positive).");
+		}
+		String stdbuf = findOnPath("stdbuf");
+		this.streaming = stdbuf != null;
+		List<String> args = new ArrayList<>();
+		if (streaming) {
+			args.addAll(Arrays.asList(stdbuf, "-oL"));
+		}
+		args.addAll(Arrays.asList(labelgPath, "-q", "-i" + invariant,
+				"-I" + mininvarlevel + ":" + maxinvarlevel));
+		this.command = args;
+		this.timeoutMillis = timeoutMillis;
+		this.poolSize = poolSize;
+		this.idle = new ArrayBlockingQueue<>(poolSize);
+		this.cache = new LabelCache(cacheSize);
+		if (streaming) {
+			this.streaming = roundTrip();
+		}
+	}
+
+	// labels one graph with a new process, which joins the pool if it
+	// answers in time; returns false if it does not
+	private boolean roundTrip() {
+		Coprocess coprocess;
+		try {
+			coprocess = new Coprocess(start(), timeoutMillis);
+		} catch (IOException e) {
+			// labelg cannot be run at all, which labelOnce reports
+			return false;
+		}
+		try {
+			coprocess.label(Collections.singletonList(PROBE_LABEL));
+		} catch (IOException e) {
+			coprocess.close();
+			return false;
+		}
+		if (coprocess.timedOut()) {
+			// answered, but the watchdog destroyed it on the way out
+			coprocess.close();
+			return false;
+		}
+		started++;
+		idle.add(coprocess);
+		return true;
+	}
+
+	// TODO possibly remove this method; does not appear to be used
+	private Map<String, Set<Double>> g6toCanonical(Map<String,
+			Set<Double>> labelRelFreqsMap) {
+		Map<String, String> g6CanLabelMap =
+				getCanonicalLabels(labelRelFreqsMap.keySet());
+		Map<String, Set<Double>> result = new HashMap<>();
+		for (Map.Entry<String, Set<Double>> labelRelFreqs:
+				labelRelFreqsMap.entrySet()) {
+			String canLabel = g6CanLabelMap.get(labelRelFreqs.getKey());
+			Set<Double> currentRelFreqs = labelRelFreqs.getValue();
+			if (result.containsKey(canLabel)) {
+				currentRelFreqs.addAll(result.get(canLabel));
+			}
+			result.put(canLabel, currentRelFreqs);
+		}
+		return result;
+	}
+
+	/**
+	 * Get canonical labels using the labelg program.
+	 * @param labels the g6 labels to canonicalize
+	 * @return a map from each of the given g6 labels to its canonical label,
+	 * in the order of the given labels
+	 * @throws LabelingException if labelg cannot be run or fails
+	 */
+	@Override
+	public Map<String, String> getCanonicalLabels(Set<String> labels) {
 
 		// must use LinkedHashMap to preserve ordering
 		Map<String, String> results = new LinkedHashMap<>();
-		
-        BufferedWriter writer = null;
-        BufferedReader inputReader = null;
-        BufferedReader outputReader = null;
-        int returnCode = 0;
-        try {
-            writer = new BufferedWriter(new FileWriter(inputFilename));
-            for (String label : labels ) {
-                writer.write(label);
-                writer.write('\n');
-				results.put(label, "");
-            }
-            writer.close();
-
-            Process labelg = Runtime.getRuntime().exec(args);
-
-            // close output stream, input stream & error stream
-            labelg.getOutputStream().close();
-            closeInputStream(labelg.getInputStream());
-            closeInputStream(labelg.getErrorStream());
-
-            // wait for labelg to complete execution
-            returnCode = labelg.waitFor();
-
-            // read back in the input and output file
-            inputReader = new BufferedReader(new FileReader(inputFilename));
-            outputReader = new BufferedReader(new FileReader(outputFilename));
-            String inputLine = inputReader.readLine();
-            String outputLine = outputReader.readLine();
-
-            // combine the input and output, assuming labelg writes output
-            // in the same order as the input is provided
-            while (outputLine != null) {
-                results.put(inputLine, outputLine);
-                inputLine = inputReader.readLine();
-                outputLine = outputReader.readLine();
-            }
-            inputReader.close();
-            outputReader.close();
-        } catch (Exception e) {
-            System.err.println("Exception " + e + " raised");
-            e.printStackTrace();
-            results = null;
-        } finally {
-            try { writer.close(); } catch (Exception e) {}
-            try { inputReader.close(); } catch (Exception e) {}
-            try { outputReader.close(); } catch (Exception e) {}
-            deleteFile(inputFilename);
-            deleteFile(outputFilename);
-        }
-
-        if (results == null) {
-            System.exit(-1);
-        }
-
-        if (returnCode != 0) {
-            System.err.println("`labelg` exited with a return code of: " +
-                returnCode);
-            System.err.print("`labelg` executed with: ");
-            for (String line:args) {
-                System.err.print(line + " ");
-            }
-            System.err.println();
-            System.exit(-1);
-        }
-
-        return results;
-    }
-
-    private void closeInputStream(InputStream stream) throws IOException {
-        BufferedReader r = new BufferedReader(new InputStreamReader(stream));
-        String l = r.readLine();
-        while (l != null) {
-            l = r.readLine();
-        }
-        r.close();
-    }
-
-    private void deleteFile(String filename) {
-        try {
-            File f = new File(filename);
-            f.delete();
-        } catch (Exception e) {
-            System.err.println("Exception " + e +
-                " raised when attempting to delete " + filename);
-        }
-    }
+		List<String> misses = new ArrayList<>();
+		for (String label : labels) {
+			String canLabel = cache.get(label);
+			results.put(label, canLabel);
+			if (canLabel == null) {
+				misses.add(label);
+			}
+		}
+
+		for (int from = 0; from < misses.size(); from += MAX_BATCH_SIZE) {
+			List<String> batch = misses.subList(from,
+					Math.min(misses.size(), from + MAX_BATCH_SIZE));
+			List<String> canLabels = label(batch);
+			for (int i = 0; i < batch.size(); i++) {
+				results.put(batch.get(i), canLabels.get(i));
+				cache.put(batch.get(i), canLabels.get(i));
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Stop every idle labelg process. Processes that are labeling a batch
+	 * are stopped when they finish it, and the Labeler cannot be used
+	 * afterward.
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			closed = true;
+		}
+		stopIdle();
+	}
+
+	// stops every idle process
+	private void stopIdle() {
+		List<Coprocess> stopped = new ArrayList<>();
+		synchronized (this) {
+			idle.drainTo(stopped);
+			started -= stopped.size();
+		}
+		for (Coprocess coprocess : stopped) {
+			coprocess.close();
+		}
+	}
+
+	// labels one batch, returning the canonical labels in batch order
+	private List<String> label(List<String> batch) {
+		if (!streaming) {
+			return labelOnce(batch);
+		}
+		Coprocess coprocess = acquire();
+		boolean healthy = false;
+		try {
+			List<String> result = coprocess.label(batch);
+			// the watchdog may fire after the last label was read, which
+			// leaves a complete result but a destroyed process
+			healthy = !coprocess.timedOut();
+			if (!healthy) {
+				streaming = false;
+				stopIdle();
+			}
+			return result;
+		} catch (IOException e) {
+			if (!coprocess.timedOut()) {
+				throw new LabelingException("`labelg` failed: " +
+						e.getMessage() + " (executed with: " +
+						String.join(" ", command) + ")", e);
+			}
+		} finally {
+			release(coprocess, healthy);
+		}
+
+		// the process did not answer in time, so stop streaming
+		streaming = false;
+		stopIdle();
+		return labelOnce(batch);
+	}
+
+	// runs one labelg process for a single batch
+	private List<String> labelOnce(List<String> batch) {
+		try {
+			Process labelg = start();
+			Watch watch = new Watch(labelg, timeoutMillis);
+			try (Writer in = new BufferedWriter(new OutputStreamWriter(
+					labelg.getOutputStream(), StandardCharsets.US_ASCII))) {
+				for (String label : batch) {
+					in.write(label);
+					in.write('\n');
+				}
+			}
+			List<String> result = new ArrayList<>(batch.size());
+			try (BufferedReader out = new BufferedReader(new InputStreamReader(
+					labelg.getInputStream(), StandardCharsets.US_ASCII))) {
+				for (String line = out.readLine(); line != null;
+				     line = out.readLine()) {
+					result.add(line);
+				}
+			}
+			int returnCode = labelg.waitFor();
+			if (watch.stop()) {
+				throw new LabelingException("`labelg` did not answer " +
+						batch.size() + " labels within " + timeoutMillis +
+						" ms (executed with: " + String.join(" ", command) +
+						")");
+			}
+			if (returnCode != 0 || result.size() != batch.size()) {
+				throw new LabelingException("`labelg` exited with a return " +
+						"code of " + returnCode + " after " + result.size() +
+						" of " + batch.size() + " labels (executed with: " +
+						String.join(" ", command) + ")");
+			}
+			return result;
+		} catch (IOException e) {
+			throw new LabelingException("Could not run `labelg`: " +
+					e.getMessage(), e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new LabelingException("Interrupted while waiting for " +
+					"`labelg`", e);
+		}
+	}
+
+	// takes an idle process, starting one if fewer than poolSize are live
+	private Coprocess acquire() {
+		while (true) {
+			Coprocess coprocess = idle.poll();
+			if (coprocess != null) {
+				return coprocess;
+			}
+			synchronized (this) {
+				if (closed) {
+					throw new LabelingException("Labeler is closed");
+				}
+				if (started < poolSize) {
+					started++;
+					try {
+						return new Coprocess(start(), timeoutMillis);
+					} catch (IOException e) {
+						started--;
+						throw new LabelingException("Could not run `labelg`: " +
+								e.getMessage(), e);
+					}
+				}
+			}
+			try {
+				coprocess = idle.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new LabelingException("Interrupted while waiting for " +
+						"`labelg`", e);
+			}
+			if (coprocess != null) {
+				return coprocess;
+			}
+		}
+	}
+
+	// returns a process to the pool, or stops it if it failed or the
+	// Labeler is closed
+	private void release(Coprocess coprocess, boolean healthy) {
+		synchronized (this) {
+			if (healthy && !closed) {
+				idle.add(coprocess);
+				return;
+			}
+			started--;
+		}
+		coprocess.close();
+	}
+
+	private Process start() throws IOException {
+		return new ProcessBuilder(command)
+				.redirectError(ProcessBuilder.Redirect.INHERIT)
+				.start();
+	}
+
+	// returns the path of an executable on the PATH, or null
+	private static String findOnPath(String name) {
+		String path = System.getenv("PATH");
+		if (path == null) {
+			return null;
+		}
+		for (String directory : path.split(File.pathSeparator)) {
+			File file = new File(directory, name);
+			if (file.isFile() && file.canExecute()) {
+				return file.getPath();
+			}
+		}
+		return null;
+	}
+
+	// a labelg process that reads one g6 label per line and writes its
+	// canonical label as soon as it is read
+	private static final class Coprocess {
+
+		private final Process process;
+		private final long timeoutMillis;
+		private final Writer in;
+		private final BufferedReader out;
+
+		// set once the watchdog destroyed the process
+		private boolean timedOut;
+
+		Coprocess(Process process, long timeoutMillis) {
+			this.process = process;
+			this.timeoutMillis = timeoutMillis;
+			this.in = new BufferedWriter(new OutputStreamWriter(
+					process.getOutputStream(), StandardCharsets.US_ASCII));
+			this.out = new BufferedReader(new InputStreamReader(
+					process.getInputStream(), StandardCharsets.US_ASCII));
+		}
+
+		// labels a batch, or throws if the process fails or is destroyed
+		// because it did not answer within the timeout
+		List<String> label(List<String> batch) throws IOException {
+			Watch watch = new Watch(process, timeoutMillis);
+			try {
+				for (String label : batch) {
+					in.write(label);
+					in.write('\n');
+				}
+				in.flush();
+				List<String> result = new ArrayList<>(batch.size());
+				for (int i = 0; i < batch.size(); i++) {
+					String line = out.readLine();
+					if (line == null) {
+						throw new IOException("output ended after " + i +
+								" of " + batch.size() + " labels");
+					}
+					result.add(line);
+				}
+				return result;
+			} finally {
+				timedOut = watch.stop();
+			}
+		}
+
+		boolean timedOut() {
+			return timedOut;
+		}
+
+		// closing its input makes labelg exit
+		void close() {
+			try { in.close(); } catch (IOException e) {}
+			try { out.close(); } catch (IOException e) {}
+			process.destroy();
+		}
+	}
+
+	// destroys a process unless it is stopped within a timeout
+	private static final class Watch {
+
+		// set before the process is destroyed, so that a caller that sees
+		// the output end because of it also sees the flag
+		private final AtomicBoolean expired = new AtomicBoolean();
+		private final ScheduledFuture<?> future;
+
+		Watch(Process process, long timeoutMillis) {
+			this.future = WATCHDOG.schedule(() -> {
+				expired.set(true);
+				process.destroyForcibly();
+			}, timeoutMillis, TimeUnit.MILLISECONDS);
+		}
+
+		// stops watching, returning true if the process was destroyed
+		boolean stop() {
+			future.cancel(false);
+			return expired.get();
+		}
+	}
 }
@@ -0,0 +1,25 @@
+package edu.uwb.nemolib;
+
+/**
+ * Thrown when a CanonicalLabeler cannot compute canonical labels, for
+ * example because the labelg program could not be started or exited early.
+ */
+public class LabelingException extends RuntimeException {
+
+	/**
+	 * Construct a LabelingException.
+	 * @param message the detail message
+	 */
+	public LabelingException(String message) {
+		super(message);
+	}
+
+	/**
+	 * Construct a LabelingException with the exception that caused it.
+	 * @param message the detail message
+	 * @param cause the cause
+	 */
+	public LabelingException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
@@ -0,0 +1,153 @@
+package edu.uwb.nemolib;
+
+import java.util.Arrays;
+
+/**
+ * A set of non-negative longs stored in a single open-addressing array with
+ * linear probing. Unlike LongLongHashMap it supports removal, which closes
+ * the gap left behind by shifting later entries of the probe sequence back,
+ * so a set that sees many insertions and removals never fills up with
+ * deleted markers.
+ */
+final class LongHashSet {
+
+	private static final int DEFAULT_CAPACITY = 16;
+	private static final long NULL_KEY = -1L;
+
+	private long[] keys;
+	private int mask;
+	private int size;
+
+	LongHashSet() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Construct a LongHashSet that holds the given number of keys without
+	 * growing.
+	 * @param expectedSize the expected number of keys
+	 */
+	LongHashSet(int expectedSize) {
+		int capacity = DEFAULT_CAPACITY;
+		while (capacity >>> 1 < expectedSize) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Add a key to this set.
+	 * @param key the non-negative key
+	 * @return true if the key was not already present
+	 */
+	boolean add(long key) {
+		if (key < 0) {
+			throw new IllegalArgumentException(
+					"Argument out of range (must be non-negative).");
+		}
+
+		int slot = hash(key) & mask;
+		while (keys[slot] != NULL_KEY) {
+			if (keys[slot] == key) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		size++;
+
+		// keep the load factor at or below one half
+		if (size > (keys.length >>> 1)) {
+			rehash(keys.length << 1);
+		}
+		return true;
+	}
+
+	/**
+	 * Check whether a key is in this set.
+	 * @param key the key
+	 * @return true if the key is present
+	 */
+	boolean contains(long key) {
+		if (key < 0) {
+			return false;
+		}
+		int slot = hash(key) & mask;
+		while (keys[slot] != NULL_KEY) {
+			if (keys[slot] == key) {
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Remove a key from this set.
+	 * @param key the key
+	 * @return true if the key was present
+	 */
+	boolean remove(long key) {
+		if (key < 0) {
+			return false;
+		}
+		int slot = hash(key) & mask;
+		while (keys[slot] != key) {
+			if (keys[slot] == NULL_KEY) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		// move back every later key of the probe run that could not be found
+		// across the emptied slot
+		int gap = slot;
+		int next = (gap + 1) & mask;
+		while (keys[next] != NULL_KEY) {
+			int home = hash(keys[next]) & mask;
+			if (((next - home) & mask) >= ((next - gap) & mask)) {
+				keys[gap] = keys[next];
+				gap = next;
+			}
+			next = (next + 1) & mask;
+		}
+		keys[gap] = NULL_KEY;
+		size--;
+		return true;
+	}
+
+	private void rehash(int newLength) {
+		long[] oldKeys = keys;
+		allocate(newLength);
+		for (long key : oldKeys) {
+			if (key != NULL_KEY) {
+				int slot = hash(key) & mask;
+				while (keys[slot] != NULL_KEY) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = key;
+			}
+		}
+	}
+
+	private void allocate(int length) {
+		keys = new long[length];
+		Arrays.fill(keys, NULL_KEY);
+		mask = length - 1;
+	}
+
+	// the MurmurHash3 finalizer, as in LongLongHashMap
+	private static int hash(long key) {
+		long h = key;
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return (int) h;
+	}
+}
@@ -0,0 +1,157 @@
+package edu.uwb.nemolib;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A map from non-negative longs to longs, stored in a pair of parallel
+ * open-addressing arrays. It exists so that counts keyed by subgraph
+ * adjacency masks can be accumulated without boxing or hashing Strings.
+ * Entries cannot be removed.
+ */
+final class LongLongHashMap implements Serializable {
+
+	private static final int DEFAULT_CAPACITY = 16;
+	private static final long NULL_KEY = -1L;
+
+	private long[] keys;
+	private long[] values;
+	private int mask;
+	private int size;
+
+	/**
+	 * Visits the entries of a LongLongHashMap.
+	 */
+	interface Visitor {
+		/**
+		 * Called once for every entry of the map.
+		 * @param key the entry's key
+		 * @param value the entry's value
+		 */
+		void visit(long key, long value);
+	}
+
+	LongLongHashMap() {
+		allocate(DEFAULT_CAPACITY);
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Add to the value of a key, which is 0 if the key is absent.
+	 * @param key the non-negative key
+	 * @param delta the amount to add
+	 */
+	void add(long key, long delta) {
+		if (key < 0) {
+			throw new IllegalArgumentException(
+					"Argument out of range (must be non-negative).");
+		}
+
+		int slot = hash(key) & mask;
+		while (keys[slot] != NULL_KEY) {
+			if (keys[slot] == key) {
+				values[slot] += delta;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = delta;
+		size++;
+
+		// keep the load factor at or below one half
+		if (size > (keys.length >>> 1)) {
+			rehash(keys.length << 1);
+		}
+	}
+
+	/**
+	 * Get the value of a key.
+	 * @param key the key
+	 * @return the key's value, or 0 if the key is absent
+	 */
+	long get(long key) {
+		if (key < 0) {
+			return 0;
+		}
+		int slot = hash(key) & mask;
+		while (keys[slot] != NULL_KEY) {
+			if (keys[slot] == key) {
+				return values[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return 0;
+	}
+
+	/**
+	 * Add every entry of another map to this map.
+	 * @param other the map whose values are added
+	 */
+	void addAll(LongLongHashMap other) {
+		for (int i = 0; i < other.keys.length; i++) {
+			if (other.keys[i] != NULL_KEY) {
+				add(other.keys[i], other.values[i]);
+			}
+		}
+	}
+
+	/**
+	 * Visit every entry of this map, in no particular order.
+	 * @param visitor the visitor
+	 */
+	void forEach(Visitor visitor) {
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != NULL_KEY) {
+				visitor.visit(keys[i], values[i]);
+			}
+		}
+	}
+
+	/**
+	 * Remove every entry of this map.
+	 */
+	void clear() {
+		Arrays.fill(keys, NULL_KEY);
+		Arrays.fill(values, 0);
+		size = 0;
+	}
+
+	private void rehash(int newLength) {
+		long[] oldKeys = keys;
+		long[] oldValues = values;
+		allocate(newLength);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != NULL_KEY) {
+				int slot = hash(oldKeys[i]) & mask;
+				while (keys[slot] != NULL_KEY) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	private void allocate(int length) {
+		keys = new long[length];
+		Arrays.fill(keys, NULL_KEY);
+		values = new long[length];
+		mask = length - 1;
+	}
+
+	// adjacency masks share most of their bits, so every bit of the key is
+	// mixed into the low bits used to pick a slot (the MurmurHash3 finalizer)
+	private static int hash(long key) {
+		long h = key;
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return (int) h;
+	}
+}
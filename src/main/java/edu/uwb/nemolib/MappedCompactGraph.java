@@ -0,0 +1,72 @@
+package edu.uwb.nemolib;
+
+import java.io.ObjectStreamException;
+import java.nio.IntBuffer;
+
+/**
+ * A CompactGraph whose CSR arrays are regions of a memory-mapped binary
+ * graph file, read in place through IntBuffers. It is serialized as a heap
+ * CompactGraph.
+ */
+final class MappedCompactGraph extends CompactGraph {
+
+	private final transient IntBuffer offsets;
+	private final transient IntBuffer neighbors;
+
+	/**
+	 * Construct a CompactGraph over prepared CSR buffers, which are used in
+	 * place and must not be modified afterward.
+	 * @param offsets the start of each vertex's neighbor range, plus a final
+	 *                entry equal to the number of neighbors
+	 * @param neighbors the concatenated neighbor ranges of all vertices
+	 */
+	MappedCompactGraph(IntBuffer offsets, IntBuffer neighbors) {
+		this.offsets = offsets;
+		this.neighbors = neighbors;
+	}
+
+	@Override
+	public int getSize() {
+		return offsets.limit() - 1;
+	}
+
+	@Override
+	int begin(int vertex) {
+		return offsets.get(vertex);
+	}
+
+	@Override
+	int end(int vertex) {
+		return offsets.get(vertex + 1);
+	}
+
+	@Override
+	int neighborAt(int index) {
+		return neighbors.get(index);
+	}
+
+	@Override
+	int neighborCount() {
+		return neighbors.limit();
+	}
+
+	@Override
+	IntBuffer offsets() {
+		return offsets.asReadOnlyBuffer();
+	}
+
+	@Override
+	IntBuffer neighbors() {
+		return neighbors.asReadOnlyBuffer();
+	}
+
+	private Object writeReplace() throws ObjectStreamException {
+		return new CompactGraph(toArray(offsets), toArray(neighbors));
+	}
+
+	private static int[] toArray(IntBuffer buffer) {
+		int[] array = new int[buffer.limit()];
+		buffer.duplicate().get(array);
+		return array;
+	}
+}
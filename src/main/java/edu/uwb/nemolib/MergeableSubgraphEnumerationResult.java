@@ -0,0 +1,26 @@
+package edu.uwb.nemolib;
+
+/**
+ * A SubgraphEnumerationResult whose contents can be split into independent
+ * partial results and combined again. Concurrent SubgraphEnumerators give
+ * each worker thread its own partial result, so recording a Subgraph never
+ * requires a lock, and merge the partial results once enumeration is done.
+ */
+public interface MergeableSubgraphEnumerationResult
+		extends SubgraphEnumerationResult
+{
+	/**
+	 * Creates an empty result of the same type and configuration as this
+	 * one, suitable for accumulating a partial result on a single thread.
+	 * @return a new, empty partial result
+	 */
+	MergeableSubgraphEnumerationResult newPartialResult();
+
+	/**
+	 * Adds every Subgraph recorded in another result to this result. Both
+	 * results must be of the same type and in the same labeled state; the
+	 * other result should not be used afterwards.
+	 * @param other the result to merge into this one
+	 */
+	void merge(MergeableSubgraphEnumerationResult other);
+}
@@ -0,0 +1,320 @@
+package edu.uwb.nemolib;
+
+import java.util.Arrays;
+
+/**
+ * OrbitCounter counts, for every vertex of a network, the orbits it occupies
+ * in the connected graphlets of 2 to 4 vertices, in the manner of ORCA,
+ * without enumerating any subgraph. A few counts are taken per vertex and
+ * per edge: triangles, 4-cliques, 4-cycles, and the triangles on each edge,
+ * with the vertices renumbered in order of degree as in ClosedFormCounter.
+ * The number of times a vertex occupies each orbit of a graphlet that need
+ * not be induced follows from these and from the degrees of its neighbors,
+ * and a triangular system of linear equations recovers the induced counts.
+ * <p>
+ * As a SubgraphEnumerator, an OrbitCounter fills a SubgraphProfile for
+ * subgraph sizes 3 and 4 with the same labels and frequencies that
+ * enumeration produces. Other subgraph sizes, and results other than a
+ * SubgraphProfile, are passed on to a fallback enumerator.
+ */
+public final class OrbitCounter implements SubgraphEnumerator {
+
+	private final SubgraphEnumerator fallback;
+
+	/**
+	 * Construct an OrbitCounter that uses ESU for other subgraph sizes.
+	 */
+	public OrbitCounter() {
+		this(new ESU());
+	}
+
+	/**
+	 * Construct an OrbitCounter.
+	 * @param fallback the enumerator used for subgraph sizes other than 3
+	 *                 and 4 and for results other than a SubgraphProfile
+	 */
+	public OrbitCounter(SubgraphEnumerator fallback) {
+		this.fallback = fallback;
+	}
+
+	/**
+	 * Check whether subgraphs of a size are profiled from orbit counts.
+	 * @param subgraphSize the subgraph size
+	 * @return true if the size is 3 or 4
+	 */
+	public static boolean supports(int subgraphSize) {
+		return ClosedFormCounter.supports(subgraphSize);
+	}
+
+	@Override
+	public void enumerate(CompactGraph graph, int subgraphSize,
+	                      SubgraphEnumerationResult subgraphs) {
+		if (!supports(subgraphSize) || !(subgraphs instanceof SubgraphProfile)) {
+			fallback.enumerate(graph, subgraphSize, subgraphs);
+			return;
+		}
+		countOrbits(graph).addTo((SubgraphProfile) subgraphs, subgraphSize);
+	}
+
+	/**
+	 * Count the orbits of every vertex of a graph.
+	 * @param graph the graph
+	 * @return the graphlet degree vector of every vertex
+	 * @throws IllegalArgumentException if the graph has more than
+	 * GraphletDegreeVectors.MAX_VERTEX_COUNT vertices
+	 */
+	public static GraphletDegreeVectors countOrbits(CompactGraph graph) {
+		if (graph.getSize() > GraphletDegreeVectors.MAX_VERTEX_COUNT) {
+			throw new IllegalArgumentException("Argument out of range " +
+					"(graph must have at most " +
+					GraphletDegreeVectors.MAX_VERTEX_COUNT + " vertices).");
+		}
+		int[] permutation = ClosedFormCounter.degreeOrder(graph);
+		CompactGraph ordered = graph.permute(permutation);
+		long[] orderedCounts = new Counts(ordered).orbits();
+
+		// copy each row back to the vertex's original number
+		int size = graph.getSize();
+		int n = GraphletDegreeVectors.ORBIT_COUNT;
+		long[] counts = new long[size * n];
+		for (int v = 0; v < size; v++) {
+			System.arraycopy(orderedCounts, permutation[v] * n, counts, v * n,
+					n);
+		}
+		return new GraphletDegreeVectors(counts);
+	}
+
+	// the per-vertex counts of a degree-ordered graph from which its orbits
+	// are derived
+	private static final class Counts {
+
+		private final CompactGraph graph;
+		private final int size;
+
+		// the triangles on each edge u < v, indexed by the position of v in
+		// the neighbor array of u
+		private final int[] edgeTriangles;
+
+		// per vertex: triangles, 4-cliques and 4-cycles through it; the sum
+		// over its edges of pairs of triangles on the edge; over its
+		// triangles, the triangles on the opposite edge less one, and the
+		// other neighbors of the two other vertices
+		private final long[] triangles;
+		private final long[] cliques;
+		private final long[] cycles;
+		private final long[] edgeTrianglePairs;
+		private final long[] oppositeTriangles;
+		private final long[] triangleNeighbors;
+
+		Counts(CompactGraph graph) {
+			this.graph = graph;
+			this.size = graph.getSize();
+			this.edgeTriangles = new int[graph.neighborCount()];
+			this.triangles = new long[size];
+			this.cliques = new long[size];
+			this.cycles = new long[size];
+			this.edgeTrianglePairs = new long[size];
+			this.oppositeTriangles = new long[size];
+			this.triangleNeighbors = new long[size];
+			countTriangles();
+			countTrianglePairs();
+			countCycles();
+		}
+
+		// counts the triangles on each vertex and edge and the 4-cliques on
+		// each vertex, finding each from its lowest vertex u
+		private void countTriangles() {
+			int[] positions = new int[size];
+			Arrays.fill(positions, -1);
+			int[] common = new int[size];
+			int[] stamps = new int[size];
+			int stamp = 0;
+			for (int u = 0; u < size; u++) {
+				int first = graph.firstNeighborAbove(u, u);
+				int end = graph.end(u);
+				for (int i = first; i < end; i++) {
+					positions[graph.neighborAt(i)] = i;
+				}
+				for (int i = first; i < end; i++) {
+					int v = graph.neighborAt(i);
+					int commonCount = 0;
+					for (int j = graph.firstNeighborAbove(v, v);
+					     j < graph.end(v); j++) {
+						int w = graph.neighborAt(j);
+						if (positions[w] < 0) {
+							continue;
+						}
+						triangles[u]++;
+						triangles[v]++;
+						triangles[w]++;
+						edgeTriangles[i]++;
+						edgeTriangles[j]++;
+						edgeTriangles[positions[w]]++;
+						common[commonCount++] = w;
+					}
+					if (commonCount < 2) {
+						continue;
+					}
+					stamp++;
+					for (int c = 0; c < commonCount; c++) {
+						stamps[common[c]] = stamp;
+					}
+					for (int c = 0; c < commonCount; c++) {
+						int w = common[c];
+						for (int k = graph.firstNeighborAbove(w, w);
+						     k < graph.end(w); k++) {
+							int x = graph.neighborAt(k);
+							if (stamps[x] == stamp) {
+								cliques[u]++;
+								cliques[v]++;
+								cliques[w]++;
+								cliques[x]++;
+							}
+						}
+					}
+				}
+				for (int i = first; i < end; i++) {
+					positions[graph.neighborAt(i)] = -1;
+				}
+			}
+		}
+
+		// visits every triangle again, now that the triangles on each edge
+		// are known
+		private void countTrianglePairs() {
+			for (int u = 0; u < size; u++) {
+				for (int i = graph.firstNeighborAbove(u, u); i < graph.end(u);
+				     i++) {
+					long t = edgeTriangles[i];
+					edgeTrianglePairs[u] += t * (t - 1) / 2;
+					edgeTrianglePairs[graph.neighborAt(i)] += t * (t - 1) / 2;
+				}
+			}
+
+			int[] positions = new int[size];
+			Arrays.fill(positions, -1);
+			for (int u = 0; u < size; u++) {
+				int first = graph.firstNeighborAbove(u, u);
+				int end = graph.end(u);
+				for (int i = first; i < end; i++) {
+					positions[graph.neighborAt(i)] = i;
+				}
+				long uDegree = graph.getDegree(u);
+				for (int i = first; i < end; i++) {
+					int v = graph.neighborAt(i);
+					long vDegree = graph.getDegree(v);
+					for (int j = graph.firstNeighborAbove(v, v);
+					     j < graph.end(v); j++) {
+						int w = graph.neighborAt(j);
+						if (positions[w] < 0) {
+							continue;
+						}
+						long wDegree = graph.getDegree(w);
+						oppositeTriangles[u] += edgeTriangles[j] - 1;
+						oppositeTriangles[v] += edgeTriangles[positions[w]] - 1;
+						oppositeTriangles[w] += edgeTriangles[i] - 1;
+						triangleNeighbors[u] += vDegree + wDegree - 4;
+						triangleNeighbors[v] += uDegree + wDegree - 4;
+						triangleNeighbors[w] += uDegree + vDegree - 4;
+					}
+				}
+				for (int i = first; i < end; i++) {
+					positions[graph.neighborAt(i)] = -1;
+				}
+			}
+		}
+
+		// counts each 4-cycle from its highest vertex u and the vertex w
+		// opposite it, as a pair of paths u-v-w through lower vertices, and
+		// adds it to all four of its vertices
+		private void countCycles() {
+			int[] paths = new int[size];
+			int[] touched = new int[size];
+			for (int u = 0; u < size; u++) {
+				int touchedCount = 0;
+				int below = graph.firstNeighborAbove(u, u);
+				for (int i = graph.begin(u); i < below; i++) {
+					int v = graph.neighborAt(i);
+					int end = graph.firstNeighborAbove(v, u - 1);
+					for (int j = graph.begin(v); j < end; j++) {
+						int w = graph.neighborAt(j);
+						if (paths[w]++ == 0) {
+							touched[touchedCount++] = w;
+						}
+					}
+				}
+				// v is on one cycle with each other path to the same w
+				for (int i = graph.begin(u); i < below; i++) {
+					int v = graph.neighborAt(i);
+					int end = graph.firstNeighborAbove(v, u - 1);
+					for (int j = graph.begin(v); j < end; j++) {
+						cycles[v] += paths[graph.neighborAt(j)] - 1;
+					}
+				}
+				for (int t = 0; t < touchedCount; t++) {
+					int w = touched[t];
+					long c = paths[w];
+					cycles[u] += c * (c - 1) / 2;
+					cycles[w] += c * (c - 1) / 2;
+					paths[w] = 0;
+				}
+			}
+		}
+
+		// solves for the orbits of every vertex, each row ORBIT_COUNT long;
+		// countOrbits() checked that the rows fit in one array
+		long[] orbits() {
+			// the number of 2-paths from each vertex, which is the sum of
+			// the degrees of its neighbors less one each
+			long[] twoPaths = new long[size];
+			for (int x = 0; x < size; x++) {
+				for (int i = graph.begin(x); i < graph.end(x); i++) {
+					twoPaths[x] += graph.getDegree(graph.neighborAt(i)) - 1;
+				}
+			}
+
+			int n = GraphletDegreeVectors.ORBIT_COUNT;
+			long[] result = new long[size * n];
+			long[] o = new long[n];
+			for (int x = 0; x < size; x++) {
+				long d = graph.getDegree(x);
+				long t = triangles[x];
+				long neighborTwoPaths = 0;
+				long neighborTriangles = 0;
+				long neighborPairs = 0;
+				for (int i = graph.begin(x); i < graph.end(x); i++) {
+					int a = graph.neighborAt(i);
+					long aDegree = graph.getDegree(a);
+					neighborTwoPaths += twoPaths[a];
+					neighborTriangles += triangles[a];
+					neighborPairs += (aDegree - 1) * (aDegree - 2) / 2;
+				}
+
+				// each right-hand side counts the graphlet of the orbit
+				// whether or not it is induced; the terms subtracted are the
+				// larger graphlets that contain it
+				o[0] = d;
+				o[1] = twoPaths[x] - 2 * t;
+				o[2] = d * (d - 1) / 2 - t;
+				o[3] = t;
+				o[14] = cliques[x];
+				o[13] = edgeTrianglePairs[x] - 3 * o[14];
+				o[12] = oppositeTriangles[x] - 3 * o[14];
+				o[11] = t * (d - 2) - 2 * o[13] - 3 * o[14];
+				o[10] = triangleNeighbors[x] - 2 * o[12] - 2 * o[13] -
+						6 * o[14];
+				o[9] = neighborTriangles - 2 * t - 2 * o[12] - 3 * o[14];
+				o[8] = cycles[x] - o[12] - o[13] - 3 * o[14];
+				o[7] = d * (d - 1) * (d - 2) / 6 - o[11] - o[13] - o[14];
+				o[6] = neighborPairs - o[9] - o[10] - 2 * o[12] - o[13] -
+						3 * o[14];
+				o[5] = (d - 1) * twoPaths[x] - 2 * t - 2 * o[8] - o[10] -
+						2 * o[11] - 2 * o[12] - 4 * o[13] - 6 * o[14];
+				o[4] = neighborTwoPaths - d * (d - 1) - 2 * t - 2 * o[8] -
+						2 * o[9] - o[10] - 4 * o[12] - 2 * o[13] - 6 * o[14];
+				System.arraycopy(o, 0, result, x * n, n);
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package edu.uwb.nemolib;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * ParallelESU executes the Enumerate Subgraphs algorithm on a ForkJoinPool,
+ * running the branch of every root vertex as an independent task.
+ */
+public class ParallelESU implements SubgraphEnumerator
+{
+	private final ForkJoinPool pool;
+
+	/**
+	 * Construct a ParallelESU object that runs on the common ForkJoinPool.
+	 */
+	public ParallelESU() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Construct a ParallelESU object that runs on the given pool.
+	 * @param pool the ForkJoinPool on which to execute the ESU tree
+	 */
+	public ParallelESU(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Enumerates Subgraphs using the ESU algorithm, executing root branches
+	 * concurrently.
+	 *
+	 * @param graph the graph on which to execute ESU
+	 * @param subgraphSize the size of the target Subgraphs
+	 * @param subgraphs the SubgraphEnumerationResult into which to enumerated
+	 *                  Subgraphs will be stored.
+	 */
+	@Override
+	public void enumerate(CompactGraph graph, int subgraphSize,
+	                      SubgraphEnumerationResult subgraphs) {
+		new ParallelRandESU(ESU.allVertices(subgraphSize), pool)
+				.enumerate(graph, subgraphSize, subgraphs);
+	}
+}
@@ -0,0 +1,380 @@
+package edu.uwb.nemolib;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * ParallelRandESU executes the RAND-ESU algorithm on a ForkJoinPool. Every
+ * root vertex's branch of the ESU tree is an independent task, and branches
+ * whose extension is large (such as those rooted at hub vertices) are split
+ * again one level further down so that idle workers can steal the pieces.<p>
+ * If the result is a MergeableSubgraphEnumerationResult, every worker thread
+ * records Subgraphs into its own partial result without locking, and the
+ * partial results are combined by a parallel tree merge at the end. Other
+ * results are shared by all workers and updated under a lock.
+ */
+public class ParallelRandESU implements SubgraphEnumerator {
+
+	// extensions with at least this many vertices are split into one task
+	// per extension vertex instead of being enumerated sequentially
+	private static final int SPLIT_THRESHOLD = 32;
+
+	// root ranges are split until they hold at most this many roots, or
+	// fewer if that would leave under ROOT_TASKS_PER_THREAD tasks per worker
+	private static final int MAX_ROOT_GRAIN = 4096;
+	private static final int ROOT_TASKS_PER_THREAD = 8;
+
+	private final List<Double> probs;
+	private final ForkJoinPool pool;
+
+	// the seed of every run, or null to draw a new seed for each run
+	private final Long seed;
+
+	// prevent instantiation via default constructor
+	private ParallelRandESU()
+	{
+		throw new AssertionError();
+	}
+
+	/**
+	 * Construct a ParallelRandESU object that runs on the common
+	 * ForkJoinPool.
+	 * @param probs the RAND-ESU probability vector
+	 */
+	public ParallelRandESU(List<Double> probs) {
+		this(probs, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Construct a ParallelRandESU object that runs on the given pool.
+	 * @param probs the RAND-ESU probability vector
+	 * @param pool the ForkJoinPool on which to execute the ESU tree
+	 */
+	public ParallelRandESU(List<Double> probs, ForkJoinPool pool) {
+		this.probs = probs;
+		this.pool = pool;
+		this.seed = null;
+	}
+
+	/**
+	 * Construct a ParallelRandESU object whose enumerations are reproducible,
+	 * and sample the same subgraphs as a RandESU with the same seed. It runs
+	 * on the common ForkJoinPool.
+	 * @param probs the RAND-ESU probability vector
+	 * @param seed the seed of every enumeration
+	 */
+	public ParallelRandESU(List<Double> probs, long seed) {
+		this(probs, seed, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Construct a ParallelRandESU object whose enumerations are reproducible
+	 * that runs on the given pool.
+	 * @param probs the RAND-ESU probability vector
+	 * @param seed the seed of every enumeration
+	 * @param pool the ForkJoinPool on which to execute the ESU tree
+	 */
+	public ParallelRandESU(List<Double> probs, long seed, ForkJoinPool pool) {
+		this.probs = probs;
+		this.pool = pool;
+		this.seed = seed;
+	}
+
+	/**
+	 * Enumerates all subgraphSize Subgraphs in the input graph using the
+	 * RAND-ESU algorithm, executing root branches concurrently.
+	 *
+	 * @param graph        the graph on which to execute RAND-ESU
+	 * @param subgraphSize the size of the target Subgraphs
+	 * @param subgraphs    the SubgraphEnumerationResult into which
+	 *                     enumerated Subgraphs will be stored
+	 */
+	@Override
+	public void enumerate(CompactGraph graph,
+	                      int subgraphSize,
+	                      SubgraphEnumerationResult subgraphs) {
+		long runSeed = RandESU.seed(seed);
+		int[] roots = RandESU.selectVertices(graph, probs.get(0), runSeed);
+		int grain = Math.max(1, Math.min(MAX_ROOT_GRAIN, roots.length /
+				(pool.getParallelism() * ROOT_TASKS_PER_THREAD)));
+		if (subgraphs instanceof MergeableSubgraphEnumerationResult) {
+			MergeableSubgraphEnumerationResult target =
+					(MergeableSubgraphEnumerationResult) subgraphs;
+			Map<Thread, MergeableSubgraphEnumerationResult> partials =
+					new ConcurrentHashMap<>();
+			Supplier<SubgraphEnumerationResult> sinks = () -> {
+				Thread thread = Thread.currentThread();
+				MergeableSubgraphEnumerationResult partial =
+						partials.get(thread);
+				if (partial == null) {
+					partial = target.newPartialResult();
+					partials.put(thread, partial);
+				}
+				return partial;
+			};
+			pool.invoke(new RootTask(graph, subgraphSize, runSeed,
+					new Workers(graph, subgraphSize, runSeed, sinks), roots,
+					grain, 0, roots.length));
+
+			List<MergeableSubgraphEnumerationResult> results =
+					new ArrayList<>(partials.values());
+			if (!results.isEmpty()) {
+				target.merge(pool.invoke(new MergeTask(results, 0,
+						results.size())));
+			}
+		} else {
+			SubgraphEnumerationResult shared =
+					new SynchronizedResult(subgraphs);
+			pool.invoke(new RootTask(graph, subgraphSize, runSeed,
+					new Workers(graph, subgraphSize, runSeed, () -> shared),
+					roots, grain, 0, roots.length));
+		}
+	}
+
+	// either enumerates the branch below the subgraph formed by
+	// vertices[0..size) in the calling thread, or splits it into one task per
+	// extension vertex
+	private void extend(CompactGraph graph,
+	                    int subgraphSize,
+	                    long runSeed,
+	                    int[] vertices,
+	                    int size,
+	                    int[] extension,
+	                    int extensionSize,
+	                    Workers workers) {
+		if (size < subgraphSize - 1 && extensionSize >= SPLIT_THRESHOLD) {
+			int[] candidates = extension.length == extensionSize ?
+					extension : Arrays.copyOf(extension, extensionSize);
+			List<BranchTask> tasks = new ArrayList<>(extensionSize);
+			for (int i = 0; i < extensionSize; i++) {
+				tasks.add(new BranchTask(graph, subgraphSize, runSeed,
+						vertices, size, candidates, i, workers));
+			}
+			RecursiveAction.invokeAll(tasks);
+		} else {
+			workers.engine()
+					.enumerate(vertices, size, extension, extensionSize);
+		}
+	}
+
+	// returns true if the node is not in, and not adjacent to any vertex of,
+	// the subgraph formed by vertices[0..size)
+	private static boolean isExclusive(CompactGraph graph, int node,
+	                                   int[] vertices, int size) {
+		for (int i = 0; i < size; i++) {
+			if (vertices[i] == node ||
+					graph.isAdjacent(vertices[i], node)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// enumerates the branches of a range of root vertices, halving the range
+	// until at most grain roots remain, which share one engine
+	private class RootTask extends RecursiveAction {
+		private final CompactGraph graph;
+		private final int subgraphSize;
+		private final long runSeed;
+		private final Workers workers;
+		private final int[] roots;
+		private final int grain;
+		private final int low;
+		private final int high;
+
+		RootTask(CompactGraph graph, int subgraphSize, long runSeed,
+		         Workers workers, int[] roots,
+		         int grain, int low, int high) {
+			this.graph = graph;
+			this.subgraphSize = subgraphSize;
+			this.runSeed = runSeed;
+			this.workers = workers;
+			this.roots = roots;
+			this.grain = grain;
+			this.low = low;
+			this.high = high;
+		}
+
+		@Override
+		protected void compute() {
+			if (high - low > grain) {
+				int mid = (low + high) >>> 1;
+				invokeAll(new RootTask(graph, subgraphSize, runSeed, workers,
+								roots, grain, low, mid),
+						new RootTask(graph, subgraphSize, runSeed, workers,
+								roots, grain, mid, high));
+				return;
+			}
+			ESUEngine engine = null;
+			for (int i = low; i < high; i++) {
+				int vertex = roots[i];
+				int begin = graph.firstNeighborAbove(vertex, vertex);
+				int extensionSize = graph.end(vertex) - begin;
+				if (subgraphSize > 2 && extensionSize >= SPLIT_THRESHOLD) {
+					// hub root: hand its children to other workers
+					if (RandESU.shouldExtend(probs.get(1),
+							RandESU.nodeKey(runSeed, vertex))) {
+						int[] vertices = {vertex};
+						int[] extension = new int[extensionSize];
+						for (int j = 0; j < extensionSize; j++) {
+							extension[j] = graph.neighborAt(begin + j);
+						}
+						extend(graph, subgraphSize, runSeed, vertices, 1,
+								extension, extensionSize, workers);
+					}
+				} else {
+					if (engine == null) {
+						engine = workers.engine();
+					}
+					engine.enumerate(vertex);
+				}
+			}
+		}
+	}
+
+	// enumerates the branch obtained by adding candidates[index] to the
+	// parent subgraph. The candidates that follow it remain in the child's
+	// extension, so sibling tasks share a single candidate array.
+	private class BranchTask extends RecursiveAction {
+		private final CompactGraph graph;
+		private final int subgraphSize;
+		private final long runSeed;
+		private final int[] parent;
+		private final int parentSize;
+		private final int[] candidates;
+		private final int index;
+		private final Workers workers;
+
+		BranchTask(CompactGraph graph, int subgraphSize, long runSeed,
+		           int[] parent, int parentSize, int[] candidates, int index,
+		           Workers workers) {
+			this.graph = graph;
+			this.subgraphSize = subgraphSize;
+			this.runSeed = runSeed;
+			this.parent = parent;
+			this.parentSize = parentSize;
+			this.candidates = candidates;
+			this.index = index;
+			this.workers = workers;
+		}
+
+		@Override
+		protected void compute() {
+			int w = candidates[index];
+			int root = parent[0];
+
+			// randomly choose whether or not to extend to the next level
+			// based on the probability vector provided.
+			long key = RandESU.nodeKey(
+					RandESU.nodeKey(runSeed, parent, parentSize), w);
+			if (!RandESU.shouldExtend(probs.get(parentSize), key)) {
+				return;
+			}
+
+			int remaining = candidates.length - index - 1;
+			int[] extension = new int[remaining + graph.getDegree(w)];
+			System.arraycopy(candidates, index + 1, extension, 0, remaining);
+			int extensionSize = remaining;
+			for (int i = graph.firstNeighborAbove(w, root); i < graph.end(w);
+			     i++) {
+				int u = graph.neighborAt(i);
+				if (isExclusive(graph, u, parent, parentSize)) {
+					extension[extensionSize++] = u;
+				}
+			}
+
+			int[] vertices = Arrays.copyOf(parent, parentSize + 1);
+			vertices[parentSize] = w;
+			extend(graph, subgraphSize, runSeed, vertices, parentSize + 1,
+					extension, extensionSize, workers);
+		}
+	}
+
+	// hands every worker thread its result and its own neighbor masks for
+	// one enumeration. Engines on a thread run one after another and leave
+	// the masks cleared, so they share them; the masks are released with
+	// the enumeration.
+	private final class Workers {
+		private final CompactGraph graph;
+		private final int subgraphSize;
+		private final long runSeed;
+		private final Supplier<SubgraphEnumerationResult> sinks;
+		private final Map<Thread, int[]> masks = new ConcurrentHashMap<>();
+
+		Workers(CompactGraph graph, int subgraphSize, long runSeed,
+		        Supplier<SubgraphEnumerationResult> sinks) {
+			this.graph = graph;
+			this.subgraphSize = subgraphSize;
+			this.runSeed = runSeed;
+			this.sinks = sinks;
+		}
+
+		ESUEngine engine() {
+			int[] threadMasks = masks.computeIfAbsent(Thread.currentThread(),
+					thread -> new int[graph.getSize()]);
+			return new ESUEngine(graph, subgraphSize, probs, runSeed,
+					sinks.get(), threadMasks);
+		}
+	}
+
+	// combines a range of partial results by merging its two halves
+	private static class MergeTask
+			extends RecursiveTask<MergeableSubgraphEnumerationResult> {
+		private final List<MergeableSubgraphEnumerationResult> results;
+		private final int low;
+		private final int high;
+
+		MergeTask(List<MergeableSubgraphEnumerationResult> results, int low,
+		          int high) {
+			this.results = results;
+			this.low = low;
+			this.high = high;
+		}
+
+		@Override
+		protected MergeableSubgraphEnumerationResult compute() {
+			if (high - low == 1) {
+				return results.get(low);
+			}
+			int mid = (low + high) >>> 1;
+			MergeTask right = new MergeTask(results, mid, high);
+			right.fork();
+			MergeableSubgraphEnumerationResult left =
+					new MergeTask(results, low, mid).compute();
+			left.merge(right.join());
+			return left;
+		}
+	}
+
+	// serializes access to a result that cannot be split between workers
+	private static class SynchronizedResult
+			implements SubgraphEnumerationResult {
+		private final SubgraphEnumerationResult result;
+
+		SynchronizedResult(SubgraphEnumerationResult result) {
+			this.result = result;
+		}
+
+		@Override
+		public synchronized void addSubgraph(Subgraph currentSubgraph) {
+			result.addSubgraph(currentSubgraph);
+		}
+
+		@Override
+		public synchronized void label() {
+			result.label();
+		}
+
+		@Override
+		public synchronized Map<String, Double> getRelativeFrequencies() {
+			return result.getRelativeFrequencies();
+		}
+	}
+}
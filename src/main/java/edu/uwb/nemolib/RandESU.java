@@ -1,24 +1,54 @@
 package edu.uwb.nemolib;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * RandESU is a static class used for executing the RandESU on a portion of a
- * network graph.
+ * network graph.<p>
+ * Every random decision is drawn from a seed: root vertices are selected by
+ * a SplittableRandom seeded with it, and whether a tree node is extended is
+ * decided by a SplitMix64 hash of the seed and the vertices of the node's
+ * subgraph, in the order in which they were added. A decision therefore
+ * depends only on the seed and the node, not on the order in which nodes are
+ * visited or on which thread visits them, so sequential and parallel runs
+ * with the same seed sample exactly the same subgraphs.
  */
 public class RandESU implements SubgraphEnumerator {
+
+	// the odd increment of SplitMix64 (the golden ratio)
+	private static final long GAMMA = 0x9E3779B97F4A7C15L;
+
 	List<Double> probs;
 
+	// the seed of every run, or null to draw a new seed for each run
+	private final Long seed;
+
 	// prevent instantiation via default constructor
 	private RandESU()
 	{
 		throw new AssertionError();
 	}
 
+	/**
+	 * Construct a RandESU object that draws a new random seed for every
+	 * enumeration.
+	 * @param probs the RAND-ESU probability vector
+	 */
 	public RandESU(List<Double> probs) {
 		this.probs = probs;
+		this.seed = null;
+	}
+
+	/**
+	 * Construct a RandESU object whose enumerations are reproducible.
+	 * @param probs the RAND-ESU probability vector
+	 * @param seed the seed of every enumeration
+	 */
+	public RandESU(List<Double> probs, long seed) {
+		this.probs = probs;
+		this.seed = seed;
 	}
 
 	/**
@@ -28,37 +58,38 @@ public class RandESU implements SubgraphEnumerator {
 	 * @param graph           the graph on which to execute RAND-ESU
 	 * @param subgraphSize    the getSize of the target Subgraphs
 	 */
-	public void enumerate(Graph graph,
+	@Override
+	public void enumerate(CompactGraph graph,
 	                      int subgraphSize,
 	                      SubgraphEnumerationResult subgraphs) {
-		// maintain list of nodes selected so far
-		List<Integer> selectedVertices = new ArrayList<>();
+		long runSeed = seed(seed);
+		ESUEngine engine =
+				new ESUEngine(graph, subgraphSize, probs, runSeed, subgraphs);
+		for (int vertex : selectVertices(graph, probs.get(0), runSeed)) {
+			engine.enumerate(vertex);
+		}
+	}
 
-		if (probs.get(0) == 1.0) // select all nodes
-		{
-			for (int i = 0; i < graph.getSize(); ++i) {
-				selectedVertices.add(i);
-			}
-		} else { // determine how many nodes should be sampled initially
-			int numVerticesToSelect =
-					(int) (Math.round(probs.get(0) * graph.getSize()));
-
-			Random rand = new Random();
-			// populate list with appropriate number of nodes
-			for (int numVerticesSelected = 0; numVerticesSelected <
-					numVerticesToSelect; ++numVerticesSelected) {
-
-				int nodeSelected = rand.nextInt(graph.getSize());
-				// ensure no duplicates
-				while (selectedVertices.contains(nodeSelected)) {
-					nodeSelected = rand.nextInt(graph.getSize());
-				}
-				selectedVertices.add(nodeSelected);
+	// returns the given seed, or a new random seed if there is none
+	static long seed(Long seed) {
+		return seed != null ? seed : ThreadLocalRandom.current().nextLong();
+	}
+
+	// selects round(prob * n) distinct root vertices of a RAND-ESU execution
+	// in ascending order by selection sampling, in a single pass
+	static int[] selectVertices(CompactGraph graph, double prob, long seed) {
+		int n = graph.getSize();
+		int count = prob == 1.0 ? n : (int) Math.round(prob * n);
+		int[] selected = new int[count];
+		SplittableRandom random = new SplittableRandom(seed);
+		int size = 0;
+		for (int vertex = 0; vertex < n && size < count; vertex++) {
+			// select the vertex with probability (still needed) / (left)
+			if (random.nextInt(n - vertex) < count - size) {
+				selected[size++] = vertex;
 			}
 		}
-		for (int vertex : selectedVertices) {
-			enumerate(graph, subgraphs, subgraphSize, probs, vertex);
-		}
+		return selected;
 	}
 
 	/**
@@ -75,94 +106,82 @@ public class RandESU implements SubgraphEnumerator {
 	public static void enumerate (Graph graph,
 		SubgraphEnumerationResult subgraphs,
 		int subgraphSize, List<Double> probs, int vertex) {
+		enumerate(graph.toCompactGraph(), subgraphs, subgraphSize, probs,
+				vertex);
+	}
 
-		Subgraph subgraph = new Subgraph(subgraphSize);
-		AdjacencyList adjacencyList = new AdjacencyList();
-		CompactHashSet.Iter iter =
-				graph.getAdjacencyList(vertex).iterator();
-		while (iter.hasNext()) {
-			int next = iter.next();
-			if (next > vertex) {
-				adjacencyList.add(next);
-			}
-		}
-		subgraph.add(vertex, graph.getAdjacencyList(vertex));
-
-		// randomly decide whether to extend
-		if (shouldExtend(probs.get(1)))
-		{
-			extend(graph, subgraph, adjacencyList, probs, subgraphs);
-		}
+	/**
+	 * Enumerates all subgraphSize Subgraphs for the specified vertex's branch
+	 * of an ESU execution tree of a CompactGraph using the RAND-ESU
+	 * algorithm, with a new random seed. Every call allocates an int per
+	 * vertex of the graph, so a full enumeration is cheaper through
+	 * enumerate(CompactGraph, int, SubgraphEnumerationResult).
+	 * @param graph the graph on which to execute RAND-ESU
+	 * @param subgraphs the data structure to which results are written
+	 * @param subgraphSize the target subgraph size to enumerate
+	 * @param probs the RAND-ESU probability vector
+	 * @param vertex the graph vertex at which to execute
+	 */
+	public static void enumerate (CompactGraph graph,
+		SubgraphEnumerationResult subgraphs,
+		int subgraphSize, List<Double> probs, int vertex) {
+		enumerate(graph, subgraphs, subgraphSize, probs, vertex, seed(null));
 	}
 
-	// extend the subgraphs recursively
-	private static void extend(Graph graph,
-	                    Subgraph subgraph,
-	                    AdjacencyList extension,
-						List<Double> probs,
-	                    SubgraphEnumerationResult subgraphs) {
-
-		int v = subgraph.root();
-		CompactHashSet.Iter wIter = extension.iterator();
-
-		// optimize by not creating next extension if subgraph is
-		// 1 node away from completion
-		if (subgraph.size() == subgraph.order() - 1) {
-			while (wIter.hasNext()) {
-				int w = wIter.next();
-				// check the last value in prob list
-				if (shouldExtend(probs.get(probs.size() - 1))) {
-					// construct a union of w and the existing subgraph
-					Subgraph subgraphUnion = subgraph.copy();
-					subgraphUnion.add(w, graph.getAdjacencyList(w));
-					synchronized(subgraphs) {
-						subgraphs.addSubgraph(subgraphUnion);
-					}
-				}
-			}
-		}
+	/**
+	 * Enumerates the specified vertex's branch of the ESU tree of a
+	 * CompactGraph using the RAND-ESU algorithm, reproducibly. A branch
+	 * enumerated with a seed samples the same subgraphs as that branch of
+	 * enumerate(CompactGraph, int, SubgraphEnumerationResult) by a RandESU
+	 * with the same seed, so that a run split by vertex can be reproduced.
+	 * @param graph the graph on which to execute RAND-ESU
+	 * @param subgraphs the data structure to which results are written
+	 * @param subgraphSize the target subgraph size to enumerate
+	 * @param probs the RAND-ESU probability vector
+	 * @param vertex the graph vertex at which to execute
+	 * @param seed the seed of the random decisions
+	 */
+	public static void enumerate (CompactGraph graph,
+		SubgraphEnumerationResult subgraphs,
+		int subgraphSize, List<Double> probs, int vertex, long seed) {
 
-		// otherwise create the extention
-		while (wIter.hasNext())
-		{
-			int w = wIter.next();
-			wIter.remove();
-
-			// next extension contains at least the current extension
-			AdjacencyList nextExtension = extension.copy();
-
-			// examine each node 'u' from the set of nodes adjacent to 'w'
-			// and addSubgraph it to the next extension if it is exclusive
-			CompactHashSet.Iter uIter = graph.getAdjacencyList(w).iterator();
-			while (uIter.hasNext())
-			{
-				int u = uIter.next();
-				if (u > v)
-				{
-					if (isExclusive(graph, u, subgraph))
-					{
-						nextExtension.add(u);
-					}
-				}
-			}
+		new ESUEngine(graph, subgraphSize, probs, seed, subgraphs)
+				.enumerate(vertex);
+	}
 
-			// construct a union of w and the existing subgraph
-			Subgraph subgraphUnion = subgraph.copy();
-			subgraphUnion.add(w, graph.getAdjacencyList(w));
+	/**
+	 * Derive the key of a tree node from the key of its parent.
+	 * @param parentKey the key of the parent node, or the seed for a root
+	 * @param vertex the vertex added to the parent's subgraph
+	 * @return the key of the node
+	 */
+	static long nodeKey(long parentKey, int vertex) {
+		long z = parentKey + GAMMA * (vertex + 1L);
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
 
-			// randomly choose whether or not to extend to the next level
-			// based on the probability vector provided.
-			if (shouldExtend(probs.get(subgraphUnion.size() - 1)))
-			{
-				extend(graph, subgraphUnion, nextExtension, probs, subgraphs);
-			}
+	/**
+	 * Derive the key of the tree node of a subgraph.
+	 * @param seed the seed of the run
+	 * @param vertices the subgraph's vertices, root first, in the order in
+	 *                 which they were added
+	 * @param size the number of vertices in the subgraph
+	 * @return the key of the node
+	 */
+	static long nodeKey(long seed, int[] vertices, int size) {
+		long key = seed;
+		for (int i = 0; i < size; i++) {
+			key = nodeKey(key, vertices[i]);
 		}
+		return key;
 	}
 
-	// determines whether or not to extend based on a given probability, given
-	// as an integer.
+	// determines whether or not to extend the tree node with the given key,
+	// comparing a uniform double drawn from the key with the probability
 	// precondition: 0.0 <= prob <= 1.0
-	private static boolean shouldExtend(double prob) throws
+	static boolean shouldExtend(double prob, long key) throws
 			IllegalArgumentException {
 
 		if (prob == 1.0) {
@@ -178,29 +197,6 @@ public class RandESU implements SubgraphEnumerator {
 					" acceptable range (0.0 to 1.0)");
 		}
 
-		Random rand = new Random();
-		int randomNum = rand.nextInt(100) + 1;
-		return randomNum <= prob * 100.0;
-	}
-
-	// returns true if the node index is exclusive to the given subgraph
-	// (that is, is not already in the subgraph, and is not adjacent to any of
-	//  the nodes in the subgraph)
-	private static boolean isExclusive(Graph graph,
-	                                   int node,
-	                                   Subgraph subgraph) {
-		for (int i = 0; i < subgraph.size(); i++) {
-			int subgraphNode = subgraph.get(i);
-			if (subgraphNode == node) {
-				return false;
-			}
-		}
-		for (int i = 0; i < subgraph.size(); i++) {
-			int subgraphNode = subgraph.get(i);
-			if (graph.getAdjacencyList(subgraphNode).contains(node)) {
-				return false;
-			}
-		}
-		return true;
+		return (key >>> 11) * 0x1.0p-53 < prob;
 	}
 }
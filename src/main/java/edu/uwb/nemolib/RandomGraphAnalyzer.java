@@ -1,27 +1,133 @@
 package edu.uwb.nemolib;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
 
 /**
  * RandomGraphAnalyzer is a facade class that generates and enumerates using
  * RAND-ESU a set of random network graphs based on the degree sequence vector
  * of a specified graph. The output of the analyze() method can be used by a
  * RelativeFrequencyAnalyzer object to determine whether a target graph contains any
- * network motifs.
+ * network motifs.<p>
+ * The random graphs are drawn from a fixed number of independent chains of
+ * a RandomGraphGenerator. Random graph i is drawn from chain i modulo the
+ * chain count, and the chains are seeded from a single seed, so a given seed
+ * always produces the same result.<p>
+ * Random graphs are processed as a pipeline on a ForkJoinPool: while some
+ * random graphs are enumerated and labeled, the next ones are generated.
+ * At most a bounded number of random graphs are in flight at once, and the
+ * results are collected in random graph order as they complete. Once the
+ * results are no longer wanted, random graphs that are still being
+ * generated or enumerated are abandoned.
  */
 public final class RandomGraphAnalyzer {
 
+	/**
+	 * The number of independent chains used if none is given.
+	 */
+	public static final int DEFAULT_CHAIN_COUNT = 16;
+
+	// the number of subgraphs counted between checks for a stopped pipeline
+	private static final int STOP_CHECK_INTERVAL = 1 << 12;
+
 	private SubgraphEnumerator enumerator;
 	private int randomGraphCount;
+	private final RandomGraphGenerator generator;
+	private final int chainCount;
+	private final long seed;
+	private final ForkJoinPool pool;
+	private final int maxGraphsInFlight;
 
+	/**
+	 * Construct a RandomGraphAnalyzer that draws its random graphs from the
+	 * erased configuration model with a random seed.
+	 * @param enumerator the enumerator used on every random graph
+	 * @param randomGraphCount the number of random graphs
+	 */
 	public RandomGraphAnalyzer(SubgraphEnumerator enumerator,
 	                           int randomGraphCount) {
+		this(enumerator, randomGraphCount, new ConfigurationModelGenerator(
+				ConfigurationModelGenerator.Policy.ERASE),
+				ThreadLocalRandom.current().nextLong());
+	}
+
+	/**
+	 * Construct a RandomGraphAnalyzer that draws its random graphs from
+	 * DEFAULT_CHAIN_COUNT chains of a generator.
+	 * @param enumerator the enumerator used on every random graph
+	 * @param randomGraphCount the number of random graphs
+	 * @param generator the null model from which random graphs are drawn
+	 * @param seed the seed from which the chains are seeded
+	 */
+	public RandomGraphAnalyzer(SubgraphEnumerator enumerator,
+	                           int randomGraphCount,
+	                           RandomGraphGenerator generator,
+	                           long seed) {
+		this(enumerator, randomGraphCount, generator, DEFAULT_CHAIN_COUNT,
+				seed);
+	}
+
+	/**
+	 * Construct a RandomGraphAnalyzer.
+	 * @param enumerator the enumerator used on every random graph
+	 * @param randomGraphCount the number of random graphs
+	 * @param generator the null model from which random graphs are drawn
+	 * @param chainCount the number of independent chains of the generator
+	 * @param seed the seed from which the chains are seeded
+	 */
+	public RandomGraphAnalyzer(SubgraphEnumerator enumerator,
+	                           int randomGraphCount,
+	                           RandomGraphGenerator generator,
+	                           int chainCount,
+	                           long seed) {
+		this(enumerator, randomGraphCount, generator, chainCount, seed,
+				ForkJoinPool.commonPool(),
+				2 * ForkJoinPool.commonPool().getParallelism() + 1);
+	}
+
+	/**
+	 * Construct a RandomGraphAnalyzer that runs on the given pool.
+	 * @param enumerator the enumerator used on every random graph
+	 * @param randomGraphCount the number of random graphs
+	 * @param generator the null model from which random graphs are drawn
+	 * @param chainCount the number of independent chains of the generator
+	 * @param seed the seed from which the chains are seeded
+	 * @param pool the ForkJoinPool on which random graphs are generated,
+	 *             enumerated and labeled
+	 * @param maxGraphsInFlight the largest number of random graphs that are
+	 *                          generated but not yet enumerated and labeled
+	 */
+	public RandomGraphAnalyzer(SubgraphEnumerator enumerator,
+	                           int randomGraphCount,
+	                           RandomGraphGenerator generator,
+	                           int chainCount,
+	                           long seed,
+	                           ForkJoinPool pool,
+	                           int maxGraphsInFlight) {
+		if (chainCount < 1 || maxGraphsInFlight < 1) {
+			throw new IllegalArgumentException(
+					"Argument out of range (must be positive).");
+		}
 		this.enumerator = enumerator;
 		this.randomGraphCount = randomGraphCount;
-
+		this.generator = generator;
+		this.chainCount = chainCount;
+		this.seed = seed;
+		this.pool = pool;
+		this.maxGraphsInFlight = maxGraphsInFlight;
 	}
 
 	/**
@@ -35,41 +141,212 @@ public final class RandomGraphAnalyzer {
 	public Map<String, List<Double>> analyze (Graph targetGraph, int subgraphSize) {
 
 		// create the return map and fill it with the labels we found in the
-		// target graph, as those are the only labels about which we care
+		// random graphs, in random graph order
 		Map<String, List<Double>> labelToRelativeFrequencies = new HashMap<>();
+		LabelDictionary dictionary = new LabelDictionary();
+		run(targetGraph, subgraphSize, dictionary, curRelFreqs -> {
+			addRelativeFrequencies(labelToRelativeFrequencies, dictionary,
+					curRelFreqs);
+			return true;
+		});
 
-		for(int i = 0; i < randomGraphCount; i++) {
-			Graph randomGraph = RandomGraphGenerator.generate(targetGraph);
+		// fill in with zeros any List that is less than subgraph count to
+		// ensure non-detection is accounted for.
+		for (List<Double> freqs :
+				labelToRelativeFrequencies.values()) {
+			while (freqs.size() < randomGraphCount) {
+				freqs.add(0.0);
+			}
+		}
+		return labelToRelativeFrequencies;
+	}
+
+	/**
+	 * Generate and enumerate a set of random graphs, adding the relative
+	 * frequencies of every random graph to an accumulator in random graph
+	 * order as soon as they are known.
+	 * @param targetGraph the network graph from which to derive a degree
+	 *                    sequence vector for generating random graphs
+	 * @param subgraphSize the size of subgraph to enumerate
+	 * @param accumulator the accumulator to which the relative frequencies of
+	 *                    the random graphs are added
+	 */
+	public void analyze(Graph targetGraph, int subgraphSize,
+	                    RelativeFrequencyAccumulator accumulator) {
+		run(targetGraph, subgraphSize, accumulator.getDictionary(),
+				curRelFreqs -> {
+					accumulator.add(curRelFreqs);
+					return true;
+				});
+	}
 
-			// enumerate random graphs
-			SubgraphCount subgraphCount = new SubgraphCount();
-			enumerator.enumerate(randomGraph, subgraphSize, subgraphCount);
-			subgraphCount.label();
+	/**
+	 * Generate and enumerate random graphs until every label is decided by a
+	 * sequential significance test or the random graph count is reached,
+	 * adding the relative frequencies of every random graph to an
+	 * accumulator in random graph order. Where the pool stops depends only on
+	 * the seed.
+	 * @param targetGraph the network graph from which to derive a degree
+	 *                    sequence vector for generating random graphs
+	 * @param subgraphSize the size of subgraph to enumerate
+	 * @param accumulator the accumulator to which the relative frequencies of
+	 *                    the random graphs are added
+	 * @param test the test that decides the labels, which is updated after
+	 *             every random graph; its full pool is the random graphs
+	 *             already in the accumulator and the random graph count
+	 * @return the number of random graphs added to the accumulator
+	 */
+	public long analyze(Graph targetGraph, int subgraphSize,
+	                    RelativeFrequencyAccumulator accumulator,
+	                    SequentialSignificanceTest test) {
+		long start = accumulator.getSampleCount();
+		if (test.getRandomGraphCount() != start + randomGraphCount) {
+			throw new IllegalArgumentException(
+					"The test's full pool must match the random graph count.");
+		}
+		run(targetGraph, subgraphSize, accumulator.getDictionary(),
+				curRelFreqs -> {
+					accumulator.add(curRelFreqs);
+					return !test.update(accumulator);
+				});
+		return accumulator.getSampleCount() - start;
+	}
 
-			Map<String, Double> curLabelRelFreqMap =
-					subgraphCount.getRelativeFrequencies();
+	// runs the pipeline, handing the relative frequencies of every random
+	// graph, indexed by label id in dictionary, to sink in random graph order
+	// until sink returns false
+	private void run(Graph targetGraph, int subgraphSize,
+	                 LabelDictionary dictionary, Predicate<double[]> sink) {
+		CompactGraph compactTargetGraph = targetGraph.toCompactGraph();
 
-			// populate labelToRelativeFrequencies with result
-			for (Map.Entry<String, Double> curLabelRelFreqPair :
-					curLabelRelFreqMap.entrySet()) {
-				String curLabel = curLabelRelFreqPair.getKey();
-				Double curFreq = curLabelRelFreqPair.getValue();
+		// the completion of the last random graph generated by each chain;
+		// a chain generates its next random graph only after its previous one
+		SplittableRandom seeds = new SplittableRandom(seed);
+		int chains = Math.min(chainCount, randomGraphCount);
+		List<RandomGraphGenerator.Chain> chainList = new ArrayList<>(chains);
+		List<CompletableFuture<Void>> generated = new ArrayList<>(chains);
+		for (int c = 0; c < chains; c++) {
+			chainList.add(generator.newChain(compactTargetGraph,
+					seeds.nextLong()));
+			generated.add(CompletableFuture.completedFuture(null));
+		}
 
-				if (!labelToRelativeFrequencies.containsKey(curLabel)) {
-					labelToRelativeFrequencies.put(curLabel, new LinkedList<>());
+		// set once no more results are wanted; stages that have not finished
+		// check it and give up
+		AtomicBoolean stopped = new AtomicBoolean();
+		Deque<CompletableFuture<double[]>> inFlight =
+				new ArrayDeque<>();
+		try {
+			boolean more = true;
+			for (int i = 0; i < randomGraphCount; i++) {
+				if (inFlight.size() == maxGraphsInFlight) {
+					more = sink.test(join(inFlight.removeFirst()));
+					if (!more) {
+						break;
+					}
 				}
-				labelToRelativeFrequencies.get(curLabel).add(curFreq);
+				int c = i % chains;
+				RandomGraphGenerator.Chain chain = chainList.get(c);
+				CompletableFuture<CompactGraph> randomGraph = generated.get(c)
+						.thenApplyAsync(v -> {
+							checkStopped(stopped);
+							return chain.next();
+						}, pool);
+				generated.set(c, randomGraph.thenAccept(g -> { }));
+				inFlight.addLast(randomGraph.thenApplyAsync(
+						g -> relativeFrequencies(g, subgraphSize, dictionary,
+								stopped),
+						pool));
+			}
+			while (more && !inFlight.isEmpty()) {
+				more = sink.test(join(inFlight.removeFirst()));
+			}
+		} finally {
+			// random graphs scheduled after sink stopped are not needed
+			stopped.set(true);
+			for (CompletableFuture<double[]> future : inFlight) {
+				future.cancel(false);
+			}
+			for (CompletableFuture<Void> future : generated) {
+				future.cancel(false);
 			}
 		}
+	}
 
-		// fill in with zeros any List that is less than subgraph count to
-		// ensure non-detection is accounted for.
-		for (List<Double> freqs :
-				labelToRelativeFrequencies.values()) {
-			while (freqs.size() < randomGraphCount) {
-				freqs.add(0.0);
+	// populate labelToRelativeFrequencies with the result of one random graph
+	private static void addRelativeFrequencies(
+			Map<String, List<Double>> labelToRelativeFrequencies,
+			LabelDictionary dictionary, double[] curRelFreqs) {
+		for (int id = 0; id < curRelFreqs.length; id++) {
+			if (curRelFreqs[id] == 0) {
+				continue;
 			}
+			String curLabel = dictionary.label(id);
+			Double curFreq = curRelFreqs[id];
+
+			if (!labelToRelativeFrequencies.containsKey(curLabel)) {
+				labelToRelativeFrequencies.put(curLabel, new LinkedList<>());
+			}
+			labelToRelativeFrequencies.get(curLabel).add(curFreq);
+		}
+	}
+
+	// waits for a stage of the pipeline, rethrowing its failure
+	private static <T> T join(CompletableFuture<T> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	// enumerates and labels one random graph, unless the pipeline stops
+	private double[] relativeFrequencies(CompactGraph randomGraph,
+	                                     int subgraphSize,
+	                                     LabelDictionary dictionary,
+	                                     AtomicBoolean stopped) {
+		checkStopped(stopped);
+		SubgraphCount subgraphCount = new StoppableCount(stopped);
+		enumerator.enumerate(randomGraph, subgraphSize, subgraphCount);
+		checkStopped(stopped);
+		subgraphCount.label();
+		return dictionary.toArray(
+				subgraphCount.getRelativeFrequencies());
+	}
+
+	private static void checkStopped(AtomicBoolean stopped) {
+		if (stopped.get()) {
+			throw new CancellationException("Random graph no longer needed.");
+		}
+	}
+
+	// a SubgraphCount that abandons enumeration once the pipeline stops
+	private static final class StoppableCount extends SubgraphCount {
+		private final AtomicBoolean stopped;
+		private int untilCheck = STOP_CHECK_INTERVAL;
+
+		StoppableCount(AtomicBoolean stopped) {
+			this.stopped = stopped;
+		}
+
+		@Override
+		public void addSubgraph(Subgraph currentSubgraph) {
+			if (--untilCheck == 0) {
+				untilCheck = STOP_CHECK_INTERVAL;
+				checkStopped(stopped);
+			}
+			super.addSubgraph(currentSubgraph);
+		}
+
+		@Override
+		public MergeableSubgraphEnumerationResult newPartialResult() {
+			return new StoppableCount(stopped);
 		}
-		return labelToRelativeFrequencies;
 	}
-}
\ No newline at end of file
+}
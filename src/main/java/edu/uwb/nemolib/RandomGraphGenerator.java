@@ -1,17 +1,37 @@
 package edu.uwb.nemolib;
 
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
   * Generates random graphs from an input graph based on the degree sequence of 
-  * the original graph.
+  * the original graph. Each subclass is one null model; its random graphs are
+  * drawn from chains started by newChain(), and a chain is deterministic for
+  * its seed, so independent chains can be drawn from concurrently and still
+  * give reproducible results.
   */
-final class RandomGraphGenerator {
+public abstract class RandomGraphGenerator {
 
 	/**
-	 * Private constructor to prevent instantiation
+	 * A sequence of random graphs drawn from one seed. A Chain is not thread
+	 * safe; concurrent sampling uses one Chain per thread.
 	 */
-	private RandomGraphGenerator() { throw new AssertionError(); }
+	public interface Chain {
+		/**
+		 * Draw the next random graph of this chain.
+		 * @return a random graph with the degree sequence of the target graph
+		 */
+		CompactGraph next();
+	}
+
+	/**
+	 * Start a chain of random graphs.
+	 * @param targetGraph the graph whose degree sequence the random graphs
+	 *                    share
+	 * @param seed the seed of the chain
+	 * @return the chain
+	 */
+	public abstract Chain newChain(CompactGraph targetGraph, long seed);
 
 	/**
 	  * Generates random Graphs from an input Graph based on the degree
@@ -21,42 +41,34 @@ final class RandomGraphGenerator {
 	  */
 	static Graph generate(Graph inputGraph)
 	{
-		List<Integer> degreeSequenceVector = getDegreeSequenceVector(inputGraph);
-
-		Graph randomGraph = new Graph();
-		// generate randomized list of vertices
-		// the vertexList is a set where each node is represented by a number
-		// of elements equal to that vertex's degree
-		List<Integer> vertexList = new ArrayList<>();
-		for (int vertex = 0; vertex < inputGraph.getSize(); ++vertex) {
-			randomGraph.addVertex();
-			for (int degree = 0; degree < degreeSequenceVector.get(vertex);
-					++degree) {
-				vertexList.add(vertex);
-			}
+		CompactGraph randomGraph = generate(inputGraph.toCompactGraph());
+		Graph result = new Graph();
+		for (int vertex = 0; vertex < randomGraph.getSize(); ++vertex) {
+			result.addVertex();
 		}
-		Collections.shuffle(vertexList);
-		
-		// create edges
-		int u, v;
-		for (int c = 0; vertexList.size() > 1; ++c) {
-			Random generator = new Random();
-			u = generator.nextInt(vertexList.size());
-			// make sure v does not equal u
-			while((v = generator.nextInt(vertexList.size())) == u) {}
-			// swap not factored because Java
-			if ( u > v) {
-				int temp = u;
-				u = v;
-				v = temp;
+		for (int vertex = 0; vertex < randomGraph.getSize(); ++vertex) {
+			for (int i = randomGraph.firstNeighborAbove(vertex, vertex);
+			     i < randomGraph.end(vertex); ++i) {
+				result.addEdge(vertex, randomGraph.neighborAt(i));
 			}
-			int edgeVertexV = vertexList.get(v);
-			int edgeVertexU = vertexList.get(u);
-			vertexList.remove(v);
-			vertexList.remove(u);
-			randomGraph.addEdge(edgeVertexU, edgeVertexV);
 		}
-		return randomGraph;
+		return result;
+	}
+
+	/**
+	  * Generates random CompactGraphs from an input CompactGraph based on the
+	  * degree sequence of the original CompactGraph, using the erased
+	  * configuration model with an unseeded random pairing.
+	  * @param inputGraph the CompactGraph from which to derive the random
+	  *                   CompactGraphs
+	  * @return a random CompactGraph of the same size and order as the
+	  * original
+	  */
+	static CompactGraph generate(CompactGraph inputGraph)
+	{
+		return new ConfigurationModelGenerator(
+				ConfigurationModelGenerator.Policy.ERASE)
+				.generate(inputGraph, ThreadLocalRandom.current().nextLong());
 	}
 
 	static Graph generate(Graph inputGraph, List<Integer> probs)
@@ -114,7 +126,7 @@ final class RandomGraphGenerator {
 		List<Integer> degreeSequenceVector = new ArrayList<>();
 		for (int currentVertex = 0; currentVertex < inputGraph.getSize();
 				++currentVertex) {
-			int degree = inputGraph.getAdjacencyList(currentVertex).size();
+			int degree = inputGraph.getDegree(currentVertex);
 			degreeSequenceVector.add(degree);
 		}
 		return degreeSequenceVector;
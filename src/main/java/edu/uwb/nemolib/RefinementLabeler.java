@@ -0,0 +1,369 @@
+package edu.uwb.nemolib;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The RefinementLabeler computes canonical g6 labels in-process using the
+ * individualization-refinement scheme of Brendan McKay's nauty: a search
+ * tree of equitable ordered partitions whose leaves are candidate vertex
+ * orderings, with the largest relabeled adjacency matrix chosen as the
+ * canonical form. Automorphisms discovered at the leaves prune equivalent
+ * branches of the tree.<p>
+ * The canonical labels are stable across runs and platforms, but they are
+ * not the same strings that the labelg program produces, so the two should
+ * not be mixed within one analysis. Graphs of up to 62 vertices are
+ * supported.
+ */
+public final class RefinementLabeler implements CanonicalLabeler {
+
+	// upper bound on the automorphisms kept for pruning; dropping some only
+	// makes pruning less effective
+	private static final int MAX_AUTOMORPHISMS = 64;
+
+	/**
+	 * Construct a RefinementLabeler object.
+	 */
+	public RefinementLabeler() {}
+
+	// uses interface JavaDoc comment
+	@Override
+	public Map<String, String> getCanonicalLabels(Set<String> labels) {
+		// must use LinkedHashMap to preserve ordering
+		Map<String, String> results = new LinkedHashMap<>();
+		for (String label : labels) {
+			results.put(label, getCanonicalLabel(label));
+		}
+		return results;
+	}
+
+	/**
+	 * Get the canonical label of a single g6 label.
+	 * @param label the g6 label
+	 * @return the canonical g6 label
+	 */
+	public String getCanonicalLabel(String label) {
+		int order = Graph6.order(label);
+		return Graph6.encode(order,
+				canonicalForm(order, Graph6.decode(label)));
+	}
+
+	/**
+	 * Get the canonical form of a graph.
+	 * @param order the number of vertices of the graph
+	 * @param rows the adjacency rows of the graph
+	 * @return the adjacency rows of the canonically relabeled graph
+	 */
+	static long[] canonicalForm(int order, long[] rows) {
+		if (order <= 1) {
+			return rows.clone();
+		}
+		Search search = new Search(order, rows);
+		search.run();
+		return relabel(rows, search.bestLab);
+	}
+
+	// relabels the graph so that vertex lab[i] becomes vertex i
+	private static long[] relabel(long[] rows, int[] lab) {
+		long[] result = new long[lab.length];
+		for (int i = 0; i < lab.length; i++) {
+			for (int j = 0; j < lab.length; j++) {
+				if ((rows[lab[i]] & (1L << lab[j])) != 0) {
+					result[i] |= 1L << j;
+				}
+			}
+		}
+		return result;
+	}
+
+	// the search tree for a single graph. An ordered partition is stored as
+	// a vertex ordering (lab) and a flag for each position that starts a
+	// cell (start).
+	private static final class Search {
+		private final int n;
+		private final long[] rows;
+
+		// vertices individualized on the way to the current node
+		private final int[] path;
+
+		// the first leaf reached and the best leaf so far
+		private int[] firstPath;
+		private int[] firstLab;
+		private long[] firstKey;
+		private int[] bestLab;
+		private long[] bestKey;
+
+		private final List<int[]> automorphisms = new ArrayList<>();
+
+		// when set, the search unwinds to the node at this level
+		private int backtrackLevel = -1;
+
+		Search(int n, long[] rows) {
+			this.n = n;
+			this.rows = rows;
+			this.path = new int[n];
+		}
+
+		void run() {
+			int[] lab = new int[n];
+			for (int i = 0; i < n; i++) {
+				lab[i] = i;
+			}
+			boolean[] start = new boolean[n];
+			start[0] = true;
+			search(lab, start, 0);
+		}
+
+		private void search(int[] lab, boolean[] start, int level) {
+			refine(lab, start);
+			int target = targetCell(start);
+			if (target == -1) {
+				leaf(lab, level);
+				return;
+			}
+
+			int end = cellEnd(start, target);
+			int[] cell = Arrays.copyOfRange(lab, target, end);
+			Arrays.sort(cell);
+			int[] explored = new int[cell.length];
+			int exploredCount = 0;
+			for (int vertex : cell) {
+				if (isEquivalent(vertex, explored, exploredCount, level)) {
+					continue;
+				}
+
+				// individualize vertex by splitting it off the front of the
+				// target cell
+				int[] childLab = lab.clone();
+				boolean[] childStart = start.clone();
+				for (int i = target; i < end; i++) {
+					if (childLab[i] == vertex) {
+						childLab[i] = childLab[target];
+						childLab[target] = vertex;
+						break;
+					}
+				}
+				childStart[target + 1] = true;
+				path[level] = vertex;
+				search(childLab, childStart, level + 1);
+				explored[exploredCount++] = vertex;
+
+				if (backtrackLevel != -1) {
+					if (backtrackLevel < level) {
+						return;
+					}
+					backtrackLevel = -1;
+				}
+			}
+		}
+
+		private void leaf(int[] lab, int level) {
+			long[] key = key(lab);
+			if (firstLab == null) {
+				firstPath = Arrays.copyOf(path, level);
+				firstLab = lab;
+				firstKey = key;
+				bestLab = lab;
+				bestKey = key;
+				return;
+			}
+
+			if (Arrays.equals(key, firstKey)) {
+				int[] automorphism = automorphism(firstLab, lab);
+				addAutomorphism(automorphism);
+
+				// if the automorphism fixes the path shared with the first
+				// leaf and maps the first path's next vertex onto this
+				// path's, the rest of this subtree mirrors the first one
+				int depth = Math.min(level, firstPath.length);
+				int common = 0;
+				while (common < depth && path[common] == firstPath[common]) {
+					common++;
+				}
+				boolean mirrors = common < depth &&
+						automorphism[firstPath[common]] == path[common];
+				for (int i = 0; i < common && mirrors; i++) {
+					mirrors = automorphism[path[i]] == path[i];
+				}
+				if (mirrors) {
+					backtrackLevel = common;
+				}
+				return;
+			}
+
+			int comparison = compare(key, bestKey);
+			if (comparison == 0) {
+				addAutomorphism(automorphism(bestLab, lab));
+			} else if (comparison > 0) {
+				bestLab = lab;
+				bestKey = key;
+			}
+		}
+
+		// refines the partition until it is equitable: every vertex of a
+		// cell has the same number of neighbors in every cell. Cells are
+		// split in order of increasing neighbor count, which depends only on
+		// the structure of the graph and not on vertex numbering.
+		private void refine(int[] lab, boolean[] start) {
+			int[] counts = new int[n];
+			boolean changed = true;
+			while (changed) {
+				changed = false;
+				for (int ws = 0; ws < n && !changed; ws = cellEnd(start, ws)) {
+					long splitter = 0;
+					for (int i = ws; i < cellEnd(start, ws); i++) {
+						splitter |= 1L << lab[i];
+					}
+					for (int xs = 0; xs < n && !changed;
+					     xs = cellEnd(start, xs)) {
+						changed = split(lab, start, xs, cellEnd(start, xs),
+								splitter, counts);
+					}
+				}
+			}
+		}
+
+		// splits the cell lab[low..high) by the number of neighbors each of
+		// its vertices has in the splitter; returns true if it was split
+		private boolean split(int[] lab, boolean[] start, int low, int high,
+		                      long splitter, int[] counts) {
+			boolean uniform = true;
+			for (int i = low; i < high; i++) {
+				counts[i] = Long.bitCount(rows[lab[i]] & splitter);
+				uniform &= counts[i] == counts[low];
+			}
+			if (uniform) {
+				return false;
+			}
+
+			// insertion sort of the cell by count
+			for (int i = low + 1; i < high; i++) {
+				int vertex = lab[i];
+				int count = counts[i];
+				int j = i - 1;
+				while (j >= low && counts[j] > count) {
+					lab[j + 1] = lab[j];
+					counts[j + 1] = counts[j];
+					j--;
+				}
+				lab[j + 1] = vertex;
+				counts[j + 1] = count;
+			}
+			for (int i = low + 1; i < high; i++) {
+				if (counts[i] != counts[i - 1]) {
+					start[i] = true;
+				}
+			}
+			return true;
+		}
+
+		// returns the start of the first smallest non-singleton cell, or -1
+		// if the partition is discrete
+		private int targetCell(boolean[] start) {
+			int target = -1;
+			int targetSize = Integer.MAX_VALUE;
+			for (int i = 0; i < n; i = cellEnd(start, i)) {
+				int size = cellEnd(start, i) - i;
+				if (size > 1 && size < targetSize) {
+					target = i;
+					targetSize = size;
+				}
+			}
+			return target;
+		}
+
+		private int cellEnd(boolean[] start, int cellStart) {
+			int end = cellStart + 1;
+			while (end < n && !start[end]) {
+				end++;
+			}
+			return end;
+		}
+
+		// returns true if vertex is in the same orbit as an explored vertex
+		// under the automorphisms that fix the current path
+		private boolean isEquivalent(int vertex, int[] explored,
+		                             int exploredCount, int level) {
+			if (exploredCount == 0) {
+				return false;
+			}
+			int[] parent = new int[n];
+			for (int i = 0; i < n; i++) {
+				parent[i] = i;
+			}
+			for (int[] automorphism : automorphisms) {
+				boolean fixesPath = true;
+				for (int i = 0; i < level && fixesPath; i++) {
+					fixesPath = automorphism[path[i]] == path[i];
+				}
+				if (fixesPath) {
+					for (int i = 0; i < n; i++) {
+						parent[find(parent, i)] =
+								find(parent, automorphism[i]);
+					}
+				}
+			}
+			int root = find(parent, vertex);
+			for (int i = 0; i < exploredCount; i++) {
+				if (find(parent, explored[i]) == root) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private int find(int[] parent, int vertex) {
+			while (parent[vertex] != vertex) {
+				parent[vertex] = parent[parent[vertex]];
+				vertex = parent[vertex];
+			}
+			return vertex;
+		}
+
+		// the automorphism that maps leaf a onto leaf b
+		private int[] automorphism(int[] a, int[] b) {
+			int[] automorphism = new int[n];
+			for (int i = 0; i < n; i++) {
+				automorphism[a[i]] = b[i];
+			}
+			return automorphism;
+		}
+
+		private void addAutomorphism(int[] automorphism) {
+			if (automorphisms.size() < MAX_AUTOMORPHISMS) {
+				automorphisms.add(automorphism);
+			}
+		}
+
+		// the upper triangle of the relabeled adjacency matrix in graph6 bit
+		// order, packed most significant bit first
+		private long[] key(int[] lab) {
+			int bitCount = (n * (n - 1)) / 2;
+			long[] key = new long[(bitCount + 63) / 64];
+			int bit = 0;
+			for (int col = 1; col < n; col++) {
+				long colRow = rows[lab[col]];
+				for (int row = 0; row < col; row++) {
+					if ((colRow & (1L << lab[row])) != 0) {
+						key[bit >>> 6] |= 1L << (63 - (bit & 63));
+					}
+					bit++;
+				}
+			}
+			return key;
+		}
+
+		private int compare(long[] a, long[] b) {
+			for (int i = 0; i < a.length; i++) {
+				if (a[i] != b[i]) {
+					return Long.compareUnsigned(a[i], b[i]);
+				}
+			}
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,290 @@
+package edu.uwb.nemolib;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Accumulates the relative frequencies of a random graph pool one random
+ * graph at a time, keeping for every label only a running mean and sum of
+ * squared deviations (by Welford's method) and a count of the random graphs
+ * in which the label is at least as frequent as in the target graph. Memory
+ * is proportional to the number of labels, however many random graphs are
+ * added, and the statistics can be read at any time.<p>
+ * A random graph in which a label does not appear counts as a relative
+ * frequency of zero for that label, so labels never have to be padded.
+ * The statistics are kept in arrays indexed by the ids of the accumulator's
+ * own LabelDictionary, so adding a random graph hashes no labels once they
+ * are interned. A RelativeFrequencyAccumulator is not thread safe.
+ */
+public final class RelativeFrequencyAccumulator {
+
+	private final LabelDictionary dictionary = new LabelDictionary();
+	private final Map<String, Double> targetLabelToRelativeFrequencies;
+	private final double[] targetRelativeFrequencies;
+	private final BitSet targetLabelIds = new BitSet();
+
+	// the statistics of the random graphs in which each label was found,
+	// indexed by label id
+	private long[] counts = new long[0];
+	private double[] means = new double[0];
+	private double[] m2s = new double[0];
+	private long[] exceedances = new long[0];
+	private long sampleCount;
+
+	/**
+	 * Construct a RelativeFrequencyAccumulator.
+	 * @param targetGraphRelFreqs labels paired with relative frequencies as
+	 *                            found in the target network
+	 */
+	public RelativeFrequencyAccumulator(
+			Map<String, Double> targetGraphRelFreqs) {
+		this.targetLabelToRelativeFrequencies = targetGraphRelFreqs;
+		this.targetRelativeFrequencies =
+				dictionary.toArray(targetGraphRelFreqs);
+		for (String label : targetGraphRelFreqs.keySet()) {
+			targetLabelIds.set(dictionary.intern(label));
+		}
+	}
+
+	/**
+	 * Build an accumulator from lists of relative frequencies, each of which
+	 * holds one value per random graph in which its label was found.
+	 * @param randGraphRelFreqs labels paired with lists of relative
+	 *                          frequencies found in a random graph pool
+	 * @param targetGraphRelFreqs labels paired with relative frequencies as
+	 *                            found in the target network
+	 * @return the accumulator, whose sample count is the length of the
+	 * longest list
+	 */
+	static RelativeFrequencyAccumulator of(
+			Map<String, List<Double>> randGraphRelFreqs,
+			Map<String, Double> targetGraphRelFreqs) {
+		RelativeFrequencyAccumulator result =
+				new RelativeFrequencyAccumulator(targetGraphRelFreqs);
+		for (Map.Entry<String, List<Double>> entry :
+				randGraphRelFreqs.entrySet()) {
+			int id = result.dictionary.intern(entry.getKey());
+			for (double freq : entry.getValue()) {
+				result.addSample(id, freq);
+			}
+			result.sampleCount = Math.max(result.sampleCount,
+					entry.getValue().size());
+		}
+		return result;
+	}
+
+	/**
+	 * Get the dictionary of the ids by which the statistics are indexed.
+	 * @return the accumulator's LabelDictionary
+	 */
+	LabelDictionary getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * Add the relative frequencies of one random graph.
+	 * @param randomGraphRelFreqs labels paired with relative frequencies as
+	 *                            found in the random graph
+	 */
+	public void add(Map<String, Double> randomGraphRelFreqs) {
+		add(dictionary.toArray(randomGraphRelFreqs));
+	}
+
+	/**
+	 * Add the relative frequencies of one random graph.
+	 * @param randomGraphRelFreqs relative frequencies as found in the random
+	 *                            graph, indexed by label id; labels that were
+	 *                            not found are 0
+	 */
+	void add(double[] randomGraphRelFreqs) {
+		for (int id = 0; id < randomGraphRelFreqs.length; id++) {
+			if (randomGraphRelFreqs[id] != 0) {
+				addSample(id, randomGraphRelFreqs[id]);
+			}
+		}
+		sampleCount++;
+	}
+
+	private void addSample(int id, double freq) {
+		if (id >= counts.length) {
+			int length = Math.max(id + 1, dictionary.size());
+			counts = Arrays.copyOf(counts, length);
+			means = Arrays.copyOf(means, length);
+			m2s = Arrays.copyOf(m2s, length);
+			exceedances = Arrays.copyOf(exceedances, length);
+		}
+		counts[id]++;
+		double delta = freq - means[id];
+		means[id] += delta / counts[id];
+		m2s[id] += delta * (freq - means[id]);
+		if (freq >= getTargetRelativeFrequency(id)) {
+			exceedances[id]++;
+		}
+	}
+
+	/**
+	 * Get the number of random graphs added so far.
+	 * @return the number of random graphs
+	 */
+	public long getSampleCount() {
+		return sampleCount;
+	}
+
+	/**
+	 * Get the labels found in at least one random graph.
+	 * @return the labels
+	 */
+	public Set<String> getLabels() {
+		Set<String> labels = new HashSet<>();
+		BitSet ids = getLabelIds();
+		for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+			labels.add(dictionary.label(id));
+		}
+		return Collections.unmodifiableSet(labels);
+	}
+
+	/**
+	 * Get the ids of the labels found in at least one random graph.
+	 * @return the label ids
+	 */
+	BitSet getLabelIds() {
+		BitSet ids = new BitSet(counts.length);
+		for (int id = 0; id < counts.length; id++) {
+			if (counts[id] > 0) {
+				ids.set(id);
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * Get the ids of the labels found in the target graph.
+	 * @return the label ids
+	 */
+	BitSet getTargetLabelIds() {
+		return (BitSet) targetLabelIds.clone();
+	}
+
+	/**
+	 * Get the relative frequencies of the target graph.
+	 * @return labels paired with relative frequencies as found in the target
+	 * network
+	 */
+	public Map<String, Double> getTargetRelativeFrequencies() {
+		return targetLabelToRelativeFrequencies;
+	}
+
+	/**
+	 * Get the relative frequency of a label in the target graph.
+	 * @param label the label
+	 * @return the relative frequency, or 0 if the label was not found
+	 */
+	public double getTargetRelativeFrequency(String label) {
+		return targetLabelToRelativeFrequencies.getOrDefault(label, 0.0);
+	}
+
+	double getTargetRelativeFrequency(int id) {
+		return id >= 0 && id < targetRelativeFrequencies.length ?
+				targetRelativeFrequencies[id] : 0.0;
+	}
+
+	/**
+	 * Get the mean relative frequency of a label over all random graphs.
+	 * @param label the label
+	 * @return the mean relative frequency
+	 */
+	public double getMean(String label) {
+		return getMean(dictionary.find(label));
+	}
+
+	double getMean(int id) {
+		if (count(id) == 0) {
+			return 0.0;
+		}
+		return means[id] * counts[id] / sampleCount;
+	}
+
+	/**
+	 * Get the sample standard deviation of the relative frequency of a label
+	 * over all random graphs.
+	 * @param label the label
+	 * @return the standard deviation
+	 */
+	public double getStdDev(String label) {
+		return getStdDev(dictionary.find(label));
+	}
+
+	double getStdDev(int id) {
+		long count = count(id);
+		if (count == 0) {
+			return 0.0;
+		}
+		// combine the label's samples with one zero for every random graph
+		// in which it was not found
+		long zeros = sampleCount - count;
+		double m2 = m2s[id] +
+				means[id] * means[id] * count * zeros / sampleCount;
+		return Math.sqrt(m2 / (sampleCount - 1));
+	}
+
+	/**
+	 * Get the z-score of a label.
+	 * @param label the label
+	 * @return the z-score, or 0 if the standard deviation is 0
+	 */
+	public double getZScore(String label) {
+		return getZScore(dictionary.find(label));
+	}
+
+	double getZScore(int id) {
+		double stdDev = getStdDev(id);
+		if (stdDev == 0) {
+			return 0.0;
+		}
+		return (getTargetRelativeFrequency(id) - getMean(id)) / stdDev;
+	}
+
+	/**
+	 * Get the number of random graphs in which a label is at least as
+	 * frequent as in the target graph.
+	 * @param label the label
+	 * @return the number of random graphs
+	 */
+	public long getExceedances(String label) {
+		return getExceedances(dictionary.find(label));
+	}
+
+	long getExceedances(int id) {
+		long count = count(id);
+		long result = count > 0 ? exceedances[id] : 0;
+		if (getTargetRelativeFrequency(id) <= 0) {
+			result += sampleCount - count;
+		}
+		return result;
+	}
+
+	/**
+	 * Get the p-value of a label: the fraction of random graphs in which it
+	 * is at least as frequent as in the target graph.
+	 * @param label the label
+	 * @return the p-value
+	 */
+	public double getPValue(String label) {
+		return getPValue(dictionary.find(label));
+	}
+
+	double getPValue(int id) {
+		return (double) getExceedances(id) / sampleCount;
+	}
+
+	// the number of random graphs in which a label was found; unknown labels
+	// have the id -1
+	private long count(int id) {
+		return id >= 0 && id < counts.length ? counts[id] : 0;
+	}
+}
@@ -2,6 +2,7 @@ package edu.uwb.nemolib;
 
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -9,15 +10,20 @@ import java.util.Map;
 /**
  * Subsystem to store relative frequencies for each subgraph pattern / label and
  * calculate the p-values and z-scores for those labels. Performs calculations
- * upon initialization.
+ * upon initialization, and stores the results in arrays indexed by the ids
+ * of the LabelDictionary of the accumulator they are read from.
  */
 public final class RelativeFrequencyAnalyzer {
 
-	// labels mapped to a list containing relativeFrequencies
-	private Map<String, Double> targetLabelToRelativeFrequencies;
-	private Map<String, Double> randomLabelToMeanRelativeFrequencies;
-	private Map<String, Double> zScores;
-	private Map<String, Double> pValues;
+	private final LabelDictionary dictionary;
+
+	// the ids of the labels found in the random graph pool, and their
+	// statistics indexed by id
+	private final BitSet labelIds;
+	private final double[] targetRelativeFrequencies;
+	private final double[] randomMeanRelativeFrequencies;
+	private final double[] zScores;
+	private final double[] pValues;
 
 	// do not allow default constructor
 	private RelativeFrequencyAnalyzer() {
@@ -34,30 +40,36 @@ public final class RelativeFrequencyAnalyzer {
 	 */
 	public RelativeFrequencyAnalyzer(Map<String, List<Double>> randGraphRelFreqs,
 	                                 Map<String, Double> targetGraphRelFreqs) {
-		this.targetLabelToRelativeFrequencies = targetGraphRelFreqs;
-		this.zScores = new HashMap<>();
-		calculateZScores(randGraphRelFreqs, targetGraphRelFreqs);
-		this.pValues = new HashMap<>();
-		calculatePValues(randGraphRelFreqs, targetGraphRelFreqs);
-		this.randomLabelToMeanRelativeFrequencies = calcRandMeans(randGraphRelFreqs);
+		this(RelativeFrequencyAccumulator.of(randGraphRelFreqs,
+				targetGraphRelFreqs));
 	}
 
-	public Map<String, Double> getRandMeans() {
-		return randomLabelToMeanRelativeFrequencies;
+	/**
+	 * Constructor for a Statistical Analysis object that reads the
+	 * statistics of a random graph pool from an accumulator.
+	 * @param accumulator the relative frequencies of the random graph pool
+	 *                    and the target network
+	 */
+	public RelativeFrequencyAnalyzer(RelativeFrequencyAccumulator accumulator) {
+		this.dictionary = accumulator.getDictionary();
+		this.labelIds = accumulator.getLabelIds();
+		int length = labelIds.length();
+		this.targetRelativeFrequencies = new double[length];
+		this.randomMeanRelativeFrequencies = new double[length];
+		this.zScores = new double[length];
+		this.pValues = new double[length];
+		for (int id = labelIds.nextSetBit(0); id >= 0;
+		     id = labelIds.nextSetBit(id + 1)) {
+			targetRelativeFrequencies[id] =
+					accumulator.getTargetRelativeFrequency(id);
+			randomMeanRelativeFrequencies[id] = accumulator.getMean(id);
+			zScores[id] = accumulator.getZScore(id);
+			pValues[id] = accumulator.getPValue(id);
+		}
 	}
 
-
-	private Map<String,Double> calcRandMeans(Map<String, List<Double>> randGraphRelFreqs) {
-		Map<String, Double> result = new HashMap<>();
-		for (Map.Entry<String, List<Double>> entry : randGraphRelFreqs.entrySet()){
-			double mean = 0.0;
-			for (double freq : entry.getValue()) {
-				mean += freq;
-			}
-			mean /= entry.getValue().size();
-			result.put(entry.getKey(), mean);
-		}
-		return result;
+	public Map<String, Double> getRandMeans() {
+		return toMap(randomMeanRelativeFrequencies);
 	}
 
 	/**
@@ -65,17 +77,7 @@ public final class RelativeFrequencyAnalyzer {
 	 * @return a map containing labels and corresponding z-scores
 	 */
 	public Map<String, Double> getZScores() {
-		return zScores;
-	}
-
-	/**
-	 * Get the z-score for a specified label for the data sets contained in
-	 * this RelativeFrequencyAnalyzer object
-	 * @param label the label for which to get the z-score
-	 * @return the z-score for the given label
-	 */
-	private double getZScore(String label) {
-		return zScores.getOrDefault(label, 0.0);
+		return toMap(zScores);
 	}
 
 	/**
@@ -83,99 +85,17 @@ public final class RelativeFrequencyAnalyzer {
 	 * @return a map containing labels and corresponding p-values
 	 */
 	public Map<String, Double> getPValues() {
-		return pValues;
-	}
-
-	/**
-	 * Get the p-value for a specified label for the data sets contained in
-	 * this RelativeFrequencyAnalyzer object
-	 * @param label the label for which to get the z-score
-	 * @return the z-score for the given label
-	 */
-	private double getPValue(String label) {
-		return pValues.getOrDefault(label, 0.0);
+		return toMap(pValues);
 	}
 
-	// TODO Don't recalculate randMean
-	// calculates z-scores for this Statistical Analysis object
-	private void calculateZScores ( Map<String, List<Double>> randGraphRelFreqs,
-									Map<String, Double> targetGraphRelFreqs) {
-		for (Map.Entry<String, List<Double>> labelFreqPair :
-				randGraphRelFreqs.entrySet()) {
-			String label = labelFreqPair.getKey();
-			List<Double> freqs = labelFreqPair.getValue();
-			double randMean = calcMean(freqs);
-			double randStdDev = calcStdDev(randMean, freqs);
-			double targetGraphFreq =
-					targetGraphRelFreqs.getOrDefault(label, 0.0);
-			double zScore = 0.0;
-			if (randStdDev != 0) {
-				zScore = (targetGraphFreq - randMean) / randStdDev;
-			}
-			zScores.put(label, zScore);
-		}
-	}
-
-	// calculates the standard deviation for a random
-	private double calcStdDev(double randMean, List<Double> values) {
-		double variance = 0.0;
-		for (double value : values) {
-			double distance = value - randMean;
-			double squaredDistance = Math.pow(distance, 2);
-			variance += squaredDistance;
-		}
-		return Math.sqrt(variance / (values.size() - 1));
-	}
-
-	// calculates the p-values for this object
-	private void calculatePValues(Map<String, List<Double>> randGraphRelFreqs,
-	                              Map<String, Double> targetGraphRelFreqs) {
-		for(String label : randGraphRelFreqs.keySet())
-		{
-			double pValue = calcPValue(label, randGraphRelFreqs,
-					targetGraphRelFreqs);
-			pValues.put(label, pValue);
-		}
-	}
-
-	// calculates a p-value for an specified label
-	private double calcPValue(String label,
-	                          Map<String, List<Double>> randomGraphRelFreqs,
-	                          Map<String, Double> targetGraphRelFreqs) {
-		// if a label appears in the target graph that didn't show up in any
-		// random graphs, clearly it's a network motif. This scenario shouldn't
-		// happen for a reasonable number of random graphs
-		if (!randomGraphRelFreqs.containsKey(label)) {
-			return 0;
-		}
-
-		// This shouldn't happen with the current design, but in case the design
-		// changes to include functionality to display all labels found in the
-		// random graphs instead of just those in the target graph, this will
-		// ensure those labels are not identified as network motifs
-		if (!targetGraphRelFreqs.containsKey(label)) {
-			return 1;
-		}
-
-		int prePValue = 0;
-		List<Double> randFreqs = randomGraphRelFreqs.get(label);
-		double targetFreq = targetGraphRelFreqs.get(label);
-		for (double randFreq : randFreqs) {
-			if (randFreq >= targetFreq) {
-				prePValue++;
-			}
-		}
-		double randFreqCount = randFreqs.size();
-		return (double) prePValue / randFreqCount;
-	}
-
-	//
-	private double calcMean(List<Double> values) {
-		double total = 0.0;
-		for (double randFreq : values ) {
-			total += randFreq;
+	// pairs the label of every id in the random graph pool with its value
+	private Map<String, Double> toMap(double[] values) {
+		Map<String, Double> result = new HashMap<>();
+		for (int id = labelIds.nextSetBit(0); id >= 0;
+		     id = labelIds.nextSetBit(id + 1)) {
+			result.put(dictionary.label(id), values[id]);
 		}
-		return total / values.size();
+		return result;
 	}
 
 	@Override
@@ -184,28 +104,15 @@ public final class RelativeFrequencyAnalyzer {
 		StringBuilder sb = new StringBuilder();
 		sb.append("Label\tRelFreq\t\tRandMeanFreq\tZ-Score\tP-Value");
 		sb.append(String.format("%n"));
-		for (String label : zScores.keySet()) {
-			sb.append(label).append("\t\t");
-			if (targetLabelToRelativeFrequencies.containsKey(label)) {
-				double targetGraphRelFreqPerc =
-						targetLabelToRelativeFrequencies.get(label) * 100.0;
-				sb.append(nf.format(targetGraphRelFreqPerc));
-			} else {
-				sb.append(nf.format(0.0));
-			}
+		for (int id = labelIds.nextSetBit(0); id >= 0;
+		     id = labelIds.nextSetBit(id + 1)) {
+			sb.append(dictionary.label(id)).append("\t\t");
+			sb.append(nf.format(targetRelativeFrequencies[id] * 100.0));
 			sb.append("%\t\t");
-			if (randomLabelToMeanRelativeFrequencies.containsKey(label)) {
-				double randomGraphRelFreqPerc =
-						randomLabelToMeanRelativeFrequencies.get(label) * 100.0;
-				sb.append(nf.format(randomGraphRelFreqPerc));
-			} else {
-				sb.append(nf.format(0.0));
-			}
+			sb.append(nf.format(randomMeanRelativeFrequencies[id] * 100.0));
 			sb.append("%\t\t\t");
-			double zScore = getZScore(label);
-			sb.append(nf.format(zScore)).append("\t");
-			double pValue = getPValue(label);
-			sb.append(nf.format(pValue));
+			sb.append(nf.format(zScores[id])).append("\t");
+			sb.append(nf.format(pValues[id]));
 			sb.append(String.format("%n"));
 		}
 		return sb.toString();
@@ -0,0 +1,240 @@
+package edu.uwb.nemolib;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decides, while random graphs are still being added to a
+ * RelativeFrequencyAccumulator, which labels are significant, so that the
+ * random graph pool can stop growing as soon as every label is decided.<p>
+ * The pool has a maximum size n, and a label is significant if its p-value
+ * over the full pool, its exceedances divided by n, would be below the
+ * p-value threshold alpha, that is if it would have fewer than
+ * h = ceil(alpha * n) exceedances. Following Besag and Clifford's
+ * sequential Monte Carlo p-values, a label is decided not significant as
+ * soon as it reaches h exceedances, which for most labels takes far fewer
+ * than n random graphs. A label is decided significant as soon as it could
+ * not reach h exceedances even if it exceeded the target graph in every
+ * remaining random graph. Either way the decision is the one the full pool
+ * would give, and it agrees with the p-value of the random graphs added
+ * when the pool stops.<p>
+ * That rule alone decides a significant label only after n - h + 1 random
+ * graphs, so once any label is a motif it saves at most alpha * n of them.
+ * Given an error rate epsilon, a label is also decided significant as soon
+ * as the exceedances seen so far show, with that error rate, that the
+ * probability p that a random graph exceeds the target graph is below
+ * alpha. After k random graphs with e exceedances, e / k below alpha, this
+ * is the case once k * D(e / k || alpha) >= ln(k * (k + 1) / epsilon),
+ * where D is the Kullback-Leibler divergence of Bernoulli distributions: by
+ * the Chernoff bound a label with p of at least alpha passes this check
+ * after k random graphs with probability at most epsilon / (k * (k + 1)),
+ * so it is ever decided significant with probability at most epsilon,
+ * however often the test is updated. A label that is never seen to exceed
+ * the target graph is decided after about ln(k^2 / epsilon) / alpha random
+ * graphs, roughly 330 for alpha = 0.05 and epsilon = 0.01, whatever n is.
+ * Labels decided this way may disagree with the full pool, at that error
+ * rate; decisions that a label is not significant stay exact.
+ */
+public final class SequentialSignificanceTest {
+
+	private final double pValueThreshold;
+	private final long randomGraphCount;
+	private final long exceedanceLimit;
+
+	// the rate at which labels that are not significant are decided
+	// significant early, or 0 if significance is only decided exactly
+	private final double errorRate;
+
+	// the dictionary of the accumulator the test is updated from, set by
+	// the first update
+	private LabelDictionary dictionary;
+
+	// the number of random graphs after which each decided label was
+	// decided, or 0 if it is undecided, indexed by label id
+	private long[] samplesNeeded = new long[0];
+	private final BitSet significantIds = new BitSet();
+
+	/**
+	 * Construct a SequentialSignificanceTest whose decisions are always
+	 * those of the full pool.
+	 * @param pValueThreshold the p-value below which a label is significant
+	 * @param randomGraphCount n, the number of random graphs in the full
+	 *                         pool
+	 */
+	public SequentialSignificanceTest(double pValueThreshold,
+	                                  long randomGraphCount) {
+		this(pValueThreshold, randomGraphCount, 0.0);
+	}
+
+	/**
+	 * Construct a SequentialSignificanceTest that may also decide labels
+	 * significant early.
+	 * @param pValueThreshold the p-value below which a label is significant
+	 * @param randomGraphCount n, the number of random graphs in the full
+	 *                         pool
+	 * @param errorRate epsilon, the largest probability that a label whose
+	 *                  exceedance probability is at least the threshold is
+	 *                  decided significant early, or 0 to decide
+	 *                  significance only as the full pool would
+	 */
+	public SequentialSignificanceTest(double pValueThreshold,
+	                                  long randomGraphCount,
+	                                  double errorRate) {
+		if (pValueThreshold <= 0 || pValueThreshold >= 1 ||
+				errorRate < 0 || errorRate >= 1) {
+			throw new IllegalArgumentException(
+					"Argument out of range (must be between 0 and 1).");
+		}
+		if (randomGraphCount < 1) {
+			throw new IllegalArgumentException(
+					"Argument out of range (must be positive).");
+		}
+		this.pValueThreshold = pValueThreshold;
+		this.randomGraphCount = randomGraphCount;
+		this.errorRate = errorRate;
+		this.exceedanceLimit =
+				Math.max(1, (long) Math.ceil(pValueThreshold * randomGraphCount));
+	}
+
+	/**
+	 * Get the number of random graphs in the full pool.
+	 * @return n, the number of random graphs
+	 */
+	public long getRandomGraphCount() {
+		return randomGraphCount;
+	}
+
+	/**
+	 * Get the p-value below which a label is significant.
+	 * @return the p-value threshold
+	 */
+	public double getPValueThreshold() {
+		return pValueThreshold;
+	}
+
+	/**
+	 * Get the largest probability that a label that is not significant is
+	 * decided significant early.
+	 * @return epsilon, or 0 if significance is only decided exactly
+	 */
+	public double getErrorRate() {
+		return errorRate;
+	}
+
+	/**
+	 * Decide every label that can be decided from the random graphs added to
+	 * an accumulator so far. Labels of the target graph and labels found in
+	 * random graphs are both tested.
+	 * @param accumulator the accumulator of the random graph pool, which must
+	 *                    not hold more than n random graphs and must be the
+	 *                    same on every update
+	 * @return true if every label is decided
+	 */
+	public boolean update(RelativeFrequencyAccumulator accumulator) {
+		if (dictionary == null) {
+			dictionary = accumulator.getDictionary();
+		} else if (dictionary != accumulator.getDictionary()) {
+			throw new IllegalArgumentException(
+					"The test is updated from another accumulator.");
+		}
+		long n = accumulator.getSampleCount();
+		if (n == 0) {
+			return false;
+		}
+		if (n > randomGraphCount) {
+			throw new IllegalStateException(
+					"More random graphs than the full pool.");
+		}
+		BitSet ids = accumulator.getLabelIds();
+		ids.or(accumulator.getTargetLabelIds());
+		if (ids.length() > samplesNeeded.length) {
+			samplesNeeded = Arrays.copyOf(samplesNeeded, ids.length());
+		}
+		long remaining = randomGraphCount - n;
+		boolean decided = true;
+		for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+			if (samplesNeeded[id] > 0) {
+				continue;
+			}
+			long exceedances = accumulator.getExceedances(id);
+			if (exceedances >= exceedanceLimit) {
+				samplesNeeded[id] = n;
+			} else if (exceedances + remaining < exceedanceLimit ||
+					belowThreshold(exceedances, n)) {
+				significantIds.set(id);
+				samplesNeeded[id] = n;
+			} else {
+				decided = false;
+			}
+		}
+		return decided;
+	}
+
+	/**
+	 * Check whether a label has been decided.
+	 * @param label the label
+	 * @return true if the label is decided
+	 */
+	public boolean isDecided(String label) {
+		int id = dictionary != null ? dictionary.find(label) : -1;
+		return id >= 0 && id < samplesNeeded.length && samplesNeeded[id] > 0;
+	}
+
+	/**
+	 * Get the labels decided significant.
+	 * @return the significant labels
+	 */
+	public Set<String> getSignificantLabels() {
+		Set<String> labels = new HashSet<>();
+		for (int id = significantIds.nextSetBit(0); id >= 0;
+		     id = significantIds.nextSetBit(id + 1)) {
+			labels.add(dictionary.label(id));
+		}
+		return Collections.unmodifiableSet(labels);
+	}
+
+	/**
+	 * Get the number of random graphs each decided label needed.
+	 * @return decided labels paired with the number of random graphs after
+	 * which they were decided
+	 */
+	public Map<String, Long> getSamplesNeeded() {
+		Map<String, Long> labelToSamplesNeeded = new HashMap<>();
+		for (int id = 0; id < samplesNeeded.length; id++) {
+			if (samplesNeeded[id] > 0) {
+				labelToSamplesNeeded.put(dictionary.label(id),
+						samplesNeeded[id]);
+			}
+		}
+		return Collections.unmodifiableMap(labelToSamplesNeeded);
+	}
+
+	// true if e exceedances in n random graphs show, at the error rate spent
+	// on this many random graphs, that the exceedance probability is below
+	// the threshold
+	private boolean belowThreshold(long exceedances, long n) {
+		if (errorRate == 0) {
+			return false;
+		}
+		double rate = (double) exceedances / n;
+		if (rate >= pValueThreshold) {
+			return false;
+		}
+		return n * divergence(rate, pValueThreshold) >=
+				Math.log(n * (n + 1.0) / errorRate);
+	}
+
+	// the Kullback-Leibler divergence of Bernoulli(p) from Bernoulli(q)
+	private static double divergence(double p, double q) {
+		double result = (1 - p) * Math.log((1 - p) / (1 - q));
+		if (p > 0) {
+			result += p * Math.log(p / q);
+		}
+		return result;
+	}
+}
@@ -1,13 +1,18 @@
 package edu.uwb.nemolib;
 
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 import java.util.BitSet;
 
 /**
- * A specialized class for representing instances of subgraphs.
+ * A specialized class for representing instances of subgraphs. The
+ * adjacency matrix of a subgraph of at most MAX_TRIANGLE_ORDER nodes is
+ * packed into the upper-triangle bits of a single long.
  */
 public class Subgraph {
 
+    // largest order whose upper-triangle adjacency mask fits in a long
+    static final int MAX_TRIANGLE_ORDER = 11;
+
     private int[] nodes;
     private AdjacencyMatrix matrix;
     private int currentSize;
@@ -100,6 +105,50 @@ public class Subgraph {
         currentSize++;
     }
 
+	/**
+	 * Add a vertex of a CompactGraph to this Subgraph. Subgraphs of any order
+	 * are supported, since the edges are set one at a time.
+	 * @param vertex the vertex to add to this Subgraph
+	 * @param graph the CompactGraph containing the vertex
+	 */
+    public void add(int vertex, CompactGraph graph) {
+        nodes[currentSize] = vertex;
+        for (int i = 0; i < currentSize; i++) {
+            if (graph.isAdjacent(vertex, get(i))) {
+                matrix.addEdge(i, currentSize);
+            }
+        }
+        currentSize++;
+    }
+
+	/**
+	 * Add a vertex to this Subgraph given the positions of its neighbors.
+	 * An int mask only has room for the first 32 positions, so the vertex
+	 * must be added at a position of at most 32, as by ESUEngine.
+	 * @param vertex the vertex to add to this Subgraph
+	 * @param neighborMask a mask with bit i set if the vertex is adjacent to
+	 *                     the node at position i; bits at or above the
+	 *                     current size are ignored
+	 */
+    void add(int vertex, int neighborMask) {
+        if (currentSize > Integer.SIZE) {
+            throw new IllegalStateException("A neighbor mask only covers " +
+                    "the first " + Integer.SIZE + " positions.");
+        }
+        nodes[currentSize] = vertex;
+        matrix.setColumn(currentSize,
+                neighborMask & (int) ((1L << currentSize) - 1));
+        currentSize++;
+    }
+
+	/**
+	 * Remove the most recently added vertex from this Subgraph
+	 */
+    void removeLast() {
+        currentSize--;
+        matrix.clearColumn(currentSize);
+    }
+
 	/**
 	 * Get the nth node added to this Subgraph
 	 * @return the nth node added to this Subgraph
@@ -116,6 +165,16 @@ public class Subgraph {
         return nodes;
     }
 
+	/**
+	 * Get the upper triangle of this Subgraph's adjacency matrix, with the
+	 * bit for the nodes at positions row < col at col * (col - 1) / 2 + row.
+	 * Only defined for subgraphs of at most MAX_TRIANGLE_ORDER nodes.
+	 * @return the upper-triangle mask of this Subgraph
+	 */
+    long triangle() {
+        return matrix.triangle();
+    }
+
 	/**
 	 * Return a string representation of this Subgraph. Should display in the 
 	 * format [x, y, z], where x, y, and z represent vertices in this subgraph.
@@ -136,40 +195,82 @@ public class Subgraph {
 	 * @return the g6 label for this Subgraph
 	 */
     public String getByteString() {
-        try {
-            return new String(matrix.toBytes(), "UTF-8");
-        } catch (UnsupportedEncodingException e) {
-            System.err.println("Unable to convert to graph6 format...");
-            System.exit(-1);
-            return null;
-        }
+        return new String(matrix.toBytes(), StandardCharsets.US_ASCII);
     }
 
+    // the upper triangle of the adjacency matrix, in graph6 bit order. It
+    // is packed into a long up to MAX_TRIANGLE_ORDER and kept in a BitSet
+    // above that.
     private class AdjacencyMatrix {
 
         private int order;
+        private long triangle;
         private BitSet matrix;
 
         AdjacencyMatrix(int order) {
             this.order = order;
-            this.matrix = new BitSet((order * (order - 1)) / 2);
+            if (order > MAX_TRIANGLE_ORDER) {
+                this.matrix = new BitSet((order * (order - 1)) / 2);
+            }
         }
 
         private AdjacencyMatrix(AdjacencyMatrix source) {
             this.order = source.order;
-            this.matrix = (BitSet)source.matrix.clone();
+            this.triangle = source.triangle;
+            if (source.matrix != null) {
+                this.matrix = (BitSet)source.matrix.clone();
+            }
         }
 
         void addEdge(int x, int y) {
             if (x == y) {
                 return;
             }
-            matrix.set(indexFor(x, y));
+            if (matrix == null) {
+                triangle |= 1L << indexFor(x, y);
+            } else {
+                matrix.set(indexFor(x, y));
+            }
+        }
+
+        // sets the edges between vertex y and the vertices before it, given
+        // as a mask of their positions
+        void setColumn(int y, int neighborMask) {
+            int start = (y * (y - 1)) / 2;
+            if (matrix == null) {
+                triangle |= (long) neighborMask << start;
+                return;
+            }
+            for (int x = 0; x < y; x++) {
+                if ((neighborMask & (1 << x)) != 0) {
+                    matrix.set(start + x);
+                }
+            }
+        }
+
+        // removes every edge between vertex y and the vertices before it
+        void clearColumn(int y) {
+            int start = (y * (y - 1)) / 2;
+            if (matrix == null) {
+                triangle &= (1L << start) - 1;
+            } else {
+                matrix.clear(start, start + y);
+            }
+        }
+
+        long triangle() {
+            return triangle;
         }
 
         boolean hasEdge(int x, int y)
         {
-            return x == y || matrix.get(indexFor(x, y));
+            if (x == y) {
+                return true;
+            }
+            if (matrix == null) {
+                return (triangle & (1L << indexFor(x, y))) != 0;
+            }
+            return matrix.get(indexFor(x, y));
         }
 
         AdjacencyMatrix copy() {
@@ -185,6 +286,10 @@ public class Subgraph {
             // Byte representation is per the graph6 format specfication
             // (http://cs.anu.edu.au/~bdm/nauty/nug25.pdf page 74)
 
+            if (matrix == null) {
+                return Graph6.encodeTriangle(order, triangle);
+            }
+
             // code adapted from Vartika Verma's Nemo Finder project (UWB 2014)
             byte[] orderBytes = convertOrderToBytes(order);
 
@@ -1,5 +1,6 @@
 package edu.uwb.nemolib;
 
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -9,31 +10,193 @@ import java.util.Map;
  * object exists in one of two states: labeled and unlabeled. Certain 
  * operations can only be performed based on the Subgraph's labeled state.
  */
-public class SubgraphCount implements SubgraphEnumerationResult
+public class SubgraphCount implements MergeableSubgraphEnumerationResult
 {
 
 	// String key is label, integer is frequency of subgraph instances
 	// in the Graph from which this object was created
-	private Map<String, Integer> labelFreqMap;
+	private Map<String, Long> labelFreqMap;
+
+	// maps g6 labels onto canonical labels when label() is called
+	private final CanonicalLabeler labeler;
+
+	// subgraphs of an order that has a CanonicalClassTable are counted by
+	// class id instead, and folded into labelFreqMap under their canonical
+	// labels only when the map is read
+	private CanonicalClassTable classTable;
+	private long[] classFreqs;
+
+	// other subgraphs small enough to have an upper-triangle mask are counted
+	// by mask, and converted to g6 labels only when labelFreqMap is read
+	private int triangleOrder;
+	private LongLongHashMap triangleFreqs;
 
 	/**
-	 * Construct an empty SubgraphCount.
+	 * Construct an empty SubgraphCount that is labeled in-process by the
+	 * shared CachingLabeler, in front of a RefinementLabeler.
 	 */
 	public SubgraphCount()
 	{
-		labelFreqMap = new HashMap<>();
+		this(CachingLabeler.shared());
+	}
+
+	/**
+	 * Construct an empty SubgraphCount that is labeled by the given
+	 * CanonicalLabeler.
+	 * @param labeler the CanonicalLabeler used by label()
+	 */
+	public SubgraphCount(CanonicalLabeler labeler)
+	{
+		this.labelFreqMap = new HashMap<>();
+		this.labeler = labeler;
 	}
 
 	// uses interface's JavaDoc comment
 	@Override
 	public void addSubgraph(Subgraph currentSubgraph)
 	{
-		String label = currentSubgraph.getByteString();
-		int total = 0;
+		if (classTableFor(currentSubgraph.order()) != null) {
+			classFreqs[classTable.classOf(currentSubgraph.triangle())]++;
+			return;
+		}
+		if (triangleFreqsFor(currentSubgraph.order()) != null) {
+			triangleFreqs.add(currentSubgraph.triangle(), 1);
+			return;
+		}
+		addFrequency(currentSubgraph.getByteString(), 1);
+	}
+
+	/**
+	 * Count a number of subgraphs of the same shape at once.
+	 * @param order the number of nodes of each subgraph
+	 * @param triangle the upper-triangle mask of the adjacency matrix of one
+	 *                 of the subgraphs
+	 * @param freq the number of subgraphs
+	 */
+	void addSubgraphs(int order, long triangle, long freq)
+	{
+		if (freq == 0) {
+			return;
+		}
+		if (classTableFor(order) != null) {
+			classFreqs[classTable.classOf(triangle)] += freq;
+			return;
+		}
+		if (triangleFreqsFor(order) != null) {
+			triangleFreqs.add(triangle, freq);
+			return;
+		}
+		addFrequency(new String(Graph6.encodeTriangle(order, triangle),
+				StandardCharsets.US_ASCII), freq);
+	}
+
+	// uses interface's JavaDoc comment
+	@Override
+	public MergeableSubgraphEnumerationResult newPartialResult()
+	{
+		return new SubgraphCount(labeler);
+	}
+
+	// uses interface's JavaDoc comment
+	@Override
+	public void merge(MergeableSubgraphEnumerationResult other)
+	{
+		SubgraphCount otherCount = (SubgraphCount) other;
+		for (Map.Entry<String, Long> labelFreq :
+				otherCount.labelFreqMap.entrySet())
+		{
+			addFrequency(labelFreq.getKey(), labelFreq.getValue());
+		}
+		if (otherCount.classTable != null) {
+			long[] otherFreqs = otherCount.classFreqs;
+			if (classTableFor(otherCount.classTable.order()) != null) {
+				for (int i = 0; i < otherFreqs.length; i++) {
+					classFreqs[i] += otherFreqs[i];
+				}
+			} else {
+				for (int i = 0; i < otherFreqs.length; i++) {
+					if (otherFreqs[i] > 0) {
+						addFrequency(otherCount.classTable.label(i),
+								otherFreqs[i]);
+					}
+				}
+			}
+		}
+		if (otherCount.triangleFreqs != null) {
+			if (triangleFreqsFor(otherCount.triangleOrder) != null) {
+				triangleFreqs.addAll(otherCount.triangleFreqs);
+			} else {
+				addTriangleFreqs(otherCount.triangleOrder,
+						otherCount.triangleFreqs);
+			}
+		}
+	}
+
+	// returns the table by which subgraphs of the given order are counted,
+	// or null if they are counted by g6 label
+	private CanonicalClassTable classTableFor(int order)
+	{
+		if (classTable == null) {
+			classTable = CanonicalClassTable.forOrder(order);
+			if (classTable == null) {
+				return null;
+			}
+			classFreqs = new long[classTable.classCount()];
+		}
+		return classTable.order() == order ? classTable : null;
+	}
+
+	// returns the map by which subgraphs of the given order are counted, or
+	// null if they are counted by g6 label
+	private LongLongHashMap triangleFreqsFor(int order)
+	{
+		if (triangleFreqs == null) {
+			if (order > Subgraph.MAX_TRIANGLE_ORDER) {
+				return null;
+			}
+			triangleOrder = order;
+			triangleFreqs = new LongLongHashMap();
+		}
+		return triangleOrder == order ? triangleFreqs : null;
+	}
+
+	// moves the class and triangle counts into labelFreqMap
+	private void foldFreqs()
+	{
+		if (classTable != null) {
+			for (int i = 0; i < classFreqs.length; i++) {
+				if (classFreqs[i] > 0) {
+					addFrequency(classTable.label(i), classFreqs[i]);
+					classFreqs[i] = 0;
+				}
+			}
+		}
+		foldTriangleFreqs();
+	}
+
+	private void foldTriangleFreqs()
+	{
+		if (triangleFreqs != null && triangleFreqs.size() > 0) {
+			addTriangleFreqs(triangleOrder, triangleFreqs);
+			triangleFreqs.clear();
+		}
+	}
+
+	// adds counts keyed by the triangle masks of the given order to
+	// labelFreqMap under their g6 labels
+	private void addTriangleFreqs(int order, LongLongHashMap freqs)
+	{
+		freqs.forEach((triangle, freq) -> addFrequency(
+				new String(Graph6.encodeTriangle(order, triangle),
+						StandardCharsets.US_ASCII), freq));
+	}
+
+	private void addFrequency(String label, long freq)
+	{
+		long total = freq;
 		if (labelFreqMap.containsKey(label)) {
-			total = labelFreqMap.get(label);
+			total += labelFreqMap.get(label);
 		}
-		total++;
 		labelFreqMap.put(label, total);
 	}
 
@@ -41,18 +204,19 @@ public class SubgraphCount implements SubgraphEnumerationResult
 	@Override
 	public void label()
 	{
+		foldFreqs();
+
 		// get the canonical labels, which should be ordered.
-		Labeler labeler = new Labeler();
 		Map<String, String> g6CanLabelMap = 
 				labeler.getCanonicalLabels(labelFreqMap.keySet());
 
-		Map<String, Integer> canLabelFreqMap = new HashMap<>();
+		Map<String, Long> canLabelFreqMap = new HashMap<>();
 		
 		// merge labelFreqMap into canLabelFreqMap
-		for (Map.Entry<String, Integer> g6LabelFreq: labelFreqMap.entrySet() )
+		for (Map.Entry<String, Long> g6LabelFreq: labelFreqMap.entrySet() )
 		{
 			String g6Label = g6LabelFreq.getKey();
-			int freq = g6LabelFreq.getValue();
+			long freq = g6LabelFreq.getValue();
 			String canLabel = g6CanLabelMap.get(g6Label);
 
 			if (canLabelFreqMap.containsKey(canLabel)) {
@@ -66,16 +230,26 @@ public class SubgraphCount implements SubgraphEnumerationResult
 		
 	}
 
+	/**
+	 * Get the number of subgraphs counted under each label.
+	 * @return labels paired with their frequencies
+	 */
+	Map<String, Long> getFrequencies() {
+		foldFreqs();
+		return labelFreqMap;
+	}
+
 	@Override
 	public Map<String, Double> getRelativeFrequencies() {
+		foldFreqs();
 		double total = 0;
-		for (Integer freq : labelFreqMap.values()) {
+		for (Long freq : labelFreqMap.values()) {
 			total += (double) freq;
 		}
 		Map<String, Double> labelRelFreqMap = new HashMap<>();
-		for (Map.Entry<String, Integer> labelFreq : labelFreqMap.entrySet()) {
+		for (Map.Entry<String, Long> labelFreq : labelFreqMap.entrySet()) {
 			String label = labelFreq.getKey();
-			int freq = labelFreq.getValue();
+			long freq = labelFreq.getValue();
 			double relFreq = (double) freq / total;
 			labelRelFreqMap.put(label, relFreq);
 		}
@@ -84,10 +258,11 @@ public class SubgraphCount implements SubgraphEnumerationResult
 
 	// STUB
 	@Override public String toString() {
+		foldFreqs();
 		StringBuilder sb = new StringBuilder();
 		sb.append("Label").append('\t').append("Frequency");
 		sb.append(String.format("%n"));
-		for(Map.Entry<String, Integer> labelFreq: labelFreqMap.entrySet()) {
+		for(Map.Entry<String, Long> labelFreq: labelFreqMap.entrySet()) {
 			sb.append(labelFreq.getKey()).append('\t');
 			sb.append(labelFreq.getValue());
 			sb.append(String.format("%n"));
@@ -97,11 +272,36 @@ public class SubgraphCount implements SubgraphEnumerationResult
 
 	@Override
 	public boolean equals(Object obj) {
-		if (obj.getClass() != this.getClass()) {
+		if (obj == null || obj.getClass() != this.getClass()) {
 			return false;
 		}
 		SubgraphCount other = (SubgraphCount) obj;
-		return other.labelFreqMap.equals(this.labelFreqMap);
+		return other.foldedFrequencies().equals(this.foldedFrequencies());
+	}
+
+	@Override
+	public int hashCode() {
+		return foldedFrequencies().hashCode();
+	}
+
+	// returns labelFreqMap as foldFreqs() would leave it, without changing
+	// this SubgraphCount
+	private Map<String, Long> foldedFrequencies()
+	{
+		Map<String, Long> folded = new HashMap<>(labelFreqMap);
+		if (classTable != null) {
+			for (int i = 0; i < classFreqs.length; i++) {
+				if (classFreqs[i] > 0) {
+					folded.merge(classTable.label(i), classFreqs[i], Long::sum);
+				}
+			}
+		}
+		if (triangleFreqs != null) {
+			triangleFreqs.forEach((triangle, freq) -> folded.merge(
+					new String(Graph6.encodeTriangle(triangleOrder, triangle),
+							StandardCharsets.US_ASCII), freq, Long::sum));
+		}
+		return folded;
 	}
 
 }
@@ -11,7 +11,9 @@ import java.util.Map;
 public interface SubgraphEnumerationResult
 {
 	/**
-	 * Adds a Subgraph to this SubgraphEnumerationResult
+	 * Adds a Subgraph to this SubgraphEnumerationResult. Enumerators reuse
+	 * the Subgraph object once this method returns, so implementations must
+	 * copy any part of it they wish to keep.
 	 * @param currentSubgraph a Subgraph to addSubgraph to this
 	 * SubgraphEnumerationResult
 	 */
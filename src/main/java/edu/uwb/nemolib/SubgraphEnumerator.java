@@ -1,6 +1,15 @@
 package edu.uwb.nemolib;
 
 public interface SubgraphEnumerator {
-	public void enumerate(Graph targetGraph, int subgraphSize,
+	public void enumerate(CompactGraph targetGraph, int subgraphSize,
 	                      SubgraphEnumerationResult subgraphs);
+
+	/**
+	 * Enumerates the subgraphs of a Graph by first converting it into a
+	 * CompactGraph.
+	 */
+	public default void enumerate(Graph targetGraph, int subgraphSize,
+	                              SubgraphEnumerationResult subgraphs) {
+		enumerate(targetGraph.toCompactGraph(), subgraphSize, subgraphs);
+	}
 }
\ No newline at end of file
@@ -1,66 +1,157 @@
 package edu.uwb.nemolib;
 
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 /**
  * The SubgraphProfile is an enumeration of each label, grouped by network
  * vertex id number.<p>
- * A SubgraphProfile is always in one of two states: unlabeled or labeled, 
- * indicating whether the 
- * state and moves to the labeled state once the label() method has been 
- * called. A SubgraphProfile cannot move from a labeled state back to an 
- * unlabeled state.
+ * A SubgraphProfile is always in one of two states: unlabeled or labeled,
+ * indicating whether the
+ * state and moves to the labeled state once the label() method has been
+ * called. A SubgraphProfile cannot move from a labeled state back to an
+ * unlabeled state.<p>
+ * Labels are interned to dense ids, and the frequencies of each label are
+ * stored as a column of primitive counts indexed by vertex. A column starts
+ * as a sparse hash map and becomes an int array once enough of its vertices
+ * are present, so rare labels stay small while common labels cost four bytes
+ * per vertex; the few counts too large for an int are kept in a hash map
+ * beside the array. Merging two profiles adds their columns together, and the total
+ * frequency is kept up to date so relative frequencies take time
+ * proportional to the number of labels.<p>
+ * The partial results handed to the workers of a parallel enumeration keep
+ * every column sparse, so that their memory grows with the subgraphs each
+ * worker finds rather than with the size of the graph; only the profile
+ * they are merged into uses int arrays.
  */
-public class SubgraphProfile implements SubgraphEnumerationResult, Serializable
+public class SubgraphProfile
+		implements MergeableSubgraphEnumerationResult, Serializable
 {
-	// The primary structure of a subgraph profile. Essentially a table to map 
-	// labels(String) and nodes(Integer) to the frequency of subgraphs 
-	// of type label that include the node.
-	private Map<String, Map<Integer, Integer>> labelToVertexToFrequency;
+	// a column stays sparse unless it has an entry for at least one in every
+	// DENSE_RATIO vertices below its largest vertex, about the point at which
+	// an int array becomes smaller than the hash map. A dense column only
+	// becomes sparse again once it is below one entry in every SPARSE_RATIO
+	// vertices, so that a column near the threshold does not switch back and
+	// forth.
+	private static final int DENSE_RATIO = 8;
+	private static final int SPARSE_RATIO = 2 * DENSE_RATIO;
+
+	// The primary structure of a subgraph profile. Labels are interned to
+	// ids, and columns.get(id) maps each node to the frequency of subgraphs
+	// of type labels.get(id) that include the node.
+	private List<String> labels;
+	private Map<String, Integer> labelToId;
+	private List<Column> columns;
+
+	// the sum of every column
+	private long totalFrequency;
+
+	// true for the partial result of a parallel worker, whose columns are
+	// never dense
+	private final boolean partial;
+
+	// maps g6 labels onto canonical labels when label() is called; not
+	// serialized, so a deserialized profile uses the shared CachingLabeler
+	private transient CanonicalLabeler labeler;
+
+	// the label ids of subgraphs of an order that has a CanonicalClassTable
+	// are cached by class id, and those of other subgraphs small enough to
+	// have an upper-triangle mask by mask (plus one), so that a label String
+	// is built once per class or mask instead of once per subgraph
+	private transient CanonicalClassTable classTable;
+	private transient int[] classToId;
+	private transient int triangleOrder;
+	private transient LongLongHashMap triangleToId;
 
 	/**
-	 * Construct a SubgraphProfile object
+	 * Construct a SubgraphProfile object that is labeled in-process by the
+	 * shared CachingLabeler, in front of a RefinementLabeler.
 	 */
 	public SubgraphProfile()
 	{
-		labelToVertexToFrequency = new HashMap<>();
+		this(CachingLabeler.shared());
+	}
+
+	/**
+	 * Construct a SubgraphProfile object that is labeled by the given
+	 * CanonicalLabeler.
+	 * @param labeler the CanonicalLabeler used by label()
+	 */
+	public SubgraphProfile(CanonicalLabeler labeler)
+	{
+		this(labeler, false);
+	}
+
+	private SubgraphProfile(CanonicalLabeler labeler, boolean partial)
+	{
+		this.partial = partial;
+		this.labels = new ArrayList<>();
+		this.labelToId = new HashMap<>();
+		this.columns = new ArrayList<>();
+		this.labeler = labeler;
 	}
 
 	// uses interface JavaDoc comment
 	@Override
 	public void addSubgraph(Subgraph currentSubgraph)
 	{
-		int[] vertices = currentSubgraph.getNodes();
-		String label = currentSubgraph.getByteString();
-		Map<Integer, Integer> nodeToFrequency =
-				labelToVertexToFrequency.get(label);
-		if(nodeToFrequency == null) {
-			nodeToFrequency = new HashMap<>();
+		Column column = columns.get(idOf(currentSubgraph));
+		for (int i = 0; i < currentSubgraph.size(); i++) {
+			column.add(currentSubgraph.get(i), 1);
 		}
-		for (int i = 0; i < vertices.length; i++) {
-			int currentNode = currentSubgraph.get(i);
-			int currentFreq = 0;
-			if (nodeToFrequency.containsKey(currentNode)) {
-				currentFreq = nodeToFrequency.get(currentNode);
-			}
-			currentFreq++;
-			nodeToFrequency.put(currentNode, currentFreq);
-		}
-		labelToVertexToFrequency.put(label, nodeToFrequency);
+		totalFrequency += currentSubgraph.size();
 	}
 
 	public boolean addFrequencies(String label,
 	                           Map<Integer, Integer> frequencies) {
-		if (labelToVertexToFrequency.containsKey(label)) {
+		if (labelToId.containsKey(label)) {
 			return false;
 		}
-		labelToVertexToFrequency.put(label, frequencies);
+		Column column = columns.get(intern(label));
+		for (Map.Entry<Integer, Integer> vertexFreq : frequencies.entrySet()) {
+			column.add(vertexFreq.getKey(), vertexFreq.getValue());
+		}
+		totalFrequency += column.total;
 		return true;
 	}
 
+	/**
+	 * Get the frequencies of subgraphs of a label by vertex. A frequency too
+	 * large for an Integer, which the vertices of large hubs can have, is
+	 * given as Integer.MAX_VALUE; getFrequency() gives it exactly.
+	 * @param label the label
+	 * @return the frequency of every vertex with a non-zero frequency, or
+	 * null if the label was not found
+	 */
 	public Map<Integer, Integer> getFrequencies(String label) {
-		return labelToVertexToFrequency.getOrDefault(label, null);
+		Integer id = labelToId.get(label);
+		if (id == null) {
+			return null;
+		}
+		Map<Integer, Integer> result = new HashMap<>();
+		columns.get(id).forEach((vertex, freq) -> result.put((int) vertex,
+				(int) Math.min(freq, Integer.MAX_VALUE)));
+		return result;
+	}
+
+	/**
+	 * Get the frequency of subgraphs of a label that include a vertex.
+	 * @param label the label
+	 * @param vertex the vertex
+	 * @return the frequency, or 0 if the label was not found
+	 */
+	public long getFrequency(String label, int vertex) {
+		Integer id = labelToId.get(label);
+		return id == null ? 0 : columns.get(id).get(vertex);
+	}
+
+	/**
+	 * Get the labels of this SubgraphProfile.
+	 * @return the labels
+	 */
+	public Set<String> getLabels() {
+		return Collections.unmodifiableSet(labelToId.keySet());
 	}
 
 	// uses interface JavaDoc comment
@@ -68,87 +159,136 @@ public class SubgraphProfile implements SubgraphEnumerationResult, Serializable
 	public void label()
 	{
 		// get the canonical labels, which should be ordered.
-		Labeler labeler = new Labeler();
+		if (labeler == null) {
+			labeler = CachingLabeler.shared();
+		}
 		Map<String, String> g6LabelToCanonicalLabel =
-				labeler.getCanonicalLabels(labelToVertexToFrequency.keySet());
+				labeler.getCanonicalLabels(labelToId.keySet());
 
-		// make a replacement structure for the original map
-		Map<String, Map<Integer, Integer>> canLabelToVertexToFrequency =
-				new HashMap<>();
-
-		// merge labelFreqMap into canLabelFreqMap
-		for (Map.Entry<String, Map<Integer, Integer>> g6VertexToFrequency:
-				labelToVertexToFrequency.entrySet() )
-		{
+		// re-intern every column under its canonical label, adding together
+		// the columns of labels that are isomorphic
+		List<String> g6Labels = labels;
+		List<Column> g6Columns = columns;
+		labels = new ArrayList<>();
+		labelToId = new HashMap<>();
+		columns = new ArrayList<>();
+		classTable = null;
+		triangleToId = null;
+		for (int i = 0; i < g6Labels.size(); i++) {
 			// must exist
-			String canLabel =
-					g6LabelToCanonicalLabel.get(g6VertexToFrequency.getKey());
-
-			Map<Integer, Integer> vertexToFrequency =
-					canLabelToVertexToFrequency.get(canLabel);
-
-			if (vertexToFrequency == null){
-				vertexToFrequency = new HashMap<>();
-			}
-
-			for (Map.Entry<Integer, Integer> g6VertexFreq :
-					g6VertexToFrequency.getValue().entrySet())
-			{
-				int vertex = g6VertexFreq.getKey();
-				int total = g6VertexFreq.getValue();
-				if (vertexToFrequency.containsKey(vertex)) {
-					total += vertexToFrequency.get(vertex);
-				}
-				vertexToFrequency.put(vertex, total);
+			String canLabel = g6LabelToCanonicalLabel.get(g6Labels.get(i));
+			int id = intern(canLabel);
+			if (columns.get(id).isEmpty()) {
+				columns.set(id, g6Columns.get(i));
+			} else {
+				columns.get(id).addAll(g6Columns.get(i));
 			}
-			canLabelToVertexToFrequency.put(canLabel, vertexToFrequency);
 		}
-		labelToVertexToFrequency = canLabelToVertexToFrequency;
+	}
+
+	// uses interface JavaDoc comment
+	@Override
+	public MergeableSubgraphEnumerationResult newPartialResult()
+	{
+		return new SubgraphProfile(labeler, true);
+	}
+
+	// uses interface JavaDoc comment
+	@Override
+	public void merge(MergeableSubgraphEnumerationResult other)
+	{
+		merge((SubgraphProfile) other);
 	}
 
 	/**
 	 * Merge this SubgraphProfile with another SubgraphProfile
-	 * @param other the other SubgraphProfile to merge with this 
+	 * @param other the other SubgraphProfile to merge with this
 	 * SubgraphProfile
 	 */
 	public void merge(SubgraphProfile other) {
-		for (String otherLabel : other.labelToVertexToFrequency.keySet()) {
-			if (!this.labelToVertexToFrequency.containsKey(otherLabel)) {
-				this.labelToVertexToFrequency.put(otherLabel,
-						other.labelToVertexToFrequency.get(otherLabel));
-			} else {
-				Map<Integer, Integer> otherLabelVertexFreqMap =
-						other.labelToVertexToFrequency.get(otherLabel);
-				Map<Integer, Integer> thisLabelVertexFreqMap =
-						this.labelToVertexToFrequency.get(otherLabel);
-				for (int vertex : otherLabelVertexFreqMap.keySet()) {
-					if (!thisLabelVertexFreqMap.containsKey(vertex)) {
-						thisLabelVertexFreqMap.put(vertex,
-								otherLabelVertexFreqMap.get(vertex));
-					} else {
-						int total = thisLabelVertexFreqMap.get(vertex);
-						total += otherLabelVertexFreqMap.get(vertex);
-						thisLabelVertexFreqMap.put(vertex, total);
-					}
-				}
+		for (int i = 0; i < other.labels.size(); i++) {
+			columns.get(intern(other.labels.get(i)))
+					.addAll(other.columns.get(i));
+		}
+		totalFrequency += other.totalFrequency;
+	}
+
+	// returns the id of a label, adding the label with an empty column if
+	// it is new
+	private int intern(String label) {
+		Integer id = labelToId.get(label);
+		if (id == null) {
+			id = labels.size();
+			labels.add(label);
+			labelToId.put(label, id);
+			columns.add(new Column(!partial));
+		}
+		return id;
+	}
+
+	/**
+	 * Count subgraphs of the same shape that include a vertex.
+	 * @param order the number of nodes of each subgraph
+	 * @param triangle the upper-triangle mask of the adjacency matrix of one
+	 *                 of the subgraphs
+	 * @param vertex the vertex
+	 * @param freq the number of subgraphs that include the vertex
+	 */
+	void addSubgraphs(int order, long triangle, int vertex, long freq) {
+		if (freq == 0) {
+			return;
+		}
+		columns.get(idOf(order, triangle)).add(vertex, freq);
+		totalFrequency += freq;
+	}
+
+	// returns the id of the g6 label of a subgraph
+	private int idOf(Subgraph subgraph) {
+		int order = subgraph.order();
+		if (order > Subgraph.MAX_TRIANGLE_ORDER) {
+			return intern(subgraph.getByteString());
+		}
+		return idOf(order, subgraph.triangle());
+	}
+
+	// returns the id of the g6 label of the subgraph with an upper-triangle
+	// mask
+	private int idOf(int order, long triangle) {
+		if (classTable == null || classTable.order() != order) {
+			CanonicalClassTable table = CanonicalClassTable.forOrder(order);
+			if (table != null) {
+				classTable = table;
+				classToId = new int[table.classCount()];
+				Arrays.fill(classToId, -1);
+			}
+		}
+		if (classTable != null && classTable.order() == order) {
+			int classId = classTable.classOf(triangle);
+			if (classToId[classId] < 0) {
+				classToId[classId] = intern(classTable.label(classId));
 			}
+			return classToId[classId];
 		}
+		if (triangleToId == null || triangleOrder != order) {
+			triangleOrder = order;
+			triangleToId = new LongLongHashMap();
+		}
+		int id = (int) triangleToId.get(triangle) - 1;
+		if (id < 0) {
+			id = intern(new String(Graph6.encodeTriangle(order, triangle),
+					StandardCharsets.US_ASCII));
+			triangleToId.add(triangle, id + 1);
+		}
+		return id;
 	}
 
 	@Override
 	public Map<String, Double> getRelativeFrequencies() {
 		Map<String, Double> result = new HashMap<>();
-		double totalSubgraphCount = (double) getTotalSubgraphCount();
-		Set<String> labels = labelToVertexToFrequency.keySet();
-		for (String label : labels) {
-			int total = 0;
-			Map<Integer, Integer> vertexFreqMap =
-					labelToVertexToFrequency.get(label);
-			for(Map.Entry<Integer, Integer> vertexFreq : vertexFreqMap.entrySet()) {
-				total += vertexFreq.getValue();
-			}
-			double relFreq = (double) total / totalSubgraphCount;
-			result.put(label, relFreq);
+		double totalSubgraphCount = (double) totalFrequency;
+		for (int i = 0; i < labels.size(); i++) {
+			double relFreq = columns.get(i).total / totalSubgraphCount;
+			result.put(labels.get(i), relFreq);
 		}
 		return result;
 	}
@@ -163,30 +303,157 @@ public class SubgraphProfile implements SubgraphEnumerationResult, Serializable
 		StringBuilder result = new StringBuilder();
 		String newline = System.getProperty("line.separator");
 
-		for (Map.Entry<String, Map<Integer, Integer>> labelFreqs :
-				labelToVertexToFrequency.entrySet()) {
-			result.append(labelFreqs.getKey());
+		for (int i = 0; i < labels.size(); i++) {
+			result.append(labels.get(i));
 			result.append(newline);
-			for (Map.Entry<Integer, Integer> nodeFreqs :
-					labelFreqs.getValue().entrySet()) {
-				result.append("[").append(nodeFreqs.getKey()).append(",")
-						.append(nodeFreqs.getValue()).append("]");
-			}
+			columns.get(i).forEach((vertex, freq) ->
+					result.append("[").append(vertex).append(",")
+							.append(freq).append("]"));
 			result.append(newline);
 		}
 		return result.toString();
 	}
 
-	// Returns the total number of subgraphs in this SubgraphProfile
-	private int getTotalSubgraphCount() {
-		int total = 0;
-		for (Map.Entry<String, Map<Integer, Integer>> labelVertexFreqMap :
-				labelToVertexToFrequency.entrySet()) {
-			for (Map.Entry<Integer, Integer> vertexFreqMap :
-					labelVertexFreqMap.getValue().entrySet()) {
-				total += vertexFreqMap.getValue();
+	// the frequencies of one label, indexed by vertex; exactly one of dense
+	// and sparse is non-null. A dense count too large for an int, as a hub
+	// can have, is OVERFLOW in dense and kept in full in overflow.
+	private static final class Column implements Serializable {
+
+		private static final int OVERFLOW = -1;
+
+		private final boolean mayBeDense;
+		private int[] dense;
+		private LongLongHashMap overflow;
+		private LongLongHashMap sparse = new LongLongHashMap();
+
+		// the number of vertices with a non-zero frequency, the largest of
+		// them, and the sum of their frequencies
+		private int entries;
+		private int maxVertex = -1;
+		private long total;
+
+		Column(boolean mayBeDense) {
+			this.mayBeDense = mayBeDense;
+		}
+
+		void add(int vertex, long freq) {
+			if (freq == 0) {
+				return;
+			}
+			if (dense != null && vertex >= dense.length) {
+				// a column that would be too sparse once grown goes back to
+				// being a hash map
+				int length = Math.max(vertex + 1,
+						dense.length + (dense.length >> 1));
+				if ((long) (entries + 1) * SPARSE_RATIO <= length) {
+					toSparse();
+				} else {
+					dense = Arrays.copyOf(dense, length);
+				}
+			}
+			total += freq;
+			maxVertex = Math.max(maxVertex, vertex);
+			if (dense == null) {
+				sparse.add(vertex, freq);
+				entries = sparse.size();
+				if (mayBeDense && (long) entries * DENSE_RATIO > maxVertex) {
+					toDense();
+				}
+				return;
+			}
+			addDense(vertex, freq);
+		}
+
+		long get(int vertex) {
+			if (dense != null) {
+				if (vertex >= dense.length) {
+					return 0;
+				}
+				int count = dense[vertex];
+				return count == OVERFLOW ? overflow.get(vertex) : count;
+			}
+			return sparse.get(vertex);
+		}
+
+		boolean isEmpty() {
+			return entries == 0;
+		}
+
+		// adds the frequencies of other into this column, as array addition
+		// if both are dense
+		void addAll(Column other) {
+			if (dense == null || other.dense == null) {
+				other.forEach((vertex, freq) -> add((int) vertex, freq));
+				return;
+			}
+			if (other.dense.length > dense.length) {
+				dense = Arrays.copyOf(dense, other.dense.length);
+			}
+			int[] otherDense = other.dense;
+			for (int vertex = 0; vertex < otherDense.length; vertex++) {
+				if (otherDense[vertex] != 0) {
+					addDense(vertex, other.get(vertex));
+				}
+			}
+			maxVertex = Math.max(maxVertex, other.maxVertex);
+			total += other.total;
+		}
+
+		// visits every vertex with a non-zero frequency
+		void forEach(LongLongHashMap.Visitor visitor) {
+			if (dense == null) {
+				sparse.forEach(visitor);
+				return;
+			}
+			for (int vertex = 0; vertex < dense.length; vertex++) {
+				if (dense[vertex] != 0) {
+					visitor.visit(vertex, get(vertex));
+				}
+			}
+		}
+
+		// adds to the count of a vertex below dense.length, moving it to
+		// overflow once it no longer fits an int
+		private void addDense(int vertex, long freq) {
+			int count = dense[vertex];
+			if (count == 0) {
+				entries++;
+			}
+			if (count == OVERFLOW) {
+				overflow.add(vertex, freq);
+				return;
+			}
+			long sum = count + freq;
+			if (sum <= Integer.MAX_VALUE) {
+				dense[vertex] = (int) sum;
+				return;
+			}
+			if (overflow == null) {
+				overflow = new LongLongHashMap();
+			}
+			overflow.add(vertex, sum);
+			dense[vertex] = OVERFLOW;
+		}
+
+		private void toDense() {
+			dense = new int[maxVertex + 1];
+			sparse.forEach((vertex, freq) -> {
+				entries--;
+				addDense((int) vertex, freq);
+			});
+			sparse = null;
+		}
+
+		private void toSparse() {
+			LongLongHashMap counts = new LongLongHashMap();
+			for (int vertex = 0; vertex < dense.length; vertex++) {
+				if (dense[vertex] != 0) {
+					counts.add(vertex, get(vertex));
+				}
 			}
+			sparse = counts;
+			dense = null;
+			overflow = null;
 		}
-		return total;
 	}
 }
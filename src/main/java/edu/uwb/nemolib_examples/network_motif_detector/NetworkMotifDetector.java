@@ -3,17 +3,27 @@ package edu.uwb.nemolib_examples.network_motif_detector;
 import edu.uwb.nemolib.*;
 
 import java.io.IOException;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.SplittableRandom;
 
 public class NetworkMotifDetector {
 
+	// the seed used if none is given, so that runs are reproducible
+	private static final long DEFAULT_SEED = 0L;
+
+	// the p-value below which a label is a motif
+	private static final double P_VALUE_THRESHOLD = 0.05;
+
+	// the largest probability that a label that is not a motif is decided to
+	// be one before every random graph is generated
+	private static final double ERROR_RATE = 0.01;
+
 	public static void main (String[] args) {
 
 		if (args.length < 3) {
 			System.err.println("usage: NetworkMotifDetector path_to_data " +
-					"motif_size, random_graph_count");
+					"motif_size, random_graph_count [seed]");
 			System.exit(1);
 		}
 
@@ -21,26 +31,24 @@ public class NetworkMotifDetector {
 		System.out.println("filename = " + args[0]);
 		int motifSize = Integer.parseInt(args[1]);
 		int randGraphCount = Integer.parseInt(args[2]);
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : DEFAULT_SEED;
+		System.out.println("seed = " + seed);
+
+		// every random step draws its own seed from the one given
+		SplittableRandom seeds = new SplittableRandom(seed);
 
+		// every connected subgraph of size 2 is an edge, so there is nothing
+		// to compare
 		if (motifSize < 3) {
-			System.err.println("Motif getSize must be 3 or larger");
+			System.err.println("Motif size must be 3 or larger");
 			System.exit(-1);
 		}
 
-		// Hard-code probs for now. This vector will take about ~10% sample
-		List<Double> probs = new LinkedList<>();
-		for (int i = 0; i < motifSize - 2; i++)
-		{
-			probs.add(1.0);
-		}
-		probs.add(1.0);
-		probs.add(0.1);
-
 		// parse input graph
 		System.out.println("Parsing target graph...");
 		Graph targetGraph = null;
 		try {
-			targetGraph = GraphParser.parse(filename);
+			targetGraph = GraphParser.parse(filename, seeds.nextLong());
 		} catch (IOException e) {
 			System.err.println("Could not process " + filename);
 			System.err.println(e);
@@ -48,22 +56,49 @@ public class NetworkMotifDetector {
 		}
 
 		SubgraphEnumerationResult subgraphCount = new SubgraphCount();
-		SubgraphEnumerator targetGraphESU = new ESU();
+		// sizes 3 and 4 are counted in closed form, and larger ones by ESU
+		SubgraphEnumerator targetGraphESU = new ClosedFormCounter();
 		TargetGraphAnalyzer targetGraphAnalyzer =
 				new TargetGraphAnalyzer(targetGraphESU, subgraphCount);
 		Map<String, Double> targetLabelToRelativeFrequency =
 				targetGraphAnalyzer.analyze(targetGraph, motifSize);
 
-		SubgraphEnumerator randESU = new RandESU(probs);
+		SubgraphEnumerator randESU;
+		if (ClosedFormCounter.supports(motifSize)) {
+			// exact counts cost less than sampling
+			randESU = new ClosedFormCounter();
+		} else {
+			// sample the random graphs at the lowest rate that estimates the
+			// target graph's concentrations to within 5% at 95% confidence
+			AdaptiveRandESU.Estimate estimate =
+					new AdaptiveRandESU(0.05, 0.95, seeds.nextLong())
+							.estimate(targetGraph, motifSize);
+			List<Double> probs = estimate.getProbabilities();
+			System.out.println("RAND-ESU probabilities = " + probs);
+			randESU = new RandESU(probs, seeds.nextLong());
+		}
 		RandomGraphAnalyzer randomGraphAnalyzer =
-				new RandomGraphAnalyzer(randESU, randGraphCount);
-		Map<String, List<Double>> randomLabelToRelativeFrequencies =
-				randomGraphAnalyzer.analyze(targetGraph, motifSize);
+				new RandomGraphAnalyzer(randESU, randGraphCount,
+						new ConfigurationModelGenerator(
+								ConfigurationModelGenerator.Policy.ERASE),
+						seeds.nextLong());
+		RelativeFrequencyAccumulator randomRelativeFrequencies =
+				new RelativeFrequencyAccumulator(
+						targetLabelToRelativeFrequency);
+		// stop generating random graphs once every label is decided
+		SequentialSignificanceTest significanceTest =
+				new SequentialSignificanceTest(P_VALUE_THRESHOLD,
+						randGraphCount, ERROR_RATE);
+		long randomGraphsUsed = randomGraphAnalyzer.analyze(targetGraph,
+				motifSize, randomRelativeFrequencies, significanceTest);
+		System.out.println("random graphs used = " + randomGraphsUsed +
+				" of " + randGraphCount);
 
 		RelativeFrequencyAnalyzer relativeFrequencyAnalyzer =
-				new RelativeFrequencyAnalyzer(randomLabelToRelativeFrequencies,
-						                      targetLabelToRelativeFrequency);
+				new RelativeFrequencyAnalyzer(randomRelativeFrequencies);
 		System.out.println(relativeFrequencyAnalyzer);
+		System.out.println("motifs = " +
+				significanceTest.getSignificantLabels());
 
 		System.out.println("Compete");
 	}
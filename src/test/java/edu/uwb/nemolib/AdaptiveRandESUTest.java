@@ -0,0 +1,90 @@
+package edu.uwb.nemolib;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveRandESUTest {
+
+	@Test
+	public void smallGraphIsEnumeratedExactlyOnce() {
+		CompactGraph graph =
+				ConfigurationModelGeneratorTest.hubGraph(100, 4);
+		for (int subgraphSize = 3; subgraphSize <= 4; subgraphSize++) {
+			SubgraphCount count = new SubgraphCount();
+			new ESU().enumerate(graph, subgraphSize, count);
+			count.label();
+			Map<String, Double> expected = count.getRelativeFrequencies();
+
+			AdaptiveRandESU.Estimate estimate = new AdaptiveRandESU(0.01, 0.95)
+					.estimate(graph, subgraphSize);
+			assertTrue(estimate.isExact());
+			assertEquals(1, estimate.getReplicateCount());
+			assertEquals(expected, estimate.getRelativeFrequencies());
+			assertEquals(expected, estimate.getLowerBounds());
+			assertEquals(expected, estimate.getUpperBounds());
+			for (double prob : estimate.getProbabilities()) {
+				assertEquals(1.0, prob, 0.0);
+			}
+		}
+	}
+
+	@Test
+	public void seededEstimatesAreReproducible() {
+		CompactGraph graph =
+				ConfigurationModelGeneratorTest.hubGraph(5000, 5);
+		AdaptiveRandESU.Estimate first =
+				new AdaptiveRandESU(0.2, 0.95, 42).estimate(graph, 3);
+		AdaptiveRandESU.Estimate second =
+				new AdaptiveRandESU(0.2, 0.95, 42).estimate(graph, 3);
+		assertFalse(first.isExact());
+		assertEquals(first.getProbabilities(), second.getProbabilities());
+		assertEquals(first.getReplicateCount(), second.getReplicateCount());
+		assertEquals(first.getRelativeFrequencies(),
+				second.getRelativeFrequencies());
+		assertEquals(first.getLowerBounds(), second.getLowerBounds());
+		assertEquals(first.getUpperBounds(), second.getUpperBounds());
+	}
+
+	@Test
+	public void seededEstimateMeetsTheTargetAndCoversTheConcentrations() {
+		// a sparse graph without hubs, too large to enumerate at the target
+		Random random = new Random(9);
+		int size = 20000;
+		int edgeCount = 5 * size;
+		int[] endpoints = new int[2 * edgeCount];
+		for (int i = 0; i < endpoints.length; i++) {
+			endpoints[i] = random.nextInt(size);
+		}
+		CompactGraph graph = CompactGraph.fromEdges(size, endpoints, edgeCount);
+		SubgraphCount count = new SubgraphCount();
+		new ESU().enumerate(graph, 4, count);
+		count.label();
+		Map<String, Double> exact = count.getRelativeFrequencies();
+
+		double target = 0.1;
+		AdaptiveRandESU.Estimate estimate =
+				new AdaptiveRandESU(target, 0.95, 11).estimate(graph, 4);
+		assertFalse(estimate.isExact());
+		assertTrue(estimate.getProbabilities().get(3) < 1.0);
+		Map<String, Double> ratios = estimate.getRelativeFrequencies();
+		Map<String, Double> lower = estimate.getLowerBounds();
+		Map<String, Double> upper = estimate.getUpperBounds();
+		for (String label : ratios.keySet()) {
+			double ratio = ratios.get(label);
+			if (ratio >= AdaptiveRandESU.MIN_CONCENTRATION) {
+				double halfWidth = (upper.get(label) - lower.get(label)) / 2;
+				assertTrue(label, halfWidth <= target * ratio);
+			}
+		}
+		for (String label : exact.keySet()) {
+			if (exact.get(label) >= AdaptiveRandESU.MIN_CONCENTRATION) {
+				assertTrue(label, lower.get(label) <= exact.get(label));
+				assertTrue(label, exact.get(label) <= upper.get(label));
+			}
+		}
+	}
+}
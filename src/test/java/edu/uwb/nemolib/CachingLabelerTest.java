@@ -0,0 +1,132 @@
+package edu.uwb.nemolib;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class CachingLabelerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void onlyMissesArePassedOn() {
+		RecordingLabeler backend = new RecordingLabeler();
+		CachingLabeler labeler = new CachingLabeler(backend, 64);
+
+		Map<String, String> first = labeler.getCanonicalLabels(
+				labels("a", "b", "c"));
+		assertEquals(Arrays.asList("a", "b", "c"),
+				new ArrayList<>(first.keySet()));
+		assertEquals("canonical-b", first.get("b"));
+		assertEquals(3, labeler.getMissCount());
+
+		Map<String, String> second = labeler.getCanonicalLabels(
+				labels("c", "d", "a"));
+		assertEquals(Arrays.asList("c", "d", "a"),
+				new ArrayList<>(second.keySet()));
+		assertEquals("canonical-d", second.get("d"));
+		assertEquals(labels("d"), backend.requests.get(1));
+		assertEquals(2, backend.requests.size());
+		assertEquals(2, labeler.getHitCount());
+		assertEquals(4, labeler.getMissCount());
+		assertEquals(2.0 / 6, labeler.getHitRate(), 0.0);
+
+		labeler.getCanonicalLabels(labels("a", "b"));
+		assertEquals(2, backend.requests.size());
+	}
+
+	@Test
+	public void cacheIsBoundedAndCountsEvictions() {
+		RecordingLabeler backend = new RecordingLabeler();
+		CachingLabeler labeler = new CachingLabeler(backend, 16);
+		Set<String> labels = new LinkedHashSet<>();
+		for (int i = 0; i < 200; i++) {
+			labels.add("label-" + i);
+		}
+		labeler.getCanonicalLabels(labels);
+		assertTrue(labeler.size() <= 16);
+		assertEquals(200 - labeler.size(), labeler.getEvictionCount());
+	}
+
+	@Test
+	public void savedCacheLoadsWithoutLabeling() throws IOException {
+		CachingLabeler labeler =
+				new CachingLabeler(new RecordingLabeler(), 64);
+		Set<String> labels = labels("a", "b", "c", "d");
+		Map<String, String> expected = labeler.getCanonicalLabels(labels);
+		File file = folder.newFile("labels.cache");
+		labeler.save(file);
+
+		RecordingLabeler backend = new RecordingLabeler();
+		CachingLabeler loaded = new CachingLabeler(backend, 64);
+		loaded.load(file);
+		assertEquals(labels.size(), loaded.size());
+		assertEquals(expected, loaded.getCanonicalLabels(labels));
+		assertTrue(backend.requests.isEmpty());
+		assertEquals(labels.size(), loaded.getHitCount());
+	}
+
+	@Test
+	public void cacheOfAnotherLabelerIsRejected() throws IOException {
+		CachingLabeler labeler =
+				new CachingLabeler(new RecordingLabeler(), 64);
+		labeler.getCanonicalLabels(labels("a"));
+		File file = folder.newFile("labels.cache");
+		labeler.save(file);
+
+		CachingLabeler other =
+				new CachingLabeler(new RefinementLabeler(), 64);
+		assertLoadFails(other, file, RecordingLabeler.class.getName());
+		assertEquals(0, other.size());
+
+		File headless = folder.newFile("headless.cache");
+		Files.write(headless.toPath(),
+				"a canonical-a\n".getBytes(StandardCharsets.US_ASCII));
+		assertLoadFails(labeler, headless, "not a saved label cache");
+	}
+
+	private static void assertLoadFails(CachingLabeler labeler, File file,
+	                                    String message) {
+		try {
+			labeler.load(file);
+			fail();
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains(message));
+		}
+	}
+
+	private static Set<String> labels(String... labels) {
+		return new LinkedHashSet<>(Arrays.asList(labels));
+	}
+
+	// prefixes every label, and records the labels it is asked for
+	private static final class RecordingLabeler implements CanonicalLabeler {
+
+		final List<Set<String>> requests = new ArrayList<>();
+
+		@Override
+		public Map<String, String> getCanonicalLabels(Set<String> labels) {
+			requests.add(new LinkedHashSet<>(labels));
+			Map<String, String> result = new LinkedHashMap<>();
+			for (String label : labels) {
+				result.put(label, "canonical-" + label);
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package edu.uwb.nemolib;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ClosedFormCounterTest {
+
+	@Test
+	public void agreesWithESUOnRandomGraphs() {
+		Random random = new Random(3);
+		for (int round = 0; round < 40; round++) {
+			int size = 5 + random.nextInt(40);
+			double density = 0.05 + 0.6 * random.nextDouble();
+			CompactGraph graph = randomGraph(size, density, random);
+			for (int subgraphSize = 3; subgraphSize <= 4; subgraphSize++) {
+				assertAgreesWithESU(graph, subgraphSize);
+			}
+		}
+	}
+
+	@Test
+	public void agreesWithESUOnHubsAndCliques() {
+		assertAgreesWithESU(ConfigurationModelGeneratorTest.hubGraph(400, 8),
+				4);
+		assertAgreesWithESU(randomGraph(12, 1.0, new Random(1)), 4);
+		assertAgreesWithESU(randomGraph(12, 1.0, new Random(1)), 3);
+	}
+
+	@Test
+	public void otherSizesFallBackToESU() {
+		CompactGraph graph = randomGraph(20, 0.3, new Random(9));
+		assertAgreesWithESU(graph, 5);
+	}
+
+	private static void assertAgreesWithESU(CompactGraph graph,
+	                                        int subgraphSize) {
+		SubgraphCount expected = new SubgraphCount();
+		new ESU().enumerate(graph, subgraphSize, expected);
+		expected.label();
+		SubgraphCount actual = new SubgraphCount();
+		new ClosedFormCounter().enumerate(graph, subgraphSize, actual);
+		actual.label();
+		assertEquals(expected.getFrequencies(), actual.getFrequencies());
+	}
+
+	// an Erdos-Renyi graph, with each edge present with the given density
+	static CompactGraph randomGraph(int size, double density,
+	                                Random random) {
+		int[] endpoints = new int[size * (size - 1)];
+		int edgeCount = 0;
+		for (int u = 0; u < size; u++) {
+			for (int v = u + 1; v < size; v++) {
+				if (random.nextDouble() < density) {
+					endpoints[2 * edgeCount] = u;
+					endpoints[2 * edgeCount + 1] = v;
+					edgeCount++;
+				}
+			}
+		}
+		return CompactGraph.fromEdges(size, endpoints, edgeCount);
+	}
+}
@@ -0,0 +1,148 @@
+package edu.uwb.nemolib;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class CompactGraphFileTest {
+
+	// the header is 24 bytes, followed by the offsets
+	private static final int FIRST_OFFSET = 24;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void writeAndLoadRoundTrip() throws IOException {
+		CompactGraph graph = ConfigurationModelGeneratorTest.hubGraph(500, 3);
+		String[] names = new String[graph.getSize()];
+		for (int v = 0; v < names.length; v++) {
+			names[v] = v % 7 == 0 ? "vértex-" + v : Integer.toString(v);
+		}
+		String filename = file("named.csr");
+		CompactGraphFile.write(graph, names, filename);
+		assertSameGraph(graph, CompactGraphFile.load(filename));
+		assertArrayEquals(names, CompactGraphFile.readNames(filename));
+
+		String unnamed = file("unnamed.csr");
+		CompactGraphFile.write(graph, null, unnamed);
+		assertSameGraph(graph, CompactGraphFile.load(unnamed));
+		assertNull(CompactGraphFile.readNames(unnamed));
+	}
+
+	@Test
+	public void convertMatchesTheEdgeListParser() throws IOException {
+		Random random = new Random(4);
+		StringBuilder edges = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			edges.append("n").append(random.nextInt(300)).append(' ')
+					.append("n").append(random.nextInt(300)).append('\n');
+		}
+		String edgeList = file("edges.txt");
+		Files.write(new File(edgeList).toPath(),
+				edges.toString().getBytes(StandardCharsets.US_ASCII));
+		String filename = file("converted.csr");
+		CompactGraphFile.convert(edgeList, filename);
+
+		EdgeListParser parser = new EdgeListParser(ForkJoinPool.commonPool());
+		parser.parse(edgeList);
+		assertSameGraph(parser.graph(), CompactGraphFile.load(filename));
+		assertArrayEquals(parser.names(),
+				CompactGraphFile.readNames(filename));
+	}
+
+	@Test
+	public void mappedGraphSerializesAsAHeapGraph() throws Exception {
+		CompactGraph graph = ConfigurationModelGeneratorTest.hubGraph(200, 5);
+		String filename = file("graph.csr");
+		CompactGraphFile.write(graph, null, filename);
+		CompactGraph mapped = CompactGraphFile.load(filename);
+		assertTrue(mapped instanceof MappedCompactGraph);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(mapped);
+		}
+		Object copy;
+		try (ObjectInputStream in = new ObjectInputStream(
+				new ByteArrayInputStream(bytes.toByteArray()))) {
+			copy = in.readObject();
+		}
+		assertEquals(CompactGraph.class, copy.getClass());
+		assertSameGraph(graph, (CompactGraph) copy);
+	}
+
+	@Test
+	public void truncatedFileIsRejected() throws IOException {
+		String filename = written("truncated.csr");
+		try (RandomAccessFile file = new RandomAccessFile(filename, "rw")) {
+			file.setLength(file.length() - 4);
+		}
+		assertLoadFails(filename, "truncated");
+	}
+
+	@Test
+	public void badMagicIsRejected() throws IOException {
+		String filename = written("magic.csr");
+		try (RandomAccessFile file = new RandomAccessFile(filename, "rw")) {
+			file.writeInt(0x12345678);
+		}
+		assertLoadFails(filename, "not a binary graph file");
+
+		String empty = file("empty.csr");
+		assertTrue(new File(empty).createNewFile());
+		assertLoadFails(empty, "not a binary graph file");
+	}
+
+	@Test
+	public void inconsistentOffsetsAreRejected() throws IOException {
+		String filename = written("offsets.csr");
+		try (RandomAccessFile file = new RandomAccessFile(filename, "rw")) {
+			// the first offset, little-endian, must be 0
+			file.seek(FIRST_OFFSET);
+			file.write(1);
+		}
+		assertLoadFails(filename, "inconsistent offsets");
+	}
+
+	private String written(String name) throws IOException {
+		String filename = file(name);
+		CompactGraphFile.write(ConfigurationModelGeneratorTest.hubGraph(50, 1),
+				null, filename);
+		return filename;
+	}
+
+	private String file(String name) {
+		return new File(folder.getRoot(), name).getPath();
+	}
+
+	private static void assertLoadFails(String filename, String message) {
+		try {
+			CompactGraphFile.load(filename);
+			fail();
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains(message));
+		}
+	}
+
+	private static void assertSameGraph(CompactGraph expected,
+	                                    CompactGraph actual) {
+		assertEquals(expected.getSize(), actual.getSize());
+		assertEquals(expected.offsets(), actual.offsets());
+		assertEquals(expected.neighbors(), actual.neighbors());
+	}
+}
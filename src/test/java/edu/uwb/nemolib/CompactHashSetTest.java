@@ -0,0 +1,108 @@
+package edu.uwb.nemolib;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class CompactHashSetTest {
+
+    // CompactHashSet(8) has a table of 16 slots
+    private static final int EXPECTED_SIZE = 8;
+    private static final int MASK = 15;
+
+    // returns count elements whose home slot is the last slot of the table,
+    // so that they form a probe run that wraps around its end
+    private static int[] wrappingRun(int count) {
+        int[] result = new int[count];
+        int found = 0;
+        for (int element = 0; found < count; element++) {
+            if ((CompactHashSet.hash(element) & MASK) == MASK) {
+                result[found++] = element;
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void removeShiftsWrappedRunBack() {
+        int[] run = wrappingRun(3);
+        CompactHashSet set = new CompactHashSet(EXPECTED_SIZE);
+        for (int element : run) {
+            set.add(element);
+        }
+
+        assertTrue(set.remove(run[0]));
+        assertFalse(set.contains(run[0]));
+        assertTrue(set.contains(run[1]));
+        assertTrue(set.contains(run[2]));
+        assertEquals(2, set.size());
+
+        assertTrue(set.remove(run[2]));
+        assertTrue(set.contains(run[1]));
+        assertFalse(set.remove(run[2]));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    public void iteratorRemoveDuringWrappedShiftVisitsEachElementOnce() {
+        int[] run = wrappingRun(4);
+        CompactHashSet set = new CompactHashSet(EXPECTED_SIZE);
+        for (int element : run) {
+            set.add(element);
+        }
+
+        Set<Integer> seen = new HashSet<>();
+        CompactHashSet.Iter iter = set.iterator();
+        while (iter.hasNext()) {
+            assertTrue(seen.add(iter.next()));
+            iter.remove();
+        }
+        assertEquals(run.length, seen.size());
+        assertEquals(0, set.size());
+    }
+
+    @Test
+    public void iteratorRemoveMatchesHashSet() {
+        Random random = new Random(1);
+        for (int round = 0; round < 200; round++) {
+            CompactHashSet set = new CompactHashSet(EXPECTED_SIZE);
+            Set<Integer> expected = new HashSet<>();
+            int count = 1 + random.nextInt(EXPECTED_SIZE);
+            for (int element : wrappingRun(count)) {
+                set.add(element);
+                expected.add(element);
+            }
+            for (int i = 0; i < EXPECTED_SIZE - count; i++) {
+                int element = random.nextInt(1000);
+                set.add(element);
+                expected.add(element);
+            }
+
+            Set<Integer> original = new HashSet<>(expected);
+
+            // remove a random subset while iterating
+            List<Integer> seen = new ArrayList<>();
+            CompactHashSet.Iter iter = set.iterator();
+            while (iter.hasNext()) {
+                int element = iter.next();
+                seen.add(element);
+                if (random.nextBoolean()) {
+                    iter.remove();
+                    expected.remove(element);
+                }
+            }
+            assertEquals(original.size(), seen.size());
+            assertEquals(original, new HashSet<>(seen));
+            assertEquals(expected.size(), set.size());
+            for (int element : seen) {
+                assertEquals(expected.contains(element), set.contains(element));
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package edu.uwb.nemolib;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ConfigurationModelGeneratorTest {
+
+	// a sparse random graph with a few hubs, so that pairings contain self
+	// loops and repeated edges to be repaired or erased
+	static CompactGraph hubGraph(int size, long seed) {
+		Random random = new Random(seed);
+		int[] endpoints = new int[16 * size];
+		int edgeCount = 0;
+		for (int v = 1; v < size; v++) {
+			for (int e = 0; e < 3; e++) {
+				int u = random.nextInt(4) == 0 ? random.nextInt(5) :
+						random.nextInt(v);
+				endpoints[2 * edgeCount] = u;
+				endpoints[2 * edgeCount + 1] = v;
+				edgeCount++;
+			}
+		}
+		return CompactGraph.fromEdges(size, endpoints, edgeCount);
+	}
+
+	static int[] degrees(CompactGraph graph) {
+		int[] degrees = new int[graph.getSize()];
+		for (int v = 0; v < degrees.length; v++) {
+			degrees[v] = graph.getDegree(v);
+		}
+		return degrees;
+	}
+
+	static long edgeCount(CompactGraph graph) {
+		return graph.neighborCount() / 2;
+	}
+
+	@Test
+	public void repairPreservesDegreeSequence() {
+		ConfigurationModelGenerator generator =
+				new ConfigurationModelGenerator(
+						ConfigurationModelGenerator.Policy.REPAIR);
+		for (long seed = 0; seed < 5; seed++) {
+			CompactGraph input = hubGraph(500, seed);
+			int[] expected = degrees(input);
+			RandomGraphGenerator.Chain chain = generator.newChain(input, seed);
+			for (int i = 0; i < 5; i++) {
+				// fromEdges drops self loops and repeated edges, so equal
+				// degrees also mean that none were left
+				assertArrayEquals(expected, degrees(chain.next()));
+			}
+			assertArrayEquals(expected,
+					degrees(generator.generate(input, seed)));
+		}
+	}
+
+	@Test
+	public void eraseOnlyLosesEdges() {
+		ConfigurationModelGenerator generator =
+				new ConfigurationModelGenerator(
+						ConfigurationModelGenerator.Policy.ERASE);
+		CompactGraph input = hubGraph(500, 1);
+		int[] expected = degrees(input);
+		for (long seed = 0; seed < 5; seed++) {
+			CompactGraph output = generator.generate(input, seed);
+			int[] actual = degrees(output);
+			assertEquals(expected.length, actual.length);
+			for (int v = 0; v < expected.length; v++) {
+				assertTrue(actual[v] <= expected[v]);
+			}
+			assertTrue(edgeCount(output) > 0.9 * edgeCount(input));
+		}
+	}
+
+	@Test
+	public void sameSeedGivesSameGraph() {
+		ConfigurationModelGenerator generator =
+				new ConfigurationModelGenerator(
+						ConfigurationModelGenerator.Policy.REPAIR);
+		CompactGraph input = hubGraph(200, 2);
+		CompactGraph first = generator.generate(input, 42);
+		CompactGraph second = generator.generate(input, 42);
+		assertEquals(first.offsets(), second.offsets());
+		assertEquals(first.neighbors(), second.neighbors());
+		assertNotEquals(input.neighbors(), first.neighbors());
+	}
+}
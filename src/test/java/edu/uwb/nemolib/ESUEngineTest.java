@@ -0,0 +1,71 @@
+package edu.uwb.nemolib;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ESUEngineTest {
+
+	private static CompactGraph randomGraph(int size, int edges, long seed) {
+		Random random = new Random(seed);
+		int[] endpoints = new int[2 * edges];
+		for (int i = 0; i < endpoints.length; i++) {
+			endpoints[i] = random.nextInt(size);
+		}
+		return CompactGraph.fromEdges(size, endpoints, edges);
+	}
+
+	// a result that fails after a number of subgraphs
+	private static class FailingResult extends SubgraphCount {
+		private int remaining;
+
+		FailingResult(int remaining) {
+			this.remaining = remaining;
+		}
+
+		@Override
+		public void addSubgraph(Subgraph currentSubgraph) {
+			if (remaining-- == 0) {
+				throw new IllegalStateException("result failed");
+			}
+			super.addSubgraph(currentSubgraph);
+		}
+	}
+
+	@Test
+	public void masksAreClearedWhenTheResultThrows() {
+		CompactGraph graph = randomGraph(60, 240, 1);
+		int[] masks = new int[graph.getSize()];
+		for (int k = 3; k <= 5; k++) {
+			for (int vertex = 0; vertex < graph.getSize(); vertex++) {
+				ESUEngine engine = new ESUEngine(graph, k,
+						ESU.allVertices(k), 0L, new FailingResult(3), masks);
+				try {
+					engine.enumerate(vertex);
+				} catch (IllegalStateException e) {
+					// expected for most roots
+				}
+				for (int mask : masks) {
+					assertEquals(0, mask);
+				}
+			}
+
+			// the same masks still give a full enumeration
+			SubgraphCount expected = new SubgraphCount();
+			new ESU().enumerate(graph, k, expected);
+			SubgraphCount actual = new SubgraphCount();
+			ESUEngine engine = new ESUEngine(graph, k, ESU.allVertices(k), 0L,
+					actual, masks);
+			for (int vertex = 0; vertex < graph.getSize(); vertex++) {
+				engine.enumerate(vertex);
+			}
+			expected.label();
+			actual.label();
+			Map<String, Long> frequencies = expected.getFrequencies();
+			assertEquals(frequencies, actual.getFrequencies());
+		}
+	}
+}
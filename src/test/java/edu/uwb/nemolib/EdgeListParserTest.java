@@ -0,0 +1,137 @@
+package edu.uwb.nemolib;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class EdgeListParserTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final ForkJoinPool pool = new ForkJoinPool(4);
+
+	@After
+	public void shutDown() {
+		pool.shutdown();
+	}
+
+	@Test
+	public void smallFileMatchesGraphParser() throws IOException {
+		List<String[]> edges = new ArrayList<>();
+		edges.add(new String[] {"1", "2"});
+		edges.add(new String[] {"2", "alpha"});
+		edges.add(new String[] {"alpha", "10"});
+		edges.add(new String[] {"007", "1"});
+		edges.add(new String[] {"beta", "beta"});
+		edges.add(new String[] {"10", "2"});
+		edges.add(new String[] {"2", "1"});
+		edges.add(new String[] {"0", "gamma"});
+		assertSameGraph(edges, false);
+		assertSameGraph(edges, true);
+	}
+
+	@Test
+	public void multiBlockFileMatchesGraphParser() throws IOException {
+		// over 4 MB, so it is split into more than one block
+		Random random = new Random(3);
+		List<String[]> edges = new ArrayList<>();
+		for (int i = 0; i < 300000; i++) {
+			edges.add(new String[] {name(random), name(random)});
+		}
+		assertSameGraph(edges, false);
+		assertSameGraph(edges, true);
+	}
+
+	// a vertex name that is an integer, an integer too long to be parsed in
+	// place, or a string
+	private static String name(Random random) {
+		int vertex = random.nextInt(2000);
+		switch (vertex % 3) {
+		case 0:
+			return Integer.toString(vertex);
+		case 1:
+			return "1234567890123456789" + vertex;
+		default:
+			return "v" + vertex;
+		}
+	}
+
+	private void assertSameGraph(List<String[]> edges, boolean gzip)
+			throws IOException {
+		File file = write(edges, gzip);
+		File plain = gzip ? write(edges, false) : file;
+
+		// GraphParser numbers vertices in order of first appearance and
+		// reads only plain text
+		Set<String> firstAppearance = new LinkedHashSet<>();
+		for (String[] edge : edges) {
+			firstAppearance.add(edge[0]);
+			firstAppearance.add(edge[1]);
+		}
+		String[] expectedNames = firstAppearance.toArray(new String[0]);
+		CompactGraph expected = GraphParser.parseInFileOrder(plain.getPath())
+				.toCompactGraph();
+
+		EdgeListParser parser = new EdgeListParser(pool);
+		parser.parse(file.getPath());
+		CompactGraph actual = parser.graph();
+		String[] actualNames = parser.names();
+
+		assertEquals(expected.getSize(), actual.getSize());
+		assertEquals(new HashSet<>(firstAppearance),
+				new HashSet<>(Arrays.asList(actualNames)));
+		assertEquals(namedEdges(expected, expectedNames),
+				namedEdges(actual, actualNames));
+		assertEquals(expected.neighborCount(), actual.neighborCount());
+	}
+
+	private static Set<String> namedEdges(CompactGraph graph, String[] names) {
+		Set<String> result = new HashSet<>();
+		for (int v = 0; v < graph.getSize(); v++) {
+			for (int i = graph.begin(v); i < graph.end(v); i++) {
+				result.add(names[v] + ' ' + names[graph.neighborAt(i)]);
+			}
+		}
+		return result;
+	}
+
+	private File write(List<String[]> edges, boolean gzip) throws IOException {
+		File file = folder.newFile();
+		OutputStream out = new FileOutputStream(file);
+		if (gzip) {
+			out = new GZIPOutputStream(out);
+		}
+		try (Writer writer = new OutputStreamWriter(out,
+				StandardCharsets.UTF_8)) {
+			for (int i = 0; i < edges.size(); i++) {
+				String[] edge = edges.get(i);
+				writer.write(edge[0]);
+				writer.write(i % 2 == 0 ? " " : "\t");
+				writer.write(edge[1]);
+				writer.write('\n');
+			}
+		}
+		return file;
+	}
+}
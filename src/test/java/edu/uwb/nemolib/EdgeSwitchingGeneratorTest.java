@@ -0,0 +1,38 @@
+package edu.uwb.nemolib;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EdgeSwitchingGeneratorTest {
+
+	@Test
+	public void everyGraphOfAChainKeepsTheDegreeSequence() {
+		EdgeSwitchingGenerator generator = new EdgeSwitchingGenerator(2.0);
+		for (long seed = 0; seed < 5; seed++) {
+			CompactGraph input =
+					ConfigurationModelGeneratorTest.hubGraph(500, seed);
+			int[] expected = ConfigurationModelGeneratorTest.degrees(input);
+			RandomGraphGenerator.Chain chain = generator.newChain(input, seed);
+			CompactGraph previous = input;
+			for (int i = 0; i < 5; i++) {
+				CompactGraph next = chain.next();
+				// fromEdges drops self loops and repeated edges, so equal
+				// degrees also mean that no switch created one
+				assertArrayEquals(expected,
+						ConfigurationModelGeneratorTest.degrees(next));
+				assertNotEquals(previous.neighbors(), next.neighbors());
+				previous = next;
+			}
+		}
+	}
+
+	@Test
+	public void noSwitchesReturnsTheInputGraph() {
+		CompactGraph input = ConfigurationModelGeneratorTest.hubGraph(100, 3);
+		CompactGraph output =
+				new EdgeSwitchingGenerator(0.0).newChain(input, 1).next();
+		assertEquals(input.offsets(), output.offsets());
+		assertEquals(input.neighbors(), output.neighbors());
+	}
+}
@@ -0,0 +1,143 @@
+package edu.uwb.nemolib;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class GraphParserTest {
+
+	private static final int VERTEX_COUNT = 200;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void sameSeedGivesSameGraph() throws IOException {
+		String filename = edgeList(new Random(1));
+		CompactGraph first = GraphParser.parse(filename, 42).toCompactGraph();
+		CompactGraph second = GraphParser.parse(filename, 42).toCompactGraph();
+		assertEquals(first.offsets(), second.offsets());
+		assertEquals(first.neighbors(), second.neighbors());
+
+		CompactGraph other = GraphParser.parse(filename, 43).toCompactGraph();
+		assertNotEquals(first.neighbors(), other.neighbors());
+		assertArrayEquals(sortedDegrees(first), sortedDegrees(other));
+		assertEquals(first.neighborCount(), other.neighborCount());
+	}
+
+	@Test
+	public void fileOrderIsOrderOfFirstAppearance() throws IOException {
+		Random random = new Random(2);
+		StringBuilder text = new StringBuilder();
+		Map<String, Integer> nameToIndex = new HashMap<>();
+		Set<Long> expected = new HashSet<>();
+		for (int i = 0; i < 1000; i++) {
+			String a = "v" + random.nextInt(VERTEX_COUNT);
+			String b = "v" + random.nextInt(VERTEX_COUNT);
+			if (a.equals(b)) {
+				continue;
+			}
+			text.append(a).append('\t').append(b).append('\n');
+			int x = nameToIndex.computeIfAbsent(a, k -> nameToIndex.size());
+			int y = nameToIndex.computeIfAbsent(b, k -> nameToIndex.size());
+			expected.add(key(x, y));
+			expected.add(key(y, x));
+		}
+		String filename = write(text.toString());
+
+		CompactGraph graph =
+				GraphParser.parseInFileOrder(filename).toCompactGraph();
+		assertEquals(nameToIndex.size(), graph.getSize());
+		assertEquals(expected, edges(graph));
+	}
+
+	@Test
+	public void permutePreservesEdgesAndDegrees() {
+		Random random = new Random(3);
+		CompactGraph graph = ConfigurationModelGeneratorTest.hubGraph(300, 7);
+		int size = graph.getSize();
+		int[] permutation = new int[size];
+		for (int v = 0; v < size; v++) {
+			permutation[v] = v;
+		}
+		for (int v = size - 1; v > 0; v--) {
+			int u = random.nextInt(v + 1);
+			int temp = permutation[v];
+			permutation[v] = permutation[u];
+			permutation[u] = temp;
+		}
+
+		CompactGraph permuted = graph.permute(permutation);
+		assertEquals(size, permuted.getSize());
+		Set<Long> expected = new HashSet<>();
+		for (int v = 0; v < size; v++) {
+			assertEquals(graph.getDegree(v),
+					permuted.getDegree(permutation[v]));
+			for (int i = graph.begin(v); i < graph.end(v); i++) {
+				expected.add(key(permutation[v],
+						permutation[graph.neighborAt(i)]));
+			}
+		}
+		assertEquals(expected, edges(permuted));
+
+		// every neighbor range stays sorted
+		for (int v = 0; v < size; v++) {
+			for (int i = permuted.begin(v) + 1; i < permuted.end(v); i++) {
+				assertTrue(permuted.neighborAt(i - 1) <
+						permuted.neighborAt(i));
+			}
+		}
+	}
+
+	private String edgeList(Random random) throws IOException {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			int a = random.nextInt(VERTEX_COUNT);
+			int b = random.nextInt(VERTEX_COUNT);
+			if (a != b) {
+				text.append(a).append(' ').append(b).append('\n');
+			}
+		}
+		return write(text.toString());
+	}
+
+	private String write(String text) throws IOException {
+		File file = folder.newFile();
+		Files.write(file.toPath(), text.getBytes(StandardCharsets.US_ASCII));
+		return file.getPath();
+	}
+
+	// the directed edges of a graph, each undirected edge in both directions
+	private static Set<Long> edges(CompactGraph graph) {
+		Set<Long> edges = new HashSet<>();
+		for (int v = 0; v < graph.getSize(); v++) {
+			for (int i = graph.begin(v); i < graph.end(v); i++) {
+				edges.add(key(v, graph.neighborAt(i)));
+			}
+		}
+		return edges;
+	}
+
+	private static long key(int a, int b) {
+		return ((long) a << 32) | b;
+	}
+
+	private static int[] sortedDegrees(CompactGraph graph) {
+		int[] degrees = ConfigurationModelGeneratorTest.degrees(graph);
+		Arrays.sort(degrees);
+		return degrees;
+	}
+}
@@ -0,0 +1,63 @@
+package edu.uwb.nemolib;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GraphTest {
+
+	@Test
+	public void compactGraphIsReusedUntilTheGraphChanges() {
+		Graph graph = path(4);
+		CompactGraph first = graph.toCompactGraph();
+		graph.getAdjacencyList(1);
+		assertSame(first, graph.toCompactGraph());
+
+		graph.addEdge(0, 3);
+		CompactGraph second = graph.toCompactGraph();
+		assertNotSame(first, second);
+		assertTrue(second.isAdjacent(0, 3));
+		assertFalse(first.isAdjacent(0, 3));
+
+		graph.addVertex();
+		assertEquals(5, graph.toCompactGraph().getSize());
+	}
+
+	@Test
+	public void adjacencyListsAreReadOnlyViews() {
+		Graph graph = path(3);
+		AdjacencyList list = graph.getAdjacencyList(0);
+		graph.addEdge(0, 2);
+		assertTrue(list.contains(2));
+		assertEquals(2, list.size());
+		try {
+			list.add(1);
+			fail();
+		} catch (UnsupportedOperationException expected) {
+		}
+		try {
+			list.remove(1);
+			fail();
+		} catch (UnsupportedOperationException expected) {
+		}
+		CompactHashSet.Iter iter = list.iterator();
+		iter.next();
+		try {
+			iter.remove();
+			fail();
+		} catch (UnsupportedOperationException expected) {
+		}
+		assertEquals(2, graph.getDegree(0));
+	}
+
+	private static Graph path(int size) {
+		Graph graph = new Graph();
+		for (int i = 0; i < size; i++) {
+			graph.addVertex();
+		}
+		for (int i = 0; i + 1 < size; i++) {
+			graph.addEdge(i, i + 1);
+		}
+		return graph;
+	}
+}
@@ -0,0 +1,71 @@
+package edu.uwb.nemolib;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class LabelCacheTest {
+
+	// "Aa" and "BB" have the same hash code, so these labels share a segment
+	private static final String[] SAME_SEGMENT = {"AaAa", "AaBB", "BBAa"};
+
+	@Test
+	public void hitsAndMissesAreCounted() {
+		LabelCache cache = new LabelCache(64);
+		assertNull(cache.get("a"));
+		cache.put("a", "x");
+		assertEquals("x", cache.get("a"));
+		assertEquals("x", cache.get("a"));
+		assertNull(cache.get("b"));
+		assertEquals(2, cache.hitCount());
+		assertEquals(2, cache.missCount());
+		assertEquals(0, cache.evictionCount());
+	}
+
+	@Test
+	public void leastRecentlyUsedLabelOfASegmentIsEvicted() {
+		// two entries in every segment
+		LabelCache cache = new LabelCache(32);
+		cache.put(SAME_SEGMENT[0], "0");
+		cache.put(SAME_SEGMENT[1], "1");
+		assertEquals("0", cache.get(SAME_SEGMENT[0]));
+		cache.put(SAME_SEGMENT[2], "2");
+
+		assertEquals(1, cache.evictionCount());
+		assertEquals(2, cache.size());
+		assertEquals("0", cache.get(SAME_SEGMENT[0]));
+		assertNull(cache.get(SAME_SEGMENT[1]));
+		assertEquals("2", cache.get(SAME_SEGMENT[2]));
+	}
+
+	@Test
+	public void sizeStaysWithinTheBound() {
+		LabelCache cache = new LabelCache(100);
+		int puts = 10000;
+		for (int i = 0; i < puts; i++) {
+			cache.put("label-" + i, "canonical-" + i);
+			assertTrue(cache.size() <= 100);
+		}
+		assertEquals(puts - cache.size(), cache.evictionCount());
+
+		Map<String, String> entries = new HashMap<>();
+		cache.copyTo(entries);
+		assertEquals(cache.size(), entries.size());
+		for (Map.Entry<String, String> entry : entries.entrySet()) {
+			assertEquals(entry.getKey().replace("label", "canonical"),
+					entry.getValue());
+		}
+	}
+
+	@Test
+	public void emptyCacheKeepsNothing() {
+		LabelCache cache = new LabelCache(0);
+		cache.put("a", "x");
+		assertNull(cache.get("a"));
+		assertEquals(0, cache.size());
+		assertEquals(1, cache.evictionCount());
+	}
+}
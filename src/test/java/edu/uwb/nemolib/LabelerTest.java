@@ -0,0 +1,94 @@
+package edu.uwb.nemolib;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+// runs the Labeler against shell scripts that stand in for labelg and
+// answer every label with itself
+public class LabelerTest {
+
+	private static final long TIMEOUT_MILLIS = 1000;
+
+	// prints the labels only once its input is closed
+	private static final String BATCH_ONLY = "exec awk '{ a[NR] = $0 } " +
+			"END { for (i = 1; i <= NR; i++) print a[i] }'\n";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Before
+	public void requireShell() {
+		assumeTrue(new File("/bin/sh").canExecute());
+	}
+
+	@Test
+	public void labelgThatDoesNotStreamIsRunPerBatch() throws IOException {
+		String labelg = script(BATCH_ONLY);
+		try (Labeler labeler = new Labeler(labelg, 2, 0, TIMEOUT_MILLIS)) {
+			assertIdentity(300, labeler.getCanonicalLabels(labels(300)));
+		}
+	}
+
+	@Test
+	public void processThatStopsAnsweringIsReplaced() throws IOException {
+		// the first process answers the round trip and then hangs; the
+		// processes started per batch afterward answer
+		File marker = new File(folder.getRoot(), "started");
+		String labelg = script("if [ -e " + marker + " ]; then\n" +
+				BATCH_ONLY +
+				"fi\n" +
+				"touch " + marker + "\n" +
+				"read label\n" +
+				"echo \"$label\"\n" +
+				"exec sleep 60\n");
+		try (Labeler labeler = new Labeler(labelg, 1, 0, TIMEOUT_MILLIS)) {
+			assertTrue(marker.exists());
+			assertIdentity(300, labeler.getCanonicalLabels(labels(300)));
+		}
+	}
+
+	@Test(expected = LabelingException.class)
+	public void labelgThatNeverAnswersFails() throws IOException {
+		String labelg = script("exec sleep 60\n");
+		try (Labeler labeler = new Labeler(labelg, 1, 0, TIMEOUT_MILLIS)) {
+			labeler.getCanonicalLabels(labels(10));
+		}
+	}
+
+	private String script(String body) throws IOException {
+		File file = folder.newFile("labelg");
+		Files.write(file.toPath(), ("#!/bin/sh\n" + body)
+				.getBytes(StandardCharsets.US_ASCII));
+		assertTrue(file.setExecutable(true));
+		return file.getPath();
+	}
+
+	private static Set<String> labels(int count) {
+		Set<String> labels = new LinkedHashSet<>();
+		for (int i = 0; i < count; i++) {
+			labels.add("label" + i);
+		}
+		return labels;
+	}
+
+	private static void assertIdentity(int count,
+	                                   Map<String, String> canLabels) {
+		assertEquals(count, canLabels.size());
+		for (Map.Entry<String, String> entry : canLabels.entrySet()) {
+			assertEquals(entry.getKey(), entry.getValue());
+		}
+	}
+}
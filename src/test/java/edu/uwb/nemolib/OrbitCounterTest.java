@@ -0,0 +1,99 @@
+package edu.uwb.nemolib;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class OrbitCounterTest {
+
+	@Test
+	public void profileAgreesWithESUOnRandomGraphs() {
+		Random random = new Random(13);
+		for (int round = 0; round < 40; round++) {
+			int size = 5 + random.nextInt(40);
+			double density = 0.05 + 0.6 * random.nextDouble();
+			CompactGraph graph =
+					ClosedFormCounterTest.randomGraph(size, density, random);
+			for (int subgraphSize = 3; subgraphSize <= 4; subgraphSize++) {
+				assertAgreesWithESU(graph, subgraphSize);
+			}
+		}
+	}
+
+	@Test
+	public void profileAgreesWithESUOnHubsAndCliques() {
+		CompactGraph hubs = ConfigurationModelGeneratorTest.hubGraph(300, 8);
+		CompactGraph clique =
+				ClosedFormCounterTest.randomGraph(10, 1.0, new Random(1));
+		for (int subgraphSize = 3; subgraphSize <= 4; subgraphSize++) {
+			assertAgreesWithESU(hubs, subgraphSize);
+			assertAgreesWithESU(clique, subgraphSize);
+		}
+	}
+
+	@Test
+	public void edgeOrbitIsTheDegree() {
+		CompactGraph graph = ConfigurationModelGeneratorTest.hubGraph(200, 2);
+		GraphletDegreeVectors vectors = OrbitCounter.countOrbits(graph);
+		assertEquals(graph.getSize(), vectors.getVertexCount());
+		for (int v = 0; v < graph.getSize(); v++) {
+			assertEquals(graph.getDegree(v), vectors.getCount(v, 0));
+			assertEquals(GraphletDegreeVectors.ORBIT_COUNT,
+					vectors.getVector(v).length);
+		}
+	}
+
+	@Test
+	public void hubCountsPastIntegerRange() {
+		// the hub of a star with 2,500 leaves is in C(2500, 3) stars
+		int leaves = 2500;
+		int[] endpoints = new int[2 * leaves];
+		for (int leaf = 1; leaf <= leaves; leaf++) {
+			endpoints[2 * leaf - 1] = leaf;
+		}
+		CompactGraph star = CompactGraph.fromEdges(leaves + 1, endpoints,
+				leaves);
+		long hubCount = (long) leaves * (leaves - 1) * (leaves - 2) / 6;
+		long leafCount = (long) (leaves - 1) * (leaves - 2) / 2;
+		assertTrue(hubCount > Integer.MAX_VALUE);
+
+		SubgraphProfile profile = new SubgraphProfile();
+		new OrbitCounter().enumerate(star, 4, profile);
+		SubgraphProfile other = new SubgraphProfile();
+		new OrbitCounter().enumerate(star, 4, other);
+		profile.merge(other);
+		profile.label();
+
+		assertEquals(1, profile.getLabels().size());
+		String label = profile.getLabels().iterator().next();
+		assertEquals(2 * hubCount, profile.getFrequency(label, 0));
+		for (int leaf = 1; leaf <= leaves; leaf++) {
+			assertEquals(2 * leafCount, profile.getFrequency(label, leaf));
+		}
+		Map<Integer, Integer> frequencies = profile.getFrequencies(label);
+		assertEquals(Integer.MAX_VALUE, (int) frequencies.get(0));
+		assertEquals(2 * leafCount, (long) frequencies.get(1));
+		assertEquals(1.0, profile.getRelativeFrequencies().get(label), 0.0);
+	}
+
+	private static void assertAgreesWithESU(CompactGraph graph,
+	                                        int subgraphSize) {
+		SubgraphProfile expected = new SubgraphProfile();
+		new ESU().enumerate(graph, subgraphSize, expected);
+		expected.label();
+		SubgraphProfile actual = new SubgraphProfile();
+		new OrbitCounter().enumerate(graph, subgraphSize, actual);
+		actual.label();
+
+		assertEquals(expected.getLabels(), actual.getLabels());
+		for (String label : expected.getLabels()) {
+			assertEquals(expected.getFrequencies(label),
+					actual.getFrequencies(label));
+		}
+		assertEquals(expected.getRelativeFrequencies(),
+				actual.getRelativeFrequencies());
+	}
+}
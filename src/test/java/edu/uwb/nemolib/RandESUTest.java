@@ -0,0 +1,26 @@
+package edu.uwb.nemolib;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RandESUTest {
+
+	@Test
+	public void seededBranchesMatchASeededRun() {
+		CompactGraph graph =
+				ConfigurationModelGeneratorTest.hubGraph(300, 6);
+		List<Double> probs = Arrays.asList(1.0, 0.5, 0.5, 0.5);
+		SubgraphCount expected = new SubgraphCount();
+		new RandESU(probs, 7).enumerate(graph, 4, expected);
+
+		SubgraphCount actual = new SubgraphCount();
+		for (int vertex = graph.getSize() - 1; vertex >= 0; vertex--) {
+			RandESU.enumerate(graph, actual, 4, probs, vertex, 7);
+		}
+		assertEquals(expected, actual);
+	}
+}
@@ -0,0 +1,136 @@
+package edu.uwb.nemolib;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RefinementLabelerTest {
+
+	// the number of graphs on 3 to 6 vertices up to isomorphism
+	private static final int[] GRAPH_COUNTS = {0, 0, 0, 4, 11, 34, 156};
+
+	private final RefinementLabeler labeler = new RefinementLabeler();
+
+	@Test
+	public void agreesWithCanonicalClassTable() {
+		for (int k = CanonicalClassTable.MIN_ORDER;
+		     k <= CanonicalClassTable.MAX_ORDER; k++) {
+			CanonicalClassTable table = CanonicalClassTable.forOrder(k);
+			assertEquals(GRAPH_COUNTS[k], table.classCount());
+
+			Map<String, Integer> labelToClass = new HashMap<>();
+			long masks = 1L << (k * (k - 1) / 2);
+			for (long mask = 0; mask < masks; mask++) {
+				String g6 = new String(Graph6.encodeTriangle(k, mask),
+						StandardCharsets.US_ASCII);
+				String label = labeler.getCanonicalLabel(g6);
+				int classId = table.classOf(mask);
+				assertEquals(table.label(classId), label);
+
+				// one class per label and one label per class
+				Integer previous = labelToClass.put(label, classId);
+				assertTrue(previous == null || previous == classId);
+			}
+			assertEquals(table.classCount(), labelToClass.size());
+		}
+	}
+
+	@Test
+	public void labelIsInvariantUnderRelabeling() {
+		Random random = new Random(7);
+		for (int round = 0; round < 300; round++) {
+			int order = 3 + random.nextInt(18);
+			double density = 0.1 + 0.8 * random.nextDouble();
+			long[] rows = new long[order];
+			for (int i = 0; i < order; i++) {
+				for (int j = i + 1; j < order; j++) {
+					if (random.nextDouble() < density) {
+						rows[i] |= 1L << j;
+						rows[j] |= 1L << i;
+					}
+				}
+			}
+			assertInvariant(rows, random);
+		}
+	}
+
+	@Test
+	public void regularGraphsAreInvariantAndDistinguished() {
+		long[] petersen = new long[10];
+		for (int i = 0; i < 5; i++) {
+			addEdge(petersen, i, (i + 1) % 5);
+			addEdge(petersen, 5 + i, 5 + (i + 2) % 5);
+			addEdge(petersen, i, 5 + i);
+		}
+		long[] prism = new long[10];
+		for (int i = 0; i < 5; i++) {
+			addEdge(prism, i, (i + 1) % 5);
+			addEdge(prism, 5 + i, 5 + (i + 1) % 5);
+			addEdge(prism, i, 5 + i);
+		}
+		long[] cycle = new long[8];
+		long[] twoSquares = new long[8];
+		for (int i = 0; i < 8; i++) {
+			addEdge(cycle, i, (i + 1) % 8);
+		}
+		for (int i = 0; i < 4; i++) {
+			addEdge(twoSquares, i, (i + 1) % 4);
+			addEdge(twoSquares, 4 + i, 4 + (i + 1) % 4);
+		}
+
+		Random random = new Random(11);
+		for (long[] rows : new long[][] {petersen, prism, cycle, twoSquares}) {
+			for (int round = 0; round < 20; round++) {
+				assertInvariant(rows, random);
+			}
+		}
+		assertNotEquals(label(petersen), label(prism));
+		assertNotEquals(label(cycle), label(twoSquares));
+	}
+
+	private void assertInvariant(long[] rows, Random random) {
+		String expected = label(rows);
+		long[] permuted = permute(rows, random);
+		assertEquals(expected, label(permuted));
+
+		// a canonical label is its own canonical label
+		assertEquals(expected, labeler.getCanonicalLabel(expected));
+	}
+
+	private String label(long[] rows) {
+		return labeler.getCanonicalLabel(Graph6.encode(rows.length, rows));
+	}
+
+	private static void addEdge(long[] rows, int a, int b) {
+		rows[a] |= 1L << b;
+		rows[b] |= 1L << a;
+	}
+
+	private static long[] permute(long[] rows, Random random) {
+		int n = rows.length;
+		int[] permutation = new int[n];
+		for (int i = 0; i < n; i++) {
+			permutation[i] = i;
+		}
+		for (int i = n - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int temp = permutation[i];
+			permutation[i] = permutation[j];
+			permutation[j] = temp;
+		}
+		long[] result = new long[n];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				if ((rows[i] & (1L << j)) != 0) {
+					result[permutation[i]] |= 1L << permutation[j];
+				}
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,146 @@
+package edu.uwb.nemolib;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RelativeFrequencyAccumulatorTest {
+
+	private static final double EPSILON = 1e-9;
+
+	// labels 0 to 5; labels 4 and 5 are missing from the target graph, and
+	// the last labels are missing from many random graphs
+	private static final int LABEL_COUNT = 6;
+
+	private static String label(int i) {
+		return "accumulator-test-" + i;
+	}
+
+	@Test
+	public void labelsStayInTheirOwnAccumulator() {
+		Map<String, Double> target = new HashMap<>();
+		target.put(label(0), 0.5);
+		target.put(label(1), 0.5);
+		RelativeFrequencyAccumulator first =
+				new RelativeFrequencyAccumulator(target);
+		Map<String, Double> random = new HashMap<>();
+		random.put(label(2), 1.0);
+		first.add(random);
+
+		RelativeFrequencyAccumulator second =
+				new RelativeFrequencyAccumulator(target);
+		assertEquals(3, first.getDictionary().size());
+		assertEquals(2, second.getDictionary().size());
+		assertEquals(-1, second.getDictionary().find(label(2)));
+	}
+
+	@Test
+	public void matchesListBasedStatistics() {
+		Random random = new Random(5);
+		for (int round = 0; round < 20; round++) {
+			int randomGraphCount = 2 + random.nextInt(200);
+			Map<String, Double> target = new HashMap<>();
+			for (int i = 0; i < LABEL_COUNT - 2; i++) {
+				target.put(label(i), random.nextDouble() / LABEL_COUNT);
+			}
+
+			List<Map<String, Double>> pool = new ArrayList<>();
+			for (int g = 0; g < randomGraphCount; g++) {
+				Map<String, Double> freqs = new HashMap<>();
+				for (int i = 0; i < LABEL_COUNT; i++) {
+					if (random.nextInt(LABEL_COUNT) >= i) {
+						// a few repeated values give ties with the target
+						freqs.put(label(i), random.nextInt(4) == 0 &&
+								target.containsKey(label(i)) ?
+								target.get(label(i)) :
+								random.nextDouble() / LABEL_COUNT);
+					}
+				}
+				pool.add(freqs);
+			}
+
+			// the lists RandomGraphAnalyzer.analyze(Graph, int) returns,
+			// padded with zeros
+			Map<String, List<Double>> lists = new HashMap<>();
+			for (Map<String, Double> freqs : pool) {
+				for (Map.Entry<String, Double> entry : freqs.entrySet()) {
+					lists.computeIfAbsent(entry.getKey(),
+							k -> new ArrayList<>()).add(entry.getValue());
+				}
+			}
+			for (List<Double> freqs : lists.values()) {
+				while (freqs.size() < randomGraphCount) {
+					freqs.add(0.0);
+				}
+			}
+
+			RelativeFrequencyAccumulator accumulator =
+					new RelativeFrequencyAccumulator(target);
+			for (Map<String, Double> freqs : pool) {
+				accumulator.add(freqs);
+			}
+			assertEquals(randomGraphCount, accumulator.getSampleCount());
+			assertEquals(lists.keySet(), accumulator.getLabels());
+
+			RelativeFrequencyAnalyzer streamed =
+					new RelativeFrequencyAnalyzer(accumulator);
+			RelativeFrequencyAnalyzer fromLists =
+					new RelativeFrequencyAnalyzer(lists, target);
+			for (Map.Entry<String, List<Double>> entry : lists.entrySet()) {
+				String label = entry.getKey();
+				List<Double> freqs = entry.getValue();
+				double targetFreq = target.getOrDefault(label, 0.0);
+				double mean = mean(freqs);
+				double zScore = zScore(targetFreq, mean, freqs);
+				double pValue = target.containsKey(label) ?
+						pValue(targetFreq, freqs) : 1.0;
+
+				for (RelativeFrequencyAnalyzer analyzer :
+						new RelativeFrequencyAnalyzer[] {streamed, fromLists}) {
+					assertEquals(mean, analyzer.getRandMeans().get(label),
+							EPSILON);
+					assertEquals(zScore, analyzer.getZScores().get(label),
+							EPSILON * Math.max(1, Math.abs(zScore)));
+					assertEquals(pValue, analyzer.getPValues().get(label),
+							EPSILON);
+				}
+			}
+		}
+	}
+
+	// the statistics as RelativeFrequencyAnalyzer computed them from lists
+
+	private static double mean(List<Double> values) {
+		double total = 0.0;
+		for (double value : values) {
+			total += value;
+		}
+		return total / values.size();
+	}
+
+	private static double zScore(double targetFreq, double mean,
+	                             List<Double> values) {
+		double variance = 0.0;
+		for (double value : values) {
+			variance += (value - mean) * (value - mean);
+		}
+		double stdDev = Math.sqrt(variance / (values.size() - 1));
+		return stdDev == 0 ? 0.0 : (targetFreq - mean) / stdDev;
+	}
+
+	private static double pValue(double targetFreq, List<Double> values) {
+		int exceedances = 0;
+		for (double value : values) {
+			if (value >= targetFreq) {
+				exceedances++;
+			}
+		}
+		return (double) exceedances / values.size();
+	}
+}
@@ -0,0 +1,248 @@
+package edu.uwb.nemolib;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class SequentialSignificanceTestTest {
+
+	private static final double ALPHA = 0.05;
+
+	// the labels whose full-pool p-value is below ALPHA
+	private static Set<String> significant(
+			RelativeFrequencyAccumulator accumulator, Set<String> labels) {
+		Set<String> result = new HashSet<>();
+		for (String label : labels) {
+			if (accumulator.getPValue(label) < ALPHA) {
+				result.add(label);
+			}
+		}
+		return result;
+	}
+
+	@Test
+	public void earlyDecisionsAgreeWithFullPool() {
+		Random random = new Random(17);
+		int labelCount = 12;
+		long stoppedEarly = 0;
+		for (int round = 0; round < 200; round++) {
+			int randomGraphCount = 20 + random.nextInt(500);
+
+			// labels whose random graphs exceed the target graph with
+			// probabilities from far below to far above ALPHA
+			Map<String, Double> target = new HashMap<>();
+			double[] exceedProbability = new double[labelCount];
+			for (int i = 0; i < labelCount; i++) {
+				target.put("sequential-test-" + i, 0.5);
+				exceedProbability[i] = 2 * ALPHA * random.nextDouble() *
+						(i % 3 == 0 ? 5 : 1);
+			}
+			Map<String, Double>[] pool = pool(randomGraphCount,
+					exceedProbability, random);
+
+			RelativeFrequencyAccumulator full =
+					new RelativeFrequencyAccumulator(target);
+			for (Map<String, Double> freqs : pool) {
+				full.add(freqs);
+			}
+
+			RelativeFrequencyAccumulator sequential =
+					new RelativeFrequencyAccumulator(target);
+			SequentialSignificanceTest test =
+					new SequentialSignificanceTest(ALPHA, randomGraphCount);
+			boolean decided = false;
+			for (int g = 0; g < randomGraphCount && !decided; g++) {
+				sequential.add(pool[g]);
+				decided = test.update(sequential);
+			}
+			assertTrue(decided);
+			if (sequential.getSampleCount() < randomGraphCount) {
+				stoppedEarly++;
+			}
+
+			for (String label : target.keySet()) {
+				assertTrue(test.isDecided(label));
+				assertTrue(test.getSamplesNeeded().get(label) <=
+						sequential.getSampleCount());
+			}
+			assertEquals(significant(full, target.keySet()),
+					test.getSignificantLabels());
+			assertEquals(significant(sequential, target.keySet()),
+					test.getSignificantLabels());
+		}
+		assertTrue(stoppedEarly > 100);
+	}
+
+	@Test
+	public void strongMotifsAreDecidedWellBeforeTheFullPool() {
+		Random random = new Random(5);
+		int randomGraphCount = 1000;
+		Map<String, Double> target = new HashMap<>();
+		target.put("sequential-test-0", 0.5);
+		target.put("sequential-test-1", 0.5);
+		Map<String, Double>[] pool = pool(randomGraphCount,
+				new double[] {0.0, 0.5}, random);
+
+		SequentialSignificanceTest exact =
+				new SequentialSignificanceTest(ALPHA, randomGraphCount);
+		SequentialSignificanceTest bounded =
+				new SequentialSignificanceTest(ALPHA, randomGraphCount, 0.01);
+		long exactUsed = run(exact, target, pool);
+		long boundedUsed = run(bounded, target, pool);
+
+		// exact agreement needs n - h + 1 random graphs for a motif
+		long exceedanceLimit = (long) Math.ceil(ALPHA * randomGraphCount);
+		assertEquals(randomGraphCount - exceedanceLimit + 1, exactUsed);
+		assertTrue(boundedUsed < 400);
+		assertEquals(exact.getSignificantLabels(),
+				bounded.getSignificantLabels());
+		assertEquals(Collections.singleton("sequential-test-0"),
+				bounded.getSignificantLabels());
+	}
+
+	@Test
+	public void errorRateBoundsEarlySignificance() {
+		Random random = new Random(11);
+		int randomGraphCount = 1000;
+		long exceedanceLimit = (long) Math.ceil(ALPHA * randomGraphCount);
+		double errorRate = 0.05;
+		int labelCount = 10;
+		Map<String, Double> target = new HashMap<>();
+		double[] exceedProbability = new double[labelCount];
+		for (int i = 0; i < labelCount; i++) {
+			target.put("sequential-test-" + i, 0.5);
+			// not significant, the first half only just
+			exceedProbability[i] = i < labelCount / 2 ? ALPHA : 2 * ALPHA;
+		}
+		int trials = 100;
+		int early = 0;
+		for (int round = 0; round < trials; round++) {
+			SequentialSignificanceTest test = new SequentialSignificanceTest(
+					ALPHA, randomGraphCount, errorRate);
+			run(test, target,
+					pool(randomGraphCount, exceedProbability, random));
+			for (String label : test.getSignificantLabels()) {
+				// the full pool rule alone cannot decide a label this soon
+				if (test.getSamplesNeeded().get(label) <=
+						randomGraphCount - exceedanceLimit) {
+					early++;
+				}
+			}
+		}
+		assertTrue(early <= errorRate * trials * labelCount);
+	}
+
+	// updates a test with a pool until every label is decided, returning
+	// the number of random graphs used
+	private static long run(SequentialSignificanceTest test,
+	                        Map<String, Double> target,
+	                        Map<String, Double>[] pool) {
+		RelativeFrequencyAccumulator accumulator =
+				new RelativeFrequencyAccumulator(target);
+		for (Map<String, Double> freqs : pool) {
+			accumulator.add(freqs);
+			if (test.update(accumulator)) {
+				break;
+			}
+		}
+		return accumulator.getSampleCount();
+	}
+
+	// a random graph pool in which label i exceeds the target graph with
+	// probability exceedProbability[i]
+	@SuppressWarnings("unchecked")
+	private static Map<String, Double>[] pool(int randomGraphCount,
+	                                          double[] exceedProbability,
+	                                          Random random) {
+		Map<String, Double>[] pool = new Map[randomGraphCount];
+		for (int g = 0; g < randomGraphCount; g++) {
+			pool[g] = new HashMap<>();
+			for (int i = 0; i < exceedProbability.length; i++) {
+				pool[g].put("sequential-test-" + i,
+						random.nextDouble() < exceedProbability[i] ?
+								0.5 + random.nextDouble() / 2 :
+								random.nextDouble() / 2);
+			}
+		}
+		return pool;
+	}
+
+	@Test
+	public void randomGraphAnalyzerStopsWithFullPoolDecisions() {
+		Graph graph = new Graph();
+		Random random = new Random(3);
+		int size = 60;
+		for (int v = 0; v < size; v++) {
+			graph.addVertex();
+		}
+		for (int v = 1; v < size; v++) {
+			for (int e = 0; e < 2; e++) {
+				int u = random.nextInt(3) == 0 ? random.nextInt(3) :
+						random.nextInt(v);
+				graph.addEdge(u, v);
+			}
+		}
+		Map<String, Double> target = new TargetGraphAnalyzer(new ESU(),
+				new SubgraphCount()).analyze(graph, 4);
+
+		int randomGraphCount = 200;
+		RandomGraphGenerator generator = new ConfigurationModelGenerator(
+				ConfigurationModelGenerator.Policy.REPAIR);
+		RelativeFrequencyAccumulator full =
+				new RelativeFrequencyAccumulator(target);
+		new RandomGraphAnalyzer(new ESU(), randomGraphCount, generator, 9)
+				.analyze(graph, 4, full);
+
+		RelativeFrequencyAccumulator sequential =
+				new RelativeFrequencyAccumulator(target);
+		SequentialSignificanceTest test =
+				new SequentialSignificanceTest(ALPHA, randomGraphCount);
+		long used = new RandomGraphAnalyzer(new ESU(), randomGraphCount,
+				generator, 9).analyze(graph, 4, sequential, test);
+
+		assertEquals(used, sequential.getSampleCount());
+		assertTrue(used < randomGraphCount);
+		Set<String> labels = new HashSet<>(full.getLabels());
+		labels.addAll(target.keySet());
+		for (String label : labels) {
+			assertTrue(test.isDecided(label));
+		}
+		assertEquals(significant(full, labels), test.getSignificantLabels());
+		assertEquals(significant(sequential, labels),
+				test.getSignificantLabels());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void poolSizeMustMatchRandomGraphCount() {
+		Graph graph = new Graph();
+		graph.addVertex();
+		graph.addVertex();
+		graph.addEdge(0, 1);
+		new RandomGraphAnalyzer(new ESU(), 10).analyze(graph, 3,
+				new RelativeFrequencyAccumulator(new HashMap<>()),
+				new SequentialSignificanceTest(ALPHA, 20));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testIsBoundToOneAccumulator() {
+		Map<String, Double> target = new HashMap<>();
+		target.put("a", 1.0);
+		SequentialSignificanceTest test =
+				new SequentialSignificanceTest(ALPHA, 20);
+		RelativeFrequencyAccumulator first =
+				new RelativeFrequencyAccumulator(target);
+		first.add(target);
+		test.update(first);
+		RelativeFrequencyAccumulator second =
+				new RelativeFrequencyAccumulator(target);
+		second.add(target);
+		test.update(second);
+	}
+}
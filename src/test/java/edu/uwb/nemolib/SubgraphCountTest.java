@@ -0,0 +1,50 @@
+package edu.uwb.nemolib;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SubgraphCountTest {
+
+	// counts a triangle and a path of order 3, which are counted by class,
+	// and a path of order 7, which is counted by mask
+	private static SubgraphCount sample() {
+		SubgraphCount count = new SubgraphCount();
+		count.addSubgraphs(3, ClosedFormCounter.TRIANGLE, 2);
+		count.addSubgraphs(3, ClosedFormCounter.PATH_3, 5);
+		count.addSubgraphs(7, 0b1L, 3);
+		return count;
+	}
+
+	@Test
+	public void equalsAndHashCodeIgnoreHowCountsAreStored() {
+		SubgraphCount unfolded = sample();
+		SubgraphCount folded = sample();
+		Map<String, Long> frequencies = new HashMap<>(folded.getFrequencies());
+
+		assertEquals(folded, unfolded);
+		assertEquals(unfolded, folded);
+		assertEquals(folded.hashCode(), unfolded.hashCode());
+		assertNotEquals(unfolded, new SubgraphCount());
+		assertNotEquals(unfolded, null);
+
+		// comparing leaves both counts as they were
+		assertEquals(frequencies, unfolded.getFrequencies());
+		assertEquals(frequencies, folded.getFrequencies());
+	}
+
+	@Test
+	public void equalsDoesNotChangeCounts() {
+		SubgraphCount count = sample();
+		assertEquals(count, sample());
+
+		// counts added after a comparison land on the same labels
+		count.addSubgraphs(3, ClosedFormCounter.TRIANGLE, 1);
+		SubgraphCount expected = sample();
+		expected.addSubgraphs(3, ClosedFormCounter.TRIANGLE, 1);
+		assertEquals(expected, count);
+	}
+}
@@ -0,0 +1,46 @@
+package edu.uwb.nemolib;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SubgraphTest {
+
+	@Test
+	public void largeSubgraphsAddedFromACompactGraphKeepEveryEdge() {
+		Random random = new Random(17);
+		for (int order : new int[] {5, 12, 32, 33, 40, 64}) {
+			Graph graph = new Graph();
+			for (int i = 0; i < order; i++) {
+				graph.addVertex();
+			}
+			for (int u = 0; u < order; u++) {
+				for (int v = u + 1; v < order; v++) {
+					if (random.nextBoolean()) {
+						graph.addEdge(u, v);
+					}
+				}
+			}
+			CompactGraph compactGraph = graph.toCompactGraph();
+
+			Subgraph fromLists = new Subgraph(order);
+			Subgraph fromCompact = new Subgraph(order);
+			for (int v = 0; v < order; v++) {
+				fromLists.add(v, graph.getAdjacencyList(v));
+				fromCompact.add(v, compactGraph);
+			}
+			assertEquals(fromLists.getByteString(),
+					fromCompact.getByteString());
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void neighborMasksStopAtPosition32() {
+		Subgraph subgraph = new Subgraph(40);
+		for (int v = 0; v <= Integer.SIZE + 1; v++) {
+			subgraph.add(v, 0);
+		}
+	}
+}